@@ -15,7 +15,10 @@
  */
 package org.springframework.faces.mvc.navigation;
 
-import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,9 +27,10 @@ import javax.el.ExpressionFactory;
 import javax.el.ValueExpression;
 import javax.faces.context.FacesContext;
 
-import org.springframework.beans.PropertyValue;
-import org.springframework.beans.PropertyValues;
 import org.springframework.faces.mvc.bind.ReverseDataBinder;
+import org.springframework.faces.mvc.bind.ReverseDataBinder.Verification;
+import org.springframework.faces.mvc.support.PercentEncoder;
+import org.springframework.util.Assert;
 import org.springframework.web.bind.WebDataBinder;
 
 /**
@@ -37,6 +41,10 @@ import org.springframework.web.bind.WebDataBinder;
  * In addition any expression specified in the query part of the URL (without an attribute name) will be fully expanded
  * (e.g. <tt>'/search?#{queryParams}'</tt> would be expanded to <tt>'/search?name=search&pagesize=20'</tt> (assuming that <tt>queryParams</tt> contains <tt>name</tt> and <tt>pagesize</tt>
  * properties).
+ * <p>
+ * Outcomes are parsed once into a cached template of literal segments and expressions; outcomes that contain no
+ * expressions are returned without further processing. The {@link ValueExpression}s created to resolve expressions are
+ * also cached.
  * 
  * @see ReverseDataBinder
  * 
@@ -46,6 +54,12 @@ public class NavigationOutcomeExpressionElResolver implements NavigationOutcomeE
 
 	private static final Pattern EL_PATTERN = Pattern.compile("(?:([A-Za-z0-9\\.\\-\\*\\_\\%]+)\\=)?+(\\#\\{.+?\\})");
 
+	/**
+	 * The maximum number of templates and value expressions that will be cached. Outcomes are usually compile time
+	 * constants, the limit protects against locations that are built dynamically.
+	 */
+	private static final int MAX_CACHE_SIZE = 1024;
+
 	/**
 	 * Where in the URL the expression appears
 	 */
@@ -53,34 +67,59 @@ public class NavigationOutcomeExpressionElResolver implements NavigationOutcomeE
 		URL, QUERY
 	}
 
+	private Verification reverseBindVerification = Verification.ALWAYS;
+
+	private int reverseBindVerificationSampleRate = 100;
+
+	private final ConcurrentMap<String, OutcomeTemplate> templates = new ConcurrentHashMap<String, OutcomeTemplate>();
+
+	private final ConcurrentMap<String, ValueExpression> valueExpressions =
+			new ConcurrentHashMap<String, ValueExpression>();
+
 	public NavigationLocation resolveNavigationOutcome(NavigationOutcomeExpressionContext context,
 			NavigationLocation outcome) throws Exception {
 		if (outcome == null || outcome.getLocation() == null || !(outcome.getLocation() instanceof String)) {
 			return outcome;
 		}
-		Position position = Position.URL;
-		String s = (String) outcome.getLocation();
-		StringBuffer resolvedLocation = new StringBuffer();
-		Matcher matcher = EL_PATTERN.matcher(s);
-		int i = 0;
-		while (matcher.find()) {
-			String beforeMatch = s.substring(i, matcher.start());
-			if (beforeMatch.indexOf('?') != -1) {
-				position = Position.QUERY;
-			}
-			resolvedLocation.append(beforeMatch);
-			String attribute = matcher.group(1);
-			String expression = matcher.group(2);
-			String converted = resolveConvertAndUrlEncode(context, position, attribute, expression);
-			if (converted == null) {
-				throw new IllegalStateException("Unable resolve and convert expression '" + expression
-						+ "' for outcome '" + s + "'");
+		OutcomeTemplate template = getTemplate((String) outcome.getLocation());
+		if (template.isStatic()) {
+			return outcome;
+		}
+		return new NavigationLocation(template.resolve(context), outcome.isPopup(), outcome.getFragments());
+	}
+
+	private OutcomeTemplate getTemplate(String location) {
+		OutcomeTemplate template = templates.get(location);
+		if (template == null) {
+			template = new OutcomeTemplate(location);
+			if (templates.size() < MAX_CACHE_SIZE) {
+				templates.putIfAbsent(location, template);
 			}
-			resolvedLocation.append(converted);
-			i = matcher.end();
 		}
-		resolvedLocation.append(s.substring(i, s.length()));
-		return new NavigationLocation(resolvedLocation.toString(), outcome.isPopup(), outcome.getFragments());
+		return template;
+	}
+
+	/**
+	 * Resolve, convert and URL encode the specified expression, appending the result to the location being built. By
+	 * default this method delegates to {@link #resolveConvertAndUrlEncode(NavigationOutcomeExpressionContext, Position,
+	 * String, String)}. Subclasses can override this method to write directly to the location.
+	 * @param context The navigation outcome expression context
+	 * @param position The position of the expression inside the URL
+	 * @param attribute The attribute from the URL that the expression is linked to or <tt>null</tt> when resolving
+	 * expression from {@link Position#URL}
+	 * @param expression The expression to resolve
+	 * @param out The location being built
+	 * @return <tt>true</tt> if the expression was appended or <tt>false</tt> if it could not be resolved or converted
+	 * @throws Exception on error
+	 */
+	protected boolean resolveConvertAndUrlEncodeTo(NavigationOutcomeExpressionContext context, Position position,
+			String attribute, String expression, StringBuffer out) throws Exception {
+		String converted = resolveConvertAndUrlEncode(context, position, attribute, expression);
+		if (converted == null) {
+			return false;
+		}
+		out.append(converted);
+		return true;
 	}
 
 	/**
@@ -111,9 +150,16 @@ public class NavigationOutcomeExpressionElResolver implements NavigationOutcomeE
 	 */
 	protected Object resolve(NavigationOutcomeExpressionContext context, Position position, String attribute,
 			String expression) throws Exception {
-		ExpressionFactory expressionFactory = FacesContext.getCurrentInstance().getApplication().getExpressionFactory();
-		ELContext elContext = FacesContext.getCurrentInstance().getELContext();
-		ValueExpression valueExpression = expressionFactory.createValueExpression(elContext, expression, Object.class);
+		FacesContext facesContext = FacesContext.getCurrentInstance();
+		ELContext elContext = facesContext.getELContext();
+		ValueExpression valueExpression = valueExpressions.get(expression);
+		if (valueExpression == null) {
+			ExpressionFactory expressionFactory = facesContext.getApplication().getExpressionFactory();
+			valueExpression = expressionFactory.createValueExpression(elContext, expression, Object.class);
+			if (valueExpressions.size() < MAX_CACHE_SIZE) {
+				valueExpressions.putIfAbsent(expression, valueExpression);
+			}
+		}
 		return valueExpression.getValue(elContext);
 	}
 
@@ -134,35 +180,111 @@ public class NavigationOutcomeExpressionElResolver implements NavigationOutcomeE
 		if (resolved == null) {
 			return null;
 		}
-		String encoding = context.getEncoding();
-		StringBuilder rtn = new StringBuilder();
+		PercentEncoder encoder = PercentEncoder.forEncoding(context.getEncoding());
 		if ((position == Position.QUERY) && attribute == null) {
 			// Expression to expand
 			WebDataBinder dataBinder = context.createDataBinder(attribute, resolved, null);
 			ReverseDataBinder reverseDataBinder = new ReverseDataBinder(dataBinder);
-			PropertyValues values = reverseDataBinder.reverseBind();
-			if (values == null) {
-				return null;
-			}
-			for (PropertyValue value : values.getPropertyValues()) {
-				rtn.append(rtn.length() == 0 ? "" : "&");
-				rtn.append(URLEncoder.encode(value.getName(), encoding));
-				rtn.append("=");
-				rtn.append(URLEncoder.encode((String) value.getValue(), encoding));
-			}
-		} else {
-			WebDataBinder dataBinder = context.createDataBinder(attribute, null, null);
-			ReverseDataBinder reverseDataBinder = new ReverseDataBinder(dataBinder);
-			String converted = reverseDataBinder.reverseConvert(resolved);
-			if (converted == null) {
-				return null;
+			reverseDataBinder.setVerification(reverseBindVerification);
+			reverseDataBinder.setVerificationSampleRate(reverseBindVerificationSampleRate);
+			StringBuffer rtn = new StringBuffer();
+			reverseDataBinder.reverseBind(rtn, encoder.getEncoding());
+			return rtn.toString();
+		}
+		WebDataBinder dataBinder = context.createDataBinder(attribute, null, null);
+		ReverseDataBinder reverseDataBinder = new ReverseDataBinder(dataBinder);
+		String converted = reverseDataBinder.reverseConvert(resolved);
+		if (converted == null) {
+			return null;
+		}
+		String encoded = encoder.encode(converted);
+		return (attribute == null ? encoded : attribute + "=" + encoded);
+	}
+
+	/**
+	 * Set when values expanded from query expressions are verified by binding them back to a new data binder. Disabling
+	 * verification removes a full bind from each navigation. Defaults to {@link Verification#ALWAYS}.
+	 * @param reverseBindVerification The verification mode
+	 * @see ReverseDataBinder#setVerification(Verification)
+	 */
+	public void setReverseBindVerification(Verification reverseBindVerification) {
+		Assert.notNull(reverseBindVerification, "The reverseBindVerification is required");
+		this.reverseBindVerification = reverseBindVerification;
+	}
+
+	/**
+	 * Set the sample rate used when the reverse bind verification is {@link Verification#SAMPLED}. Defaults to
+	 * <tt>100</tt>.
+	 * @param reverseBindVerificationSampleRate The sample rate
+	 * @see ReverseDataBinder#setVerificationSampleRate(int)
+	 */
+	public void setReverseBindVerificationSampleRate(int reverseBindVerificationSampleRate) {
+		Assert.isTrue(reverseBindVerificationSampleRate > 0, "The reverseBindVerificationSampleRate must be positive");
+		this.reverseBindVerificationSampleRate = reverseBindVerificationSampleRate;
+	}
+
+	/**
+	 * A navigation outcome parsed into literal segments and the expressions that appear between them.
+	 */
+	private class OutcomeTemplate {
+
+		private String location;
+
+		private String[] literals;
+
+		private Position[] positions;
+
+		private String[] attributes;
+
+		private String[] expressions;
+
+		public OutcomeTemplate(String location) {
+			this.location = location;
+			List<String> literals = new ArrayList<String>();
+			List<Position> positions = new ArrayList<Position>();
+			List<String> attributes = new ArrayList<String>();
+			List<String> expressions = new ArrayList<String>();
+			Position position = Position.URL;
+			Matcher matcher = EL_PATTERN.matcher(location);
+			int i = 0;
+			while (matcher.find()) {
+				String beforeMatch = location.substring(i, matcher.start());
+				if (beforeMatch.indexOf('?') != -1) {
+					position = Position.QUERY;
+				}
+				literals.add(beforeMatch);
+				positions.add(position);
+				attributes.add(matcher.group(1));
+				expressions.add(matcher.group(2));
+				i = matcher.end();
 			}
-			if (attribute != null) {
-				rtn.append(attribute);
-				rtn.append("=");
+			literals.add(location.substring(i, location.length()));
+			this.literals = literals.toArray(new String[literals.size()]);
+			this.positions = positions.toArray(new Position[positions.size()]);
+			this.attributes = attributes.toArray(new String[attributes.size()]);
+			this.expressions = expressions.toArray(new String[expressions.size()]);
+		}
+
+		/**
+		 * @return <tt>true</tt> if the outcome does not contain any expressions
+		 */
+		public boolean isStatic() {
+			return expressions.length == 0;
+		}
+
+		public String resolve(NavigationOutcomeExpressionContext context) throws Exception {
+			StringBuffer resolvedLocation = new StringBuffer(location.length() + 16 * expressions.length);
+			for (int i = 0; i < expressions.length; i++) {
+				resolvedLocation.append(literals[i]);
+				boolean appended = resolveConvertAndUrlEncodeTo(context, positions[i], attributes[i], expressions[i],
+						resolvedLocation);
+				if (!appended) {
+					throw new IllegalStateException("Unable resolve and convert expression '" + expressions[i]
+							+ "' for outcome '" + location + "'");
+				}
 			}
-			rtn.append(URLEncoder.encode(converted, encoding));
+			resolvedLocation.append(literals[expressions.length]);
+			return resolvedLocation.toString();
 		}
-		return rtn.toString();
 	}
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.bind;
+
+import junit.framework.TestCase;
+
+import org.springframework.validation.DataBinder;
+
+public class ReverseDataBinderEnumTests extends TestCase {
+
+	public void testReverseConvertDifferentEnumTypes() throws Exception {
+		assertEquals("RED", reverseConvert(Color.RED));
+		assertEquals("LARGE", reverseConvert(Size.LARGE));
+		assertEquals("RED", reverseConvert(Color.RED));
+		assertEquals("SMALL", reverseConvert(Size.SMALL));
+	}
+
+	private String reverseConvert(Object value) {
+		return new ReverseDataBinder(new DataBinder(null)).reverseConvert(value);
+	}
+
+	public static enum Color {
+		RED, GREEN
+	}
+
+	public static enum Size {
+		SMALL, LARGE
+	}
+}
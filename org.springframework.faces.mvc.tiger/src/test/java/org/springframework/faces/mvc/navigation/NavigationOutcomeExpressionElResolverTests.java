@@ -63,6 +63,26 @@ public class NavigationOutcomeExpressionElResolverTests extends TestCase {
 				new NavigationLocation("contextRelative:/test")));
 	}
 
+	public void testNoExpressionReturnsSameOutcome() throws Exception {
+		NavigationLocation outcome = new NavigationLocation("contextRelative:/test?a=b");
+		assertSame(outcome, resolver.resolveNavigationOutcome(context, outcome));
+		assertSame(outcome, resolver.resolveNavigationOutcome(context, outcome));
+	}
+
+	public void testRepeatedResolve() throws Exception {
+		WebDataBinder dataBinder = new WebDataBinder(null);
+		EasyMock.expect(context.getEncoding()).andStubReturn(WebUtils.DEFAULT_CHARACTER_ENCODING);
+		EasyMock.expect(context.createDataBinder(null, null, null)).andStubReturn(dataBinder);
+		EasyMock.expect(context.createDataBinder("value", null, null)).andStubReturn(dataBinder);
+		EasyMock.replay(context);
+		NavigationLocation outcome = new NavigationLocation("contextRelative:/test/#{i1}/x?value=#{i2}&c=d", true,
+				new String[] { "f" });
+		for (int i = 0; i < 3; i++) {
+			assertEquals(new NavigationLocation("contextRelative:/test/123/x?value=456&c=d", true,
+					new String[] { "f" }), resolver.resolveNavigationOutcome(context, outcome));
+		}
+	}
+
 	public void testSimpleQuery() throws Exception {
 		WebDataBinder dataBinder = new WebDataBinder(null);
 		EasyMock.expect(context.getEncoding()).andStubReturn(WebUtils.DEFAULT_CHARACTER_ENCODING);
@@ -92,6 +112,17 @@ public class NavigationOutcomeExpressionElResolverTests extends TestCase {
 				.resolveNavigationOutcome(context, new NavigationLocation("contextRelative:/test?#{e1}")));
 	}
 
+	public void testConvertAndUrlEncodeOverride() throws Exception {
+		resolver = new MockNavigationOutcomeExpressionElResolver() {
+			protected String convertAndUrlEncode(NavigationOutcomeExpressionContext context, Position position,
+					String attribute, String expression, Object resolved) throws Exception {
+				return "[" + resolved + "]";
+			}
+		};
+		assertEquals(new NavigationLocation("contextRelative:/test/[123]/x?value=[456]"), resolver
+				.resolveNavigationOutcome(context, new NavigationLocation("contextRelative:/test/#{i1}/x?value=#{i2}")));
+	}
+
 	public void testRealResolve() throws Exception {
 		MockFacesContext12 facesContext = new MockFacesContext12();
 		MockFacesContext12.setCurrentInstance(facesContext);
@@ -106,6 +137,9 @@ public class NavigationOutcomeExpressionElResolverTests extends TestCase {
 		resolver = new NavigationOutcomeExpressionElResolver();
 		Object resolved = resolver.resolve(context, Position.QUERY, "att", "#{expression}");
 		assertEquals("test", resolved);
+		// Second resolve uses the cached value expression
+		resolved = resolver.resolve(context, Position.QUERY, "att", "#{expression}");
+		assertEquals("test", resolved);
 	}
 
 	private static class MockNavigationOutcomeExpressionElResolver extends NavigationOutcomeExpressionElResolver {
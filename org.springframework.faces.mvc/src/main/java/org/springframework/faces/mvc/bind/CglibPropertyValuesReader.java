@@ -0,0 +1,81 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.bind;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import net.sf.cglib.beans.BulkBean;
+
+/**
+ * {@link PropertyValuesReader} that uses a CGLIB generated {@link BulkBean} to read property values without
+ * reflection. This class must only be loaded when CGLIB is present on the classpath.
+ * 
+ * @author Phillip Webb
+ */
+class CglibPropertyValuesReader implements PropertyValuesReader {
+
+	private BulkBean bulkBean;
+
+	private CglibPropertyValuesReader(BulkBean bulkBean) {
+		this.bulkBean = bulkBean;
+	}
+
+	public Object[] getPropertyValues(Object target) {
+		return bulkBean.getPropertyValues(target);
+	}
+
+	/**
+	 * Create a new reader for the specified properties if possible.
+	 * @param targetClass The target class
+	 * @param properties The properties to read, each must have both a read and write method
+	 * @return A new reader or <tt>null</tt> if the properties cannot be accessed by generated code
+	 */
+	public static PropertyValuesReader create(Class targetClass, PropertyDescriptor[] properties) {
+		if (!isPublic(targetClass)) {
+			return null;
+		}
+		String[] getters = new String[properties.length];
+		String[] setters = new String[properties.length];
+		Class[] types = new Class[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			Method readMethod = properties[i].getReadMethod();
+			Method writeMethod = properties[i].getWriteMethod();
+			if (!isPublic(readMethod) || !isPublic(writeMethod)
+					|| !readMethod.getReturnType().equals(writeMethod.getParameterTypes()[0])) {
+				return null;
+			}
+			getters[i] = readMethod.getName();
+			setters[i] = writeMethod.getName();
+			types[i] = readMethod.getReturnType();
+		}
+		return new CglibPropertyValuesReader(BulkBean.create(targetClass, getters, setters, types));
+	}
+
+	private static boolean isPublic(Class type) {
+		for (Class c = type; c != null; c = c.getDeclaringClass()) {
+			if (!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isPublic(Method method) {
+		return Modifier.isPublic(method.getModifiers()) && isPublic(method.getDeclaringClass());
+	}
+}
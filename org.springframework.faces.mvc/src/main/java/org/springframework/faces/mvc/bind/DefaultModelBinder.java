@@ -15,6 +15,9 @@
  */
 package org.springframework.faces.mvc.bind;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -29,52 +32,130 @@ import org.springframework.faces.mvc.execution.RequestContext;
 import org.springframework.faces.mvc.execution.RequestContextHolder;
 import org.springframework.faces.mvc.execution.ScopeType;
 import org.springframework.util.Assert;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
 
 /**
  * Default implementation of {@link ModelBinder} that exposes MVC Model elements to JSF using MVC {@link ScopeType}s or
  * registered spring {@link Scope}s. By default this binder is configured with {@link ImplicitModelScopeProvider}
  * support, falling back to <tt>viewScope</tt> when an implicit scope name is not found.
+ * <p>
+ * When the configured {@link ModelScopeProvider} does not depend on model values (as is the case for all providers
+ * included with Faces MVC) the resolved scope of each model key is cached. Values bound to the same internal Faces MVC
+ * scope are added using a single <tt>putAll</tt> call.
  * 
  * @author Phillip Webb
  */
 public class DefaultModelBinder implements ModelBinder, BeanFactoryAware, InitializingBean {
 
+	private static final int MAX_CACHED_MODEL_SCOPES = 256;
+
 	private ConfigurableBeanFactory beanFactory;
 	private ModelScopeProvider modelScopeProvider;
 
+	/**
+	 * Cache of model key to resolved {@link ModelScopeTarget}. Only used when the {@link #modelScopeProvider} does not
+	 * depend on model values.
+	 */
+	private final Map modelScopeTargets = Collections.synchronizedMap(new HashMap());
+
+	private volatile boolean cacheModelScopes;
+
 	public DefaultModelBinder() {
-		this.modelScopeProvider = new ImplicitModelScopeProvider(ScopeType.VIEW);
+		setModelScopeProvider(new ImplicitModelScopeProvider(ScopeType.VIEW));
 	}
 
 	public void bindModel(Map model) {
 		RequestContext requestContext = RequestContextHolder.getRequestContext();
 		Assert.notNull(requestContext, "RequestContext not found");
+		Map mvcScopeValues = null;
 		for (Iterator iterator = model.entrySet().iterator(); iterator.hasNext();) {
-			final Map.Entry modelEntry = (Map.Entry) iterator.next();
-			final Object modelValue = modelEntry.getValue();
-			ScopedModelAttribute scopedModelAttribute = new ScopedModelAttribute((String) modelEntry.getKey());
-			scopedModelAttribute = modelScopeProvider.getModelScope(scopedModelAttribute, modelValue);
-			Assert.notNull(scopedModelAttribute.getScope());
-			bindModelAttribute(requestContext, scopedModelAttribute, modelValue);
+			Map.Entry modelEntry = (Map.Entry) iterator.next();
+			ModelScopeTarget target = getModelScopeTarget((String) modelEntry.getKey(), modelEntry.getValue());
+			if (target.getMvcScope() != null) {
+				// Group values so that each internal Faces MVC scope is updated once
+				if (mvcScopeValues == null) {
+					mvcScopeValues = new IdentityHashMap();
+				}
+				LocalAttributeMap values = (LocalAttributeMap) mvcScopeValues.get(target.getMvcScope());
+				if (values == null) {
+					values = new LocalAttributeMap();
+					mvcScopeValues.put(target.getMvcScope(), values);
+				}
+				values.put(target.getModelAttribute(), modelEntry.getValue());
+			} else {
+				bindToScope(target, modelEntry.getValue());
+			}
+		}
+		if (mvcScopeValues != null) {
+			for (Iterator iterator = mvcScopeValues.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry scopeEntry = (Map.Entry) iterator.next();
+				ScopeType mvcScope = (ScopeType) scopeEntry.getKey();
+				mvcScope.getScope(requestContext).putAll((LocalAttributeMap) scopeEntry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Returns the {@link ModelScopeTarget} for the specified model entry, using a cached value when possible.
+	 * @param modelKey The model key
+	 * @param modelValue The model value
+	 * @return The model scope target
+	 */
+	private ModelScopeTarget getModelScopeTarget(String modelKey, Object modelValue) {
+		if (!cacheModelScopes) {
+			return resolveModelScopeTarget(modelKey, modelValue);
 		}
+		ModelScopeTarget target = (ModelScopeTarget) modelScopeTargets.get(modelKey);
+		if (target == null) {
+			target = resolveModelScopeTarget(modelKey, modelValue);
+			if (modelScopeTargets.size() < MAX_CACHED_MODEL_SCOPES) {
+				modelScopeTargets.put(modelKey, target);
+			}
+		}
+		return target;
 	}
 
-	private void bindModelAttribute(RequestContext requestContext, ScopedModelAttribute scopedModelAttribute,
-			final Object modelValue) {
+	private ModelScopeTarget resolveModelScopeTarget(String modelKey, Object modelValue) {
+		ScopedModelAttribute scopedModelAttribute = new ScopedModelAttribute(modelKey);
+		scopedModelAttribute = modelScopeProvider.getModelScope(scopedModelAttribute, modelValue);
+		Assert.notNull(scopedModelAttribute.getScope());
 		// Attempt to use the internal Faces MVC scopes
 		ScopeType mvcScope = ScopeType.find(scopedModelAttribute.getScope());
 		if (mvcScope != null) {
-			mvcScope.getScope(requestContext).put(scopedModelAttribute.getModelAttribute(), modelValue);
-		} else {
-			// Fall back to the spring registered scopes
-			Scope scope = beanFactory.getRegisteredScope(scopedModelAttribute.getScope());
-			Assert.notNull(scope, "Unable to locate " + scopedModelAttribute.getScope() + " from beanFactory");
-			scope.get(scopedModelAttribute.getModelAttribute(), new ObjectFactory() {
-				public Object getObject() throws BeansException {
-					return modelValue;
-				}
-			});
+			return new ModelScopeTarget(scopedModelAttribute.getModelAttribute(), mvcScope, null);
 		}
+		// Fall back to the spring registered scopes
+		Scope scope = beanFactory.getRegisteredScope(scopedModelAttribute.getScope());
+		Assert.notNull(scope, "Unable to locate " + scopedModelAttribute.getScope() + " from beanFactory");
+		return new ModelScopeTarget(scopedModelAttribute.getModelAttribute(), null, scope);
+	}
+
+	private void bindToScope(ModelScopeTarget target, final Object modelValue) {
+		target.getScope().get(target.getModelAttribute(), new ObjectFactory() {
+			public Object getObject() throws BeansException {
+				return modelValue;
+			}
+		});
+	}
+
+	/**
+	 * Determine if the scopes returned from the specified provider depend only on the model key, in which case they can
+	 * be cached. Only the providers included with Faces MVC are considered.
+	 * @param modelScopeProvider The model scope provider
+	 * @return <tt>true</tt> if the results of the provider can be cached
+	 */
+	private static boolean isCacheable(ModelScopeProvider modelScopeProvider) {
+		if (modelScopeProvider == null) {
+			return true;
+		}
+		if (modelScopeProvider instanceof ScopeType
+				|| modelScopeProvider.getClass().equals(SpecificModelScopeProvider.class)) {
+			return true;
+		}
+		if (modelScopeProvider.getClass().equals(ImplicitModelScopeProvider.class)) {
+			return isCacheable(((ImplicitModelScopeProvider) modelScopeProvider).getParent());
+		}
+		return false;
 	}
 
 	public void afterPropertiesSet() throws Exception {
@@ -87,6 +168,7 @@ public class DefaultModelBinder implements ModelBinder, BeanFactoryAware, Initia
 				"BeanScopeModelBinder can only be used bean factories that "
 						+ "implement the ConfigurableBeanFactory interface");
 		this.beanFactory = (ConfigurableBeanFactory) beanFactory;
+		this.modelScopeTargets.clear();
 	}
 
 	/**
@@ -96,6 +178,8 @@ public class DefaultModelBinder implements ModelBinder, BeanFactoryAware, Initia
 	 */
 	public void setModelScopeProvider(ModelScopeProvider modelScopeProvider) {
 		this.modelScopeProvider = modelScopeProvider;
+		this.cacheModelScopes = isCacheable(modelScopeProvider);
+		this.modelScopeTargets.clear();
 	}
 
 	/**
@@ -103,6 +187,37 @@ public class DefaultModelBinder implements ModelBinder, BeanFactoryAware, Initia
 	 * @param scope The scope to bind all model elements to
 	 */
 	public void setScope(String scope) {
-		this.modelScopeProvider = new SpecificModelScopeProvider(scope);
+		setModelScopeProvider(new SpecificModelScopeProvider(scope));
+	}
+
+	/**
+	 * The resolved target of a model key, either an internal Faces MVC {@link ScopeType} or a registered spring
+	 * {@link Scope}.
+	 */
+	private static final class ModelScopeTarget {
+
+		private String modelAttribute;
+
+		private ScopeType mvcScope;
+
+		private Scope scope;
+
+		public ModelScopeTarget(String modelAttribute, ScopeType mvcScope, Scope scope) {
+			this.modelAttribute = modelAttribute;
+			this.mvcScope = mvcScope;
+			this.scope = scope;
+		}
+
+		public String getModelAttribute() {
+			return modelAttribute;
+		}
+
+		public ScopeType getMvcScope() {
+			return mvcScope;
+		}
+
+		public Scope getScope() {
+			return scope;
+		}
 	}
 }
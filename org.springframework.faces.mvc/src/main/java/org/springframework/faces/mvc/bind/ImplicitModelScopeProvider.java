@@ -54,6 +54,14 @@ public class ImplicitModelScopeProvider implements ModelScopeProvider {
 		return parent == null ? scopedModelAttribute : parent.getModelScope(scopedModelAttribute, modelValue);
 	}
 
+	/**
+	 * Returns the parent provider.
+	 * @return The parent provider or <tt>null</tt>
+	 */
+	ModelScopeProvider getParent() {
+		return parent;
+	}
+
 	private boolean scopeAlreadyDefined(ScopedModelAttribute scopedModelAttribute) {
 		return StringUtils.hasText(scopedModelAttribute.getScope());
 	}
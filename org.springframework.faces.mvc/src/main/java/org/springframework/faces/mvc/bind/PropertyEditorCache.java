@@ -0,0 +1,89 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.bind;
+
+import java.beans.PropertyEditor;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.SimpleTypeConverter;
+import org.springframework.core.NamedThreadLocal;
+
+/**
+ * Internal thread-confined cache of {@link PropertyEditor} instances used by {@link ReverseDataBinder}. Property
+ * editors are stateful and cannot be shared between threads, however, an editor that is only ever used by a single
+ * thread can safely be reused for subsequent conversions. Each thread holds its own {@link SimpleTypeConverter} (with
+ * its default editors) and its own editor instances keyed by the type that they edit. Editors are not keyed by editor
+ * class since a single editor class may be bound to a specific type when created (for example the JDK editor used
+ * for enumerations). The per-thread cache is softly referenced so that it never prevents editors from being
+ * reclaimed.
+ * 
+ * @author Phillip Webb
+ */
+final class PropertyEditorCache {
+
+	private static final ThreadLocal cache = new NamedThreadLocal("ReverseDataBinder PropertyEditor cache");
+
+	private SimpleTypeConverter simpleTypeConverter = new SimpleTypeConverter();
+
+	private Map editors = new HashMap();
+
+	private PropertyEditorCache() {
+	}
+
+	/**
+	 * Returns the cache for the current thread, creating it if necessary.
+	 * @return The cache for the current thread
+	 */
+	private static PropertyEditorCache get() {
+		Reference reference = (Reference) cache.get();
+		PropertyEditorCache editorCache = (reference == null ? null : (PropertyEditorCache) reference.get());
+		if (editorCache == null) {
+			editorCache = new PropertyEditorCache();
+			cache.set(new SoftReference(editorCache));
+		}
+		return editorCache;
+	}
+
+	/**
+	 * Returns the {@link SimpleTypeConverter} confined to the current thread.
+	 * @return The simple type converter
+	 */
+	public static SimpleTypeConverter getSimpleTypeConverter() {
+		return get().simpleTypeConverter;
+	}
+
+	/**
+	 * Returns the editor instance for the specified type confined to the current thread.
+	 * @param requiredType The type being edited
+	 * @return The editor or <tt>null</tt> if no editor for the type has been {@link #put(Class, PropertyEditor) cached}
+	 * by the current thread
+	 */
+	public static PropertyEditor getEditor(Class requiredType) {
+		return (PropertyEditor) get().editors.get(requiredType);
+	}
+
+	/**
+	 * Cache the specified editor so that it can be reused by the current thread.
+	 * @param requiredType The type being edited
+	 * @param editor The editor to cache
+	 */
+	public static void put(Class requiredType, PropertyEditor editor) {
+		get().editors.put(requiredType, editor);
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.bind;
+
+/**
+ * Internal strategy used by {@link ReverseDataBinder} to read the values of a fixed set of bean properties in a single
+ * call.
+ * 
+ * @author Phillip Webb
+ */
+interface PropertyValuesReader {
+
+	/**
+	 * Read the values of all properties from the specified target.
+	 * @param target The target bean
+	 * @return The property values, in the same order as the properties handled by the reader
+	 */
+	Object[] getPropertyValues(Object target);
+}
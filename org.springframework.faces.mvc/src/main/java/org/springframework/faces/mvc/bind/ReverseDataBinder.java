@@ -18,8 +18,13 @@ package org.springframework.faces.mvc.bind;
 import java.beans.PropertyDescriptor;
 import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
@@ -27,16 +32,18 @@ import java.util.WeakHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.MutablePropertyValues;
-import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.PropertyAccessorUtils;
 import org.springframework.beans.PropertyEditorRegistrySupport;
 import org.springframework.beans.PropertyValues;
 import org.springframework.beans.SimpleTypeConverter;
 import org.springframework.core.JdkVersion;
+import org.springframework.core.enums.StaticLabeledEnum;
+import org.springframework.faces.mvc.support.PercentEncoder;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.DataBinder;
 
@@ -44,6 +51,13 @@ import org.springframework.validation.DataBinder;
  * Utility class that can be used to perform a reverse bind for a given {@link DataBinder}. This class can be used to
  * obtain {@link PropertyValues} for a given a {@link DataBinder} based on the current values of its <tt>target</tt> or
  * perform a simple reverse conversion for plain parameter values when the binders <tt>target</tt> is <tt>null</tt>.
+ * <p>
+ * The mutable properties and default values of each target class are introspected once and cached, the cache does not
+ * prevent classes from being unloaded. When CGLIB is available on the classpath property values are read using a
+ * generated accessor class, otherwise reflection is used.
+ * <p>
+ * Reverse bound values are usually verified by binding them back to the <tt>dataBinder</tt>. Verification can be
+ * sampled or disabled using {@link #setVerification(Verification)}.
  * 
  * @author Phillip Webb
  */
@@ -53,6 +67,15 @@ public class ReverseDataBinder {
 
 	private static Map unknownEditorTypes = Collections.synchronizedMap(new WeakHashMap());
 
+	/**
+	 * Cache of {@link ReverseBindingPlan}s keyed by target class. Plans are softly referenced since they refer back to
+	 * the class.
+	 */
+	private static Map plans = Collections.synchronizedMap(new WeakHashMap());
+
+	private static final boolean CGLIB_PRESENT = ClassUtils.isPresent("net.sf.cglib.beans.BulkBean",
+			ReverseDataBinder.class.getClassLoader());
+
 	/**
 	 * Set of properties that are always skipped.
 	 */
@@ -64,10 +87,17 @@ public class ReverseDataBinder {
 
 	private DataBinder dataBinder;
 
-	private SimpleTypeConverter simpleTypeConverter;
-
 	private boolean skipDefaultValues = true;
 
+	private Verification verification = Verification.ALWAYS;
+
+	private int verificationSampleRate = 100;
+
+	/**
+	 * Counter used to select the calls that are verified when {@link Verification#SAMPLED sampling}.
+	 */
+	private static int verificationCounter;
+
 	/**
 	 * Get the canonical property name for a given optional descriptor.
 	 * @param descriptor The descriptor or <tt>null</tt>
@@ -82,7 +112,7 @@ public class ReverseDataBinder {
 	 * @param descriptor The property descriptor
 	 * @return <tt>true</tt> if the property is mutable
 	 */
-	private boolean isMutableProperty(PropertyDescriptor descriptor) {
+	private static boolean isMutableProperty(PropertyDescriptor descriptor) {
 		return descriptor.getReadMethod() != null && descriptor.getWriteMethod() != null;
 	}
 
@@ -91,7 +121,7 @@ public class ReverseDataBinder {
 	 * @param property the property descriptor
 	 * @return <tt>true</tt> if the property is skipped
 	 */
-	private boolean isSkippedProperty(PropertyDescriptor property) {
+	private static boolean isSkippedProperty(PropertyDescriptor property) {
 		return SKIPPED_PROPERTIES.contains(property.getName());
 	}
 
@@ -159,18 +189,36 @@ public class ReverseDataBinder {
 			// No custom editor -> check default editors.
 			editor = propertyEditorRegistrySupport.getDefaultEditor(requiredType);
 			if (editor == null && !String.class.equals(requiredType)) {
-				// No BeanWrapper default editor -> check standard JavaBean editor.
-				editor = BeanUtils.findEditorByConvention(requiredType);
-				if (editor == null && !unknownEditorTypes.containsKey(requiredType)) {
-					// Global PropertyEditorManager fallback...
-					editor = PropertyEditorManager.findEditor(requiredType);
-					if (editor == null) {
-						// Regular case as of Spring 2.5
-						unknownEditorTypes.put(requiredType, Boolean.TRUE);
-					}
-				}
+				editor = findEditorByConvention(requiredType);
+			}
+		}
+		return editor;
+	}
+
+	/**
+	 * Find a standard JavaBean or {@link PropertyEditorManager} editor for the given type. Editors are reused from the
+	 * {@link PropertyEditorCache} of the current thread whenever possible.
+	 * @param requiredType the type to find an editor for
+	 * @return the corresponding editor, or <code>null</code> if none
+	 */
+	private PropertyEditor findEditorByConvention(Class requiredType) {
+		PropertyEditor editor = PropertyEditorCache.getEditor(requiredType);
+		if (editor != null) {
+			return editor;
+		}
+		// No BeanWrapper default editor -> check standard JavaBean editor.
+		editor = BeanUtils.findEditorByConvention(requiredType);
+		if (editor == null && !unknownEditorTypes.containsKey(requiredType)) {
+			// Global PropertyEditorManager fallback...
+			editor = PropertyEditorManager.findEditor(requiredType);
+			if (editor == null) {
+				// Regular case as of Spring 2.5
+				unknownEditorTypes.put(requiredType, Boolean.TRUE);
 			}
 		}
+		if (editor != null) {
+			PropertyEditorCache.put(requiredType, editor);
+		}
 		return editor;
 	}
 
@@ -192,54 +240,65 @@ public class ReverseDataBinder {
 	}
 
 	/**
-	 * Gets the {@link SimpleTypeConverter} that should be used for conversion.
+	 * Gets the {@link SimpleTypeConverter} that should be used for conversion. By default the converter is shared by
+	 * all binders used on the current thread so it should only be used to obtain default editors.
 	 * @return The simple type converter
 	 */
 	protected SimpleTypeConverter getSimpleTypeConverter() {
-		if (simpleTypeConverter == null) {
-			simpleTypeConverter = new SimpleTypeConverter();
-		}
-		return simpleTypeConverter;
+		return PropertyEditorCache.getSimpleTypeConverter();
 	}
 
 	/**
 	 * Perform the reverse bind on the <tt>dataBinder</tt> provided in the constructor. Note: Calling with method will
-	 * also trigger a <tt>bind</tt> operation on the <tt>dataBinder</tt>. This method returns {@link PropertyValues}
-	 * containing a name/value pairs for each property that can be bound. Property values are encoded as Strings using
-	 * the property editors bound to the original dataBinder.
+	 * also trigger a <tt>bind</tt> operation on the <tt>dataBinder</tt> unless {@link #setVerification(Verification)
+	 * verification} has been disabled. This method returns {@link PropertyValues} containing a name/value pairs for
+	 * each property that can be bound. Property values are encoded as Strings using the property editors bound to the
+	 * original dataBinder.
 	 * @return property values that could be re-bound using the data binder
 	 * @throws IllegalStateException if the target object values cannot be bound
 	 */
 	public PropertyValues reverseBind() {
-		Assert.notNull(dataBinder.getTarget(),
-				"ReverseDataBinder.reverseBind can only be used with a DataBinder that has a target object");
 		MutablePropertyValues rtn = new MutablePropertyValues();
-		BeanWrapper target = PropertyAccessorFactory.forBeanPropertyAccess(dataBinder.getTarget());
-		PropertyDescriptor[] propertyDescriptors = target.getPropertyDescriptors();
-
-		BeanWrapper defaultValues = null;
-		if (skipDefaultValues) {
-			defaultValues = newDefaultTargetValues(dataBinder.getTarget());
+		reverseBind(rtn, null, null);
+		if (isVerificationRequired()) {
+			verify(rtn);
 		}
+		return rtn;
+	}
 
-		for (int i = 0; i < propertyDescriptors.length; i++) {
-			PropertyDescriptor property = propertyDescriptors[i];
-			String propertyName = getPropertyName(property);
-			Object propertyValue = target.getPropertyValue(propertyName);
+	/**
+	 * Perform the reverse bind on the <tt>dataBinder</tt> provided in the constructor, writing URL encoded
+	 * <tt>name=value</tt> pairs separated by <tt>&amp;</tt> directly to the specified destination. Values are
+	 * converted in the same way as {@link #reverseBind()}.
+	 * @param out The destination for the encoded pairs
+	 * @param encoding The character encoding used to URL encode names and values
+	 * @return The number of pairs that were written
+	 * @throws IllegalStateException if the target object values cannot be bound
+	 */
+	public int reverseBind(StringBuffer out, String encoding) {
+		Assert.notNull(out, "The out parameter is required");
+		MutablePropertyValues verificationValues = (isVerificationRequired() ? new MutablePropertyValues() : null);
+		int count = reverseBind(verificationValues, out, PercentEncoder.forEncoding(encoding));
+		if (verificationValues != null) {
+			verify(verificationValues);
+		}
+		return count;
+	}
 
-			if (isSkippedProperty(property)) {
-				continue;
-			}
+	private int reverseBind(MutablePropertyValues values, StringBuffer out, PercentEncoder encoder) {
+		Object target = dataBinder.getTarget();
+		Assert.notNull(target,
+				"ReverseDataBinder.reverseBind can only be used with a DataBinder that has a target object");
+		ReverseBindingPlan plan = getReverseBindingPlan(target.getClass());
+		boolean skipDefaults = (skipDefaultValues && plan.hasDefaultValues());
+		Object[] propertyValues = plan.getPropertyValues(target);
+		int count = 0;
 
-			if (!isMutableProperty(property)) {
-				if (logger.isDebugEnabled()) {
-					logger.debug("Ignoring '" + propertyName + "' due to missing read/write methods");
-				}
-				continue;
-			}
+		for (int i = 0; i < plan.getSize(); i++) {
+			String propertyName = plan.getPropertyName(i);
+			Object propertyValue = propertyValues[i];
 
-			if (defaultValues != null
-					&& ObjectUtils.nullSafeEquals(defaultValues.getPropertyValue(propertyName), propertyValue)) {
+			if (skipDefaults && ObjectUtils.nullSafeEquals(plan.getDefaultValue(i), propertyValue)) {
 				if (logger.isDebugEnabled()) {
 					logger.debug("Skipping '" + propertyName + "' as property contains default value");
 				}
@@ -247,39 +306,69 @@ public class ReverseDataBinder {
 			}
 
 			// Find a property editor
-			PropertyEditorRegistrySupport propertyEditorRegistrySupport = null;
-			if (target instanceof PropertyEditorRegistrySupport) {
-				propertyEditorRegistrySupport = (PropertyEditorRegistrySupport) target;
-			}
-			PropertyEditor propertyEditor = findEditor(propertyEditorRegistrySupport, target.getWrappedInstance(),
-					target.getPropertyType(propertyName), property);
+			PropertyEditor propertyEditor = findEditor(null, target, plan.getPropertyType(i), plan.getProperty(i));
 
 			// Convert and store the value
 			String convertedPropertyValue = convertToStringUsingPropertyEditor(propertyValue, propertyEditor);
 			if (convertedPropertyValue != null) {
-				rtn.addPropertyValue(propertyName, convertedPropertyValue);
+				if (values != null) {
+					values.addPropertyValue(propertyName, convertedPropertyValue);
+				}
+				if (out != null) {
+					if (count > 0) {
+						out.append('&');
+					}
+					encoder.encode(propertyName, out);
+					out.append('=');
+					encoder.encode(convertedPropertyValue, out);
+				}
+				count++;
 			}
 		}
+		return count;
+	}
 
-		dataBinder.bind(rtn);
+	/**
+	 * Determine if the current call should be verified.
+	 * @return <tt>true</tt> if verification is required
+	 */
+	private boolean isVerificationRequired() {
+		if (verification == Verification.SAMPLED) {
+			synchronized (ReverseDataBinder.class) {
+				return (verificationCounter++ % verificationSampleRate) == 0;
+			}
+		}
+		return (verification == Verification.ALWAYS);
+	}
+
+	/**
+	 * Verify reverse bound values by binding them to the <tt>dataBinder</tt>.
+	 * @param values The values to verify
+	 * @throws IllegalStateException if the values result in binding errors
+	 */
+	private void verify(MutablePropertyValues values) {
+		dataBinder.bind(values);
 		BindingResult bindingResult = dataBinder.getBindingResult();
 		if (bindingResult.hasErrors()) {
 			throw new IllegalStateException("Unable to reverse bind from target '" + dataBinder.getObjectName()
-					+ "', the properties '" + rtn + "' will result in binding errors when re-bound "
+					+ "', the properties '" + values + "' will result in binding errors when re-bound "
 					+ bindingResult.getAllErrors());
 		}
-		return rtn;
 	}
 
-	private BeanWrapper newDefaultTargetValues(Object target) {
-		try {
-			Object defaultValues = target.getClass().newInstance();
-			return PropertyAccessorFactory.forBeanPropertyAccess(defaultValues);
-		} catch (Exception e) {
-			logger.warn("Unable to construct default values target instance for class " + target.getClass()
-					+ ", default values will not be skipped");
-			return null;
+	/**
+	 * Returns the cached {@link ReverseBindingPlan} for the specified class, creating it if necessary.
+	 * @param targetClass The target class
+	 * @return The reverse binding plan
+	 */
+	private ReverseBindingPlan getReverseBindingPlan(Class targetClass) {
+		Reference reference = (Reference) plans.get(targetClass);
+		ReverseBindingPlan plan = (reference == null ? null : (ReverseBindingPlan) reference.get());
+		if (plan == null) {
+			plan = new ReverseBindingPlan(targetClass);
+			plans.put(targetClass, new SoftReference(plan));
 		}
+		return plan;
 	}
 
 	/**
@@ -304,4 +393,179 @@ public class ReverseDataBinder {
 	public void setSkipDefaultValues(boolean skipDefaultValues) {
 		this.skipDefaultValues = skipDefaultValues;
 	}
+
+	/**
+	 * Set when reverse bound values are verified by binding them back to the <tt>dataBinder</tt>. Verification detects
+	 * values that cannot be round-tripped at the cost of a full bind per call. The default setting is
+	 * {@link Verification#ALWAYS}.
+	 * @param verification The verification mode
+	 * @see #setVerificationSampleRate(int)
+	 */
+	public void setVerification(Verification verification) {
+		Assert.notNull(verification, "The verification is required");
+		this.verification = verification;
+	}
+
+	/**
+	 * Set the sample rate used with {@link Verification#SAMPLED}, a rate of <tt>n</tt> verifies one call in every
+	 * <tt>n</tt>. The default rate is <tt>100</tt>.
+	 * @param verificationSampleRate The sample rate
+	 */
+	public void setVerificationSampleRate(int verificationSampleRate) {
+		Assert.isTrue(verificationSampleRate > 0, "The verificationSampleRate must be positive");
+		this.verificationSampleRate = verificationSampleRate;
+	}
+
+	/**
+	 * An enumeration of the verification modes supported by the {@link ReverseDataBinder}.
+	 * @see ReverseDataBinder#setVerification(Verification)
+	 */
+	public static final class Verification extends StaticLabeledEnum {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Every reverse bind is verified.
+		 */
+		public static final Verification ALWAYS = new Verification(0, "Always");
+
+		/**
+		 * A sample of reverse binds are verified.
+		 * @see ReverseDataBinder#setVerificationSampleRate(int)
+		 */
+		public static final Verification SAMPLED = new Verification(1, "Sampled");
+
+		/**
+		 * Reverse binds are never verified.
+		 */
+		public static final Verification NEVER = new Verification(2, "Never");
+
+		private Verification(int code, String label) {
+			super(code, label);
+		}
+	}
+
+	/**
+	 * {@link PropertyValuesReader} that uses reflection to call each read method.
+	 */
+	static class ReflectivePropertyValuesReader implements PropertyValuesReader {
+
+		private Method[] readMethods;
+
+		public ReflectivePropertyValuesReader(PropertyDescriptor[] properties) {
+			this.readMethods = new Method[properties.length];
+			for (int i = 0; i < properties.length; i++) {
+				readMethods[i] = properties[i].getReadMethod();
+				ReflectionUtils.makeAccessible(readMethods[i]);
+			}
+		}
+
+		public Object[] getPropertyValues(Object target) {
+			Object[] values = new Object[readMethods.length];
+			for (int i = 0; i < readMethods.length; i++) {
+				values[i] = ReflectionUtils.invokeMethod(readMethods[i], target);
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * The mutable properties of a target class, in binding order, along with the values of a newly constructed
+	 * instance. Plans are immutable and can be shared between threads.
+	 */
+	private static class ReverseBindingPlan {
+
+		private static final Log logger = LogFactory.getLog(ReverseBindingPlan.class);
+
+		private PropertyDescriptor[] properties;
+
+		private String[] propertyNames;
+
+		private PropertyValuesReader reader;
+
+		private Object[] defaultValues;
+
+		public ReverseBindingPlan(Class targetClass) {
+			PropertyDescriptor[] propertyDescriptors = BeanUtils.getPropertyDescriptors(targetClass);
+			List mutableProperties = new ArrayList();
+			for (int i = 0; i < propertyDescriptors.length; i++) {
+				PropertyDescriptor property = propertyDescriptors[i];
+				if (isSkippedProperty(property)) {
+					continue;
+				}
+				if (!isMutableProperty(property)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Ignoring '" + property.getName() + "' of " + targetClass
+								+ " due to missing read/write methods");
+					}
+					continue;
+				}
+				mutableProperties.add(property);
+			}
+			this.properties = (PropertyDescriptor[]) mutableProperties.toArray(new PropertyDescriptor[] {});
+			this.propertyNames = new String[properties.length];
+			for (int i = 0; i < properties.length; i++) {
+				propertyNames[i] = PropertyAccessorUtils.canonicalPropertyName(properties[i].getName());
+			}
+			this.reader = newPropertyValuesReader(targetClass);
+			this.defaultValues = newDefaultValues(targetClass);
+		}
+
+		private PropertyValuesReader newPropertyValuesReader(Class targetClass) {
+			if (CGLIB_PRESENT) {
+				try {
+					PropertyValuesReader reader = CglibPropertyValuesReader.create(targetClass, properties);
+					if (reader != null) {
+						return reader;
+					}
+				} catch (RuntimeException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Unable to generate property accessor for " + targetClass
+								+ ", falling back to reflection", e);
+					}
+				}
+			}
+			return new ReflectivePropertyValuesReader(properties);
+		}
+
+		private Object[] newDefaultValues(Class targetClass) {
+			Object defaultTarget;
+			try {
+				defaultTarget = targetClass.newInstance();
+			} catch (Exception e) {
+				logger.warn("Unable to construct default values target instance for " + targetClass
+						+ ", default values will not be skipped");
+				return null;
+			}
+			return getPropertyValues(defaultTarget);
+		}
+
+		public int getSize() {
+			return properties.length;
+		}
+
+		public PropertyDescriptor getProperty(int index) {
+			return properties[index];
+		}
+
+		public String getPropertyName(int index) {
+			return propertyNames[index];
+		}
+
+		public Class getPropertyType(int index) {
+			return properties[index].getPropertyType();
+		}
+
+		public Object[] getPropertyValues(Object target) {
+			return reader.getPropertyValues(target);
+		}
+
+		public boolean hasDefaultValues() {
+			return defaultValues != null;
+		}
+
+		public Object getDefaultValue(int index) {
+			return defaultValues[index];
+		}
+	}
 }
@@ -98,6 +98,8 @@ public abstract class AbstractELResolver extends ELResolver {
 	 * @param property
 	 * @param operation Callback interface used to execute the operation
 	 * @return Result of the operation
+	 * @deprecated No longer used by this class, the {@link ELResolver} methods perform the same checks directly in
+	 * order to avoid allocating an operation for each call
 	 */
 	protected Object handle(ELContext elContext, Object base, Object property, ElOperation operation) {
 		if (base != null || !isAvailable()) {
@@ -111,6 +113,25 @@ public abstract class AbstractELResolver extends ELResolver {
 		return null;
 	}
 
+	/**
+	 * Determine if the specified top level property is resolved by this resolver, marking the property as resolved when
+	 * it is. Callers must check the <tt>base</tt> and {@link #isAvailable() availability} first.
+	 * @param elContext The EL context
+	 * @param propertyString The property as a string
+	 * @return <tt>true</tt> if the property is resolved by this resolver
+	 */
+	private boolean resolve(ELContext elContext, String propertyString) {
+		if (handles(propertyString)) {
+			elContext.setPropertyResolved(true);
+			return true;
+		}
+		return false;
+	}
+
+	private static String toString(Object property) {
+		return (property == null ? null : property.toString());
+	}
+
 	public Class getCommonPropertyType(ELContext elContext, Object base) {
 		if (base == null) {
 			return Object.class;
@@ -123,41 +144,47 @@ public abstract class AbstractELResolver extends ELResolver {
 	}
 
 	public Class getType(ELContext elContext, Object base, Object property) {
-		return (Class) handle(elContext, base, property, new ElOperation() {
-			public Object execute(String property) {
-				return get(property).getClass();
+		if (base == null && isAvailable()) {
+			String propertyString = toString(property);
+			if (resolve(elContext, propertyString)) {
+				return get(propertyString).getClass();
 			}
-		});
+		}
+		return null;
 	}
 
 	public Object getValue(ELContext elContext, Object base, Object property) {
-		return handle(elContext, base, property, new ElOperation() {
-			public Object execute(String property) {
-				return get(property);
+		if (base == null && isAvailable()) {
+			String propertyString = toString(property);
+			if (resolve(elContext, propertyString)) {
+				return get(propertyString);
 			}
-		});
+		}
+		return null;
 	}
 
 	public boolean isReadOnly(ELContext elContext, Object base, Object property) {
-		Boolean readOnly = (Boolean) handle(elContext, base, property, new ElOperation() {
-			public Object execute(String property) {
-				return new Boolean(isReadOnly(property));
+		if (base == null && isAvailable()) {
+			String propertyString = toString(property);
+			if (resolve(elContext, propertyString)) {
+				return isReadOnly(propertyString);
 			}
-		});
-		return (readOnly != null ? readOnly.booleanValue() : false);
+		}
+		return false;
 	}
 
-	public void setValue(ELContext elContext, Object base, Object property, final Object value) {
-		handle(elContext, base, property, new ElOperation() {
-			public Object execute(String property) {
-				set(property, value);
-				return null;
+	public void setValue(ELContext elContext, Object base, Object property, Object value) {
+		if (base == null && isAvailable()) {
+			String propertyString = toString(property);
+			if (resolve(elContext, propertyString)) {
+				set(propertyString, value);
 			}
-		});
+		}
 	}
 
 	/**
 	 * Internal callback interface used to perform a scope operation.
+	 * @deprecated See {@link AbstractELResolver#handle(ELContext, Object, Object, ElOperation)}
 	 */
 	protected static interface ElOperation {
 		public Object execute(String property);
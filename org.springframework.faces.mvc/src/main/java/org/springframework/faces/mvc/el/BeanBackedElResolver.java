@@ -15,18 +15,27 @@
  */
 package org.springframework.faces.mvc.el;
 
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.el.BeanELResolver;
-import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.PropertyNotFoundException;
 
-import org.springframework.binding.expression.el.DefaultELContext;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Base class for any read-only EL resolver that is backed against java bean properties. This EL resolver can be used to
  * map EL properties to java bean getters. Subclasses should call the {@link #map(String, String)} method on
  * construction to setup mappings between EL and bean properties.
+ * <p>
+ * Each mapping is compiled to a {@link PropertyAccessor} when it is defined. Mappings to bean properties use a cached
+ * read method, subclasses that know the bean type can call {@link #map(String, PropertyAccessor)} to provide a direct
+ * accessor.
  * 
  * @see #map(String, String)
  * @see #getBean()
@@ -35,10 +44,8 @@ import org.springframework.binding.expression.el.DefaultELContext;
  */
 public abstract class BeanBackedElResolver extends AbstractELResolver {
 
-	private static final BeanELResolver elPropertyResolver = new BeanELResolver();
-
 	/**
-	 * Mapping or EL properties to java bean properties.
+	 * Mapping or EL properties to {@link PropertyAccessor}s.
 	 */
 	private Map properties = new HashMap();
 
@@ -64,7 +71,7 @@ public abstract class BeanBackedElResolver extends AbstractELResolver {
 	 * @see #map(String)
 	 */
 	protected void map(String elProperty, String beanProperty) {
-		properties.put(elProperty, beanProperty);
+		map(elProperty, new ReadMethodPropertyAccessor(beanProperty));
 	}
 
 	/**
@@ -77,6 +84,18 @@ public abstract class BeanBackedElResolver extends AbstractELResolver {
 		map(property, property);
 	}
 
+	/**
+	 * Map a EL property to a {@link PropertyAccessor}. This method can be used when the type of the bean is known in
+	 * order to access the property directly.
+	 * @param elProperty The EL property
+	 * @param accessor The accessor used to obtain the value from the bean returned from {@link #getBean()}
+	 */
+	protected void map(String elProperty, PropertyAccessor accessor) {
+		Assert.notNull(elProperty, "The elProperty is required");
+		Assert.notNull(accessor, "The accessor is required");
+		properties.put(elProperty, accessor);
+	}
+
 	protected boolean isAvailable() {
 		return getBean() != null;
 	}
@@ -86,11 +105,88 @@ public abstract class BeanBackedElResolver extends AbstractELResolver {
 	}
 
 	protected Object get(String property) {
-		String beanProperty = (String) properties.get(property);
-		if (beanProperty != null) {
-			ELContext elContext = new DefaultELContext(elPropertyResolver, null, null);
-			return elContext.getELResolver().getValue(elContext, getBean(), beanProperty);
+		PropertyAccessor accessor = (PropertyAccessor) properties.get(property);
+		if (accessor != null) {
+			return accessor.getValue(getBean());
 		}
 		return null;
 	}
+
+	/**
+	 * Strategy used to obtain a property value from a bean.
+	 */
+	protected static interface PropertyAccessor {
+
+		/**
+		 * Returns the value of the property.
+		 * @param bean The bean (never <tt>null</tt>)
+		 * @return The property value
+		 */
+		public Object getValue(Object bean);
+	}
+
+	/**
+	 * {@link PropertyAccessor} that invokes the read method of a bean property. The read method of the most recently
+	 * used bean class is cached.
+	 */
+	private static final class ReadMethodPropertyAccessor implements PropertyAccessor {
+
+		private String beanProperty;
+
+		private volatile ReadMethod readMethod;
+
+		public ReadMethodPropertyAccessor(String beanProperty) {
+			Assert.notNull(beanProperty, "The beanProperty is required");
+			this.beanProperty = beanProperty;
+		}
+
+		public Object getValue(Object bean) {
+			ReadMethod readMethod = this.readMethod;
+			if (readMethod == null || readMethod.getBeanClass() != bean.getClass()) {
+				readMethod = new ReadMethod(bean.getClass(), findReadMethod(bean.getClass()));
+				this.readMethod = readMethod;
+			}
+			try {
+				return readMethod.getMethod().invoke(bean, (Object[]) null);
+			} catch (InvocationTargetException e) {
+				throw new ELException(e.getTargetException());
+			} catch (IllegalAccessException e) {
+				throw new ELException(e);
+			}
+		}
+
+		private Method findReadMethod(Class beanClass) {
+			PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(beanClass, beanProperty);
+			if (descriptor == null || descriptor.getReadMethod() == null) {
+				throw new PropertyNotFoundException("Property '" + beanProperty + "' not readable on type "
+						+ beanClass.getName());
+			}
+			Method method = descriptor.getReadMethod();
+			ReflectionUtils.makeAccessible(method);
+			return method;
+		}
+	}
+
+	/**
+	 * A bean class and the read method that should be used with it.
+	 */
+	private static final class ReadMethod {
+
+		private Class beanClass;
+
+		private Method method;
+
+		public ReadMethod(Class beanClass, Method method) {
+			this.beanClass = beanClass;
+			this.method = method;
+		}
+
+		public Class getBeanClass() {
+			return beanClass;
+		}
+
+		public Method getMethod() {
+			return method;
+		}
+	}
 }
@@ -47,9 +47,21 @@ public class ImplicitMvcFacesElResolver extends CompositeELResolver {
 	 */
 	private static class RequestContextElResolver extends BeanBackedElResolver {
 		public RequestContextElResolver() {
-			map("requestScope");
-			map("flashScope");
-			map("viewScope");
+			map("requestScope", new PropertyAccessor() {
+				public Object getValue(Object bean) {
+					return ((RequestContext) bean).getRequestScope();
+				}
+			});
+			map("flashScope", new PropertyAccessor() {
+				public Object getValue(Object bean) {
+					return ((RequestContext) bean).getFlashScope();
+				}
+			});
+			map("viewScope", new PropertyAccessor() {
+				public Object getValue(Object bean) {
+					return ((RequestContext) bean).getViewScope();
+				}
+			});
 		}
 
 		protected Object getBean() {
@@ -62,7 +74,11 @@ public class ImplicitMvcFacesElResolver extends CompositeELResolver {
 	 */
 	private static class ExternalContextElResolver extends BeanBackedElResolver {
 		public ExternalContextElResolver() {
-			map("currentUser");
+			map("currentUser", new PropertyAccessor() {
+				public Object getValue(Object bean) {
+					return ((ExternalContext) bean).getCurrentUser();
+				}
+			});
 		}
 
 		protected Object getBean() {
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.el;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.el.ELContext;
+import javax.el.ELResolver;
+
+import org.springframework.util.Assert;
+
+/**
+ * Composite {@link ELResolver} that can record which of its resolvers satisfies each identifier. Resolvers are always
+ * tried in the order that they were {@link #add(ELResolver) added}, exactly as with a
+ * {@link javax.el.CompositeELResolver}. Hit count {@link #setStatisticsEnabled(boolean) statistics} for identifiers
+ * (properties resolved against a <tt>null</tt> base) can be used to tune the order of resolvers, statistics are
+ * disabled by default.
+ * 
+ * @author Phillip Webb
+ */
+public class InstrumentedCompositeELResolver extends ELResolver {
+
+	private volatile ELResolver[] resolvers = new ELResolver[0];
+
+	private volatile boolean statisticsEnabled = false;
+
+	private final Statistics statistics = new Statistics();
+
+	/**
+	 * Add a resolver to the end of the chain.
+	 * @param elResolver The resolver to add
+	 */
+	public synchronized void add(ELResolver elResolver) {
+		Assert.notNull(elResolver, "The elResolver is required");
+		List resolvers = new ArrayList(Arrays.asList(this.resolvers));
+		resolvers.add(elResolver);
+		this.resolvers = (ELResolver[]) resolvers.toArray(new ELResolver[resolvers.size()]);
+		statistics.reset(this.resolvers.length);
+	}
+
+	/**
+	 * Set if hit count statistics are maintained. Statistics are shared by all requests and updating them adds a
+	 * synchronized block to each identifier lookup. Defaults to <tt>false</tt>.
+	 * @param statisticsEnabled If statistics are enabled
+	 */
+	public void setStatisticsEnabled(boolean statisticsEnabled) {
+		this.statisticsEnabled = statisticsEnabled;
+	}
+
+	/**
+	 * @return If statistics are enabled
+	 * @see #setStatisticsEnabled(boolean)
+	 */
+	public boolean isStatisticsEnabled() {
+		return statisticsEnabled;
+	}
+
+	public Object getValue(ELContext elContext, Object base, Object property) {
+		Statistics statistics = (statisticsEnabled && base == null && property != null ? this.statistics : null);
+		if (statistics != null) {
+			statistics.lookup();
+		}
+		ELResolver[] resolvers = this.resolvers;
+		for (int i = 0; i < resolvers.length; i++) {
+			Object value = resolvers[i].getValue(elContext, base, property);
+			if (elContext.isPropertyResolved()) {
+				if (statistics != null) {
+					statistics.hit(i);
+				}
+				return value;
+			}
+		}
+		if (statistics != null) {
+			statistics.miss();
+		}
+		return null;
+	}
+
+	public Class getType(ELContext elContext, Object base, Object property) {
+		ELResolver[] resolvers = this.resolvers;
+		for (int i = 0; i < resolvers.length; i++) {
+			Class type = resolvers[i].getType(elContext, base, property);
+			if (elContext.isPropertyResolved()) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	public boolean isReadOnly(ELContext elContext, Object base, Object property) {
+		ELResolver[] resolvers = this.resolvers;
+		for (int i = 0; i < resolvers.length; i++) {
+			boolean readOnly = resolvers[i].isReadOnly(elContext, base, property);
+			if (elContext.isPropertyResolved()) {
+				return readOnly;
+			}
+		}
+		return false;
+	}
+
+	public void setValue(ELContext elContext, Object base, Object property, Object value) {
+		ELResolver[] resolvers = this.resolvers;
+		for (int i = 0; i < resolvers.length; i++) {
+			resolvers[i].setValue(elContext, base, property, value);
+			if (elContext.isPropertyResolved()) {
+				return;
+			}
+		}
+	}
+
+	public Class getCommonPropertyType(ELContext elContext, Object base) {
+		Class commonPropertyType = null;
+		ELResolver[] resolvers = this.resolvers;
+		for (int i = 0; i < resolvers.length; i++) {
+			Class type = resolvers[i].getCommonPropertyType(elContext, base);
+			if (type != null) {
+				if (commonPropertyType == null) {
+					commonPropertyType = type;
+				} else if (!type.isAssignableFrom(commonPropertyType)) {
+					commonPropertyType = (commonPropertyType.isAssignableFrom(type) ? commonPropertyType
+							: Object.class);
+				}
+			}
+		}
+		return commonPropertyType;
+	}
+
+	public Iterator getFeatureDescriptors(ELContext elContext, Object base) {
+		List featureDescriptors = new ArrayList();
+		ELResolver[] resolvers = this.resolvers;
+		for (int i = 0; i < resolvers.length; i++) {
+			Iterator iterator = resolvers[i].getFeatureDescriptors(elContext, base);
+			while (iterator != null && iterator.hasNext()) {
+				featureDescriptors.add(iterator.next());
+			}
+		}
+		return featureDescriptors.iterator();
+	}
+
+	/**
+	 * Returns the number of identifiers looked up.
+	 * @return The lookup count
+	 * @see #setStatisticsEnabled(boolean)
+	 */
+	public long getLookupCount() {
+		return statistics.getLookupCount();
+	}
+
+	/**
+	 * Returns the number of identifiers that were not resolved by any resolver.
+	 * @return The miss count
+	 * @see #setStatisticsEnabled(boolean)
+	 */
+	public long getMissCount() {
+		return statistics.getMissCount();
+	}
+
+	/**
+	 * Returns the number of identifiers resolved by each resolver, in the order that resolvers were added.
+	 * @return The hit counts
+	 * @see #setStatisticsEnabled(boolean)
+	 */
+	public long[] getHitCounts() {
+		return statistics.getHitCounts();
+	}
+
+	/**
+	 * Returns the percentage of lookups that were resolved.
+	 * @return The hit rate percentage
+	 */
+	public int getHitRate() {
+		return percentage(getLookupCount() - getMissCount(), getLookupCount());
+	}
+
+	private static int percentage(long count, long total) {
+		return (total == 0 ? 0 : (int) (count * 100 / total));
+	}
+
+	/**
+	 * Reset all statistics.
+	 */
+	public synchronized void reset() {
+		statistics.reset(resolvers.length);
+	}
+
+	/**
+	 * Hit count statistics, shared by all requests.
+	 */
+	private static class Statistics {
+
+		private long lookupCount;
+
+		private long missCount;
+
+		private long[] hitCounts = new long[0];
+
+		public synchronized void lookup() {
+			lookupCount++;
+		}
+
+		public synchronized void miss() {
+			missCount++;
+		}
+
+		public synchronized void hit(int index) {
+			hitCounts[index]++;
+		}
+
+		public synchronized long getLookupCount() {
+			return lookupCount;
+		}
+
+		public synchronized long getMissCount() {
+			return missCount;
+		}
+
+		public synchronized long[] getHitCounts() {
+			return (long[]) hitCounts.clone();
+		}
+
+		public synchronized void reset(int resolverCount) {
+			lookupCount = 0;
+			missCount = 0;
+			hitCounts = new long[resolverCount];
+		}
+	}
+}
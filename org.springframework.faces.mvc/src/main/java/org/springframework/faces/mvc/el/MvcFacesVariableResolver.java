@@ -15,7 +15,6 @@
  */
 package org.springframework.faces.mvc.el;
 
-import javax.el.CompositeELResolver;
 import javax.faces.el.VariableResolver;
 
 import org.springframework.faces.expression.ELDelegatingVariableResolver;
@@ -23,12 +22,15 @@ import org.springframework.faces.expression.ELDelegatingVariableResolver;
 /**
  * Custom variabe resolver for resolving properties on MVC faces specific variables with JSF 1.1 or > by delegating to
  * EL resolvers.
+ * <p>
+ * The EL resolvers are held in an {@link InstrumentedCompositeELResolver}, hit count statistics can be enabled using
+ * {@link #getElResolver()}.
  * 
  * @author Phillip Webb
  */
 public class MvcFacesVariableResolver extends ELDelegatingVariableResolver {
 
-	private static final CompositeELResolver composite = new CompositeELResolver();
+	private static final InstrumentedCompositeELResolver composite = new InstrumentedCompositeELResolver();
 	static {
 		composite.add(new MvcHandlerELResolver());
 		composite.add(new RequestContextELResolver());
@@ -39,4 +41,13 @@ public class MvcFacesVariableResolver extends ELDelegatingVariableResolver {
 	public MvcFacesVariableResolver(VariableResolver nextResolver) {
 		super(nextResolver, composite);
 	}
+
+	/**
+	 * Returns the composite EL resolver shared by all variable resolvers. The composite can be used to enable and
+	 * obtain hit rate statistics.
+	 * @return The composite EL resolver
+	 */
+	public static InstrumentedCompositeELResolver getElResolver() {
+		return composite;
+	}
 }
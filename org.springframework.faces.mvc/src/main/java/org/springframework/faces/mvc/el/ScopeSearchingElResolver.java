@@ -15,9 +15,17 @@
  */
 package org.springframework.faces.mvc.el;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.faces.mvc.execution.RequestContext;
 import org.springframework.faces.mvc.execution.RequestContextHolder;
+import org.springframework.faces.mvc.execution.RequestControlContext;
+import org.springframework.faces.mvc.execution.RequestControlContextImpl;
 import org.springframework.faces.mvc.execution.ScopeType;
+import org.springframework.faces.mvc.support.ModificationTrackingMap;
+import org.springframework.webflow.core.collection.AttributeMap;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
 import org.springframework.webflow.core.collection.MutableAttributeMap;
 
 /**
@@ -26,6 +34,14 @@ import org.springframework.webflow.core.collection.MutableAttributeMap;
  * 
  * Suitable for use along side other variable resolvers to support EL binding expressions like "#{bean.property}" where
  * "bean" could be a property in any supported scope.
+ * <p>
+ * Scopes are searched in order, skipping any that are empty and stopping at the first scope that contains the
+ * property. When the scopes are backed by a {@link ModificationTrackingMap} (as is the case for all scopes created by
+ * Faces MVC) the scope that owns each property, or the fact that no scope does, is remembered in the
+ * {@link RequestControlContext#getAttributes() request context attributes} until the contents of a scope that was
+ * searched change. This allows the many identifiers that are resolved by other resolvers to fall through in constant
+ * time. Searching a flash scope that has been restored but not yet accessed reads the restored attributes directly so
+ * that the restored attributes are only copied when a property is actually found in flash scope.
  * 
  * @author Jeremy Grelle
  * @author Phillip Webb
@@ -37,40 +53,161 @@ public class ScopeSearchingElResolver extends AbstractELResolver {
 	 */
 	private static ScopeType[] ORDERED_SCOPES = { ScopeType.REQUEST, ScopeType.FLASH, ScopeType.VIEW };
 
+	private static final int MAX_REMEMBERED_PROPERTIES = 1024;
+
+	private static final String RESOLUTIONS_ATTRIBUTE = ScopeSearchingElResolver.class.getName() + ".resolutions";
+
 	protected boolean isAvailable() {
 		return getRequestContext() != null;
 	}
 
 	protected boolean handles(String property) {
-		for (int i = 0; i < ORDERED_SCOPES.length; i++) {
-			if (ORDERED_SCOPES[i].getScope(getRequestContext()).contains(property)) {
-				return true;
-			}
-		}
-		return false;
+		return findScope(property) != null;
 	}
 
 	protected Object get(String property) {
-		for (int i = 0; i < ORDERED_SCOPES.length; i++) {
-			MutableAttributeMap scopeAttributes = ORDERED_SCOPES[i].getScope(getRequestContext());
-			if (scopeAttributes.contains(property)) {
-				return scopeAttributes.get(property);
-			}
-		}
-		return null;
+		MutableAttributeMap scopeAttributes = findScope(property);
+		return (scopeAttributes == null ? null : scopeAttributes.get(property));
 	}
 
 	protected void set(String property, Object value) {
-		for (int i = 0; i < ORDERED_SCOPES.length; i++) {
-			MutableAttributeMap scopeAttributes = ORDERED_SCOPES[i].getScope(getRequestContext());
-			if (scopeAttributes.contains(property)) {
-				scopeAttributes.put(property, value);
-				return;
-			}
+		MutableAttributeMap scopeAttributes = findScope(property);
+		if (scopeAttributes != null) {
+			scopeAttributes.put(property, value);
 		}
 	}
 
+	/**
+	 * Find the scope that contains the specified property.
+	 * @param property The property
+	 * @return The scope attributes or <tt>null</tt> if no scope contains the property
+	 */
+	private MutableAttributeMap findScope(String property) {
+		RequestContext requestContext = getRequestContext();
+		MutableAttributeMap attributes = ((RequestControlContext) requestContext).getAttributes();
+		Resolutions resolutions = (Resolutions) attributes.get(RESOLUTIONS_ATTRIBUTE);
+		if (resolutions == null) {
+			resolutions = new Resolutions();
+			attributes.put(RESOLUTIONS_ATTRIBUTE, resolutions);
+		}
+		return resolutions.findScope(requestContext, property);
+	}
+
 	protected RequestContext getRequestContext() {
 		return RequestContextHolder.getRequestContext();
 	}
+
+	/**
+	 * Remembered scope resolutions for a single request. A remembered resolution is only used when none of the scopes
+	 * that were searched to obtain it have been replaced or modified, scopes after the owning scope are never accessed.
+	 */
+	private static class Resolutions {
+
+		private static final int UNCHANGED = 0;
+		private static final int CHANGED = 1;
+		private static final int UNTRACKED = 2;
+
+		private static final Integer NOT_FOUND = new Integer(ORDERED_SCOPES.length);
+
+		private static final Integer[] INDEXES;
+		static {
+			INDEXES = new Integer[ORDERED_SCOPES.length];
+			for (int i = 0; i < INDEXES.length; i++) {
+				INDEXES[i] = new Integer(i);
+			}
+		}
+
+		private AttributeMap[] scopes = new AttributeMap[ORDERED_SCOPES.length];
+
+		private int[] modificationCounts = new int[ORDERED_SCOPES.length];
+
+		/**
+		 * Map of property name to the {@link Integer} index of the owning scope or {@link #NOT_FOUND}.
+		 */
+		private Map properties = new HashMap();
+
+		public MutableAttributeMap findScope(RequestContext requestContext, String property) {
+			Integer index = (Integer) properties.get(property);
+			if (index == null || update(requestContext, index.intValue()) != UNCHANGED) {
+				index = search(requestContext, property);
+				if (update(requestContext, index.intValue()) != UNTRACKED
+						&& properties.size() < MAX_REMEMBERED_PROPERTIES) {
+					properties.put(property, index);
+				}
+			}
+			return (index == NOT_FOUND ? null : ORDERED_SCOPES[index.intValue()].getScope(requestContext));
+		}
+
+		private Integer search(RequestContext requestContext, String property) {
+			AttributeMap pendingFlashScope = getPendingFlashScope(requestContext);
+			for (int i = 0; i < ORDERED_SCOPES.length; i++) {
+				AttributeMap scopeAttributes = getScope(requestContext, i, pendingFlashScope);
+				if (!scopeAttributes.isEmpty() && scopeAttributes.contains(property)) {
+					return INDEXES[i];
+				}
+			}
+			return NOT_FOUND;
+		}
+
+		/**
+		 * Update the remembered state of the scopes up to and including the specified index, forgetting all
+		 * resolutions if any of them have changed.
+		 * @param requestContext The request context
+		 * @param index The index of the last scope to update
+		 * @return {@link #UNCHANGED}, {@link #CHANGED} or {@link #UNTRACKED} if a scope does not track modifications
+		 */
+		private int update(RequestContext requestContext, int index) {
+			int result = UNCHANGED;
+			AttributeMap pendingFlashScope = getPendingFlashScope(requestContext);
+			for (int i = 0; i <= index && i < ORDERED_SCOPES.length; i++) {
+				AttributeMap scopeAttributes = getScope(requestContext, i, pendingFlashScope);
+				int modificationCount = 0;
+				if (scopeAttributes != pendingFlashScope) {
+					// Pending restored attributes are never modified, once copied the flash scope will be replaced
+					Map map = (scopeAttributes instanceof LocalAttributeMap ? ((LocalAttributeMap) scopeAttributes)
+							.asMap() : null);
+					if (!(map instanceof ModificationTrackingMap)) {
+						properties.clear();
+						return UNTRACKED;
+					}
+					modificationCount = ((ModificationTrackingMap) map).getModificationCount();
+				}
+				if (scopes[i] != scopeAttributes || modificationCounts[i] != modificationCount) {
+					scopes[i] = scopeAttributes;
+					modificationCounts[i] = modificationCount;
+					result = CHANGED;
+				}
+			}
+			if (result == CHANGED) {
+				properties.clear();
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the attributes of the scope at the specified index for searching.
+		 * @param requestContext The request context
+		 * @param index The scope index
+		 * @param pendingFlashScope The pending restored flash scope or <tt>null</tt>
+		 * @return The scope attributes
+		 */
+		private AttributeMap getScope(RequestContext requestContext, int index, AttributeMap pendingFlashScope) {
+			if (pendingFlashScope != null && ORDERED_SCOPES[index] == ScopeType.FLASH) {
+				return pendingFlashScope;
+			}
+			return ORDERED_SCOPES[index].getScope(requestContext);
+		}
+
+		/**
+		 * Returns restored flash scope attributes that have not yet been copied into the flash scope.
+		 * @param requestContext The request context
+		 * @return The pending restored flash scope or <tt>null</tt>
+		 */
+		private AttributeMap getPendingFlashScope(RequestContext requestContext) {
+			if (requestContext instanceof RequestControlContextImpl) {
+				return ((RequestControlContextImpl) requestContext).getPendingFlashScope();
+			}
+			return null;
+		}
+	}
 }
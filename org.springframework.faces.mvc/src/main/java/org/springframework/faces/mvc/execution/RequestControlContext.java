@@ -1,6 +1,8 @@
 package org.springframework.faces.mvc.execution;
 
 import org.springframework.faces.mvc.navigation.NavigationRequestEvent;
+import org.springframework.webflow.core.collection.AttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
 
 /**
  * Mutable control interface used to manipulate an ongoing MVC JSF execution. This interface is primarily used
@@ -28,4 +30,39 @@ public interface RequestControlContext extends RequestContext {
 	 * @param lastNavigationRequestEvent The navigation event
 	 */
 	void setLastNavigationRequestEvent(NavigationRequestEvent lastNavigationRequestEvent);
+
+	/**
+	 * Method called when an execution is restored from a repository to replace the <tt>flashScope</tt>. The restored
+	 * attributes are only copied into the {@link #getFlashScope() flashScope} when it is first accessed, allowing
+	 * requests that never access the <tt>flashScope</tt> to avoid the copy completely. The caller must not modify the
+	 * attributes after calling this method.
+	 * @param flashScope The restored flash scope attributes
+	 */
+	void restoreFlashScope(AttributeMap flashScope);
+
+	/**
+	 * Method called to clear the <tt>flashScope</tt>. Any restored attributes that have not yet been accessed are
+	 * discarded without being copied.
+	 */
+	void clearFlashScope();
+
+	/**
+	 * Put a transient value into view scope. Transient values are not saved with the view state, instead the
+	 * <tt>factory</tt> is saved and used to recreate the value on first access after the view is restored. This is
+	 * useful for values that are expensive to serialize but cheap to rebuild, for example a <tt>DataModel</tt> of
+	 * search results.
+	 * @param attributeName The attribute name
+	 * @param attributeValue The current value (can be <tt>null</tt> to create the value on first access)
+	 * @param factory The factory used to recreate the value
+	 */
+	void putTransientViewScopeValue(String attributeName, Object attributeValue, TransientValueFactory factory)
+			throws IllegalStateException;
+
+	/**
+	 * Returns a context map for accessing arbitrary attributes about the state of the current request. Unlike
+	 * {@link #getRequestScope() request scope}, attributes are not exposed to views and are intended for use by the
+	 * framework.
+	 * @return the request context attributes
+	 */
+	MutableAttributeMap getAttributes();
 }
@@ -5,8 +5,11 @@ import javax.faces.context.FacesContext;
 import org.springframework.faces.mvc.context.ExternalContext;
 import org.springframework.faces.mvc.navigation.NavigationRequestEvent;
 import org.springframework.faces.mvc.servlet.FacesHandler;
+import org.springframework.faces.mvc.support.ModificationTrackingMap;
 import org.springframework.faces.mvc.support.MvcFacesStateHolderComponent;
+import org.springframework.faces.mvc.support.ViewScopeMap;
 import org.springframework.util.Assert;
+import org.springframework.webflow.core.collection.AttributeMap;
 import org.springframework.webflow.core.collection.LocalAttributeMap;
 import org.springframework.webflow.core.collection.MutableAttributeMap;
 
@@ -22,12 +25,14 @@ public class RequestControlContextImpl implements RequestControlContext {
 	private FacesHandler facesHandler;
 	private Exception exception;
 	private NavigationRequestEvent lastNavigationRequestEvent;
-	private MutableAttributeMap requestScope = new LocalAttributeMap();
-	private MutableAttributeMap flashScope = new LocalAttributeMap();
+	private MutableAttributeMap requestScope = new LocalAttributeMap(new ModificationTrackingMap());
 	private ExternalContext externalContext;
 
 	// Late binding
+	private MutableAttributeMap flashScope = null;
+	private AttributeMap restoredFlashScope = null;
 	private MutableAttributeMap viewScope = null;
+	private MutableAttributeMap attributes = null;
 
 	/**
 	 * Constructor.
@@ -90,9 +95,45 @@ public class RequestControlContextImpl implements RequestControlContext {
 	}
 
 	public MutableAttributeMap getFlashScope() {
+		if (flashScope == null) {
+			flashScope = new LocalAttributeMap(new ModificationTrackingMap());
+			if (restoredFlashScope != null) {
+				flashScope.putAll(restoredFlashScope);
+				restoredFlashScope = null;
+			}
+		}
 		return flashScope;
 	}
 
+	public void restoreFlashScope(AttributeMap flashScope) {
+		this.flashScope = null;
+		this.restoredFlashScope = flashScope;
+	}
+
+	public void clearFlashScope() {
+		restoredFlashScope = null;
+		if (flashScope != null) {
+			flashScope.clear();
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if restored flash scope attributes are waiting to be copied on first access.
+	 * @return if the restored flash scope is pending
+	 */
+	protected boolean isFlashScopeRestorePending() {
+		return restoredFlashScope != null;
+	}
+
+	/**
+	 * Returns the restored flash scope attributes that are waiting to be copied on first access. The attributes allow
+	 * the flash scope to be read without triggering the copy and must not be modified.
+	 * @return the pending restored flash scope attributes or <tt>null</tt> if a restore is not pending
+	 */
+	public AttributeMap getPendingFlashScope() {
+		return restoredFlashScope;
+	}
+
 	public MutableAttributeMap getViewScope() throws IllegalStateException {
 		if (viewScope == null) {
 			FacesContext facesContext = FacesContext.getCurrentInstance();
@@ -101,4 +142,18 @@ public class RequestControlContextImpl implements RequestControlContext {
 		}
 		return viewScope;
 	}
+
+	public void putTransientViewScopeValue(String attributeName, Object attributeValue, TransientValueFactory factory)
+			throws IllegalStateException {
+		MutableAttributeMap viewScope = getViewScope();
+		Assert.state(viewScope instanceof ViewScopeMap, "Transient values are not supported by the view scope");
+		((ViewScopeMap) viewScope).putTransient(attributeName, attributeValue, factory);
+	}
+
+	public MutableAttributeMap getAttributes() {
+		if (attributes == null) {
+			attributes = new LocalAttributeMap();
+		}
+		return attributes;
+	}
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution;
+
+import java.io.Serializable;
+
+/**
+ * Factory used to recreate a transient view scope value. Transient values are not saved with the view state, instead
+ * the factory is saved and called to recreate the value the first time it is accessed after the view has been
+ * restored. Implementations must be {@link Serializable} and should be small; services should be looked up when the
+ * value is created rather than held in fields.
+ * 
+ * @see RequestControlContext#putTransientViewScopeValue(String, Object, TransientValueFactory)
+ * @author Phillip Webb
+ */
+public interface TransientValueFactory extends Serializable {
+
+	/**
+	 * Create the value.
+	 * @return The value
+	 */
+	Object createValue();
+}
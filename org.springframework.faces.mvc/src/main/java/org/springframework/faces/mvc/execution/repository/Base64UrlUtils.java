@@ -0,0 +1,119 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * Utility methods for the URL and filename safe variant of Base64 encoding (RFC 4648). Padding characters are never
+ * written so that encoded values can be included in a URL without further escaping.
+ * 
+ * @author Phillip Webb
+ */
+abstract class Base64UrlUtils {
+
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+			.toCharArray();
+
+	private static final int[] DECODE = new int[128];
+	static {
+		for (int i = 0; i < DECODE.length; i++) {
+			DECODE[i] = -1;
+		}
+		for (int i = 0; i < ALPHABET.length; i++) {
+			DECODE[ALPHABET[i]] = i;
+		}
+	}
+
+	/**
+	 * Encode the specified bytes.
+	 * @param data The data to encode
+	 * @return The encoded string
+	 */
+	public static String encode(byte[] data) {
+		char[] encoded = new char[(data.length * 4 + 2) / 3];
+		int j = 0;
+		for (int i = 0; i < data.length; i += 3) {
+			int remaining = data.length - i;
+			int bits = (data[i] & 0xFF) << 16;
+			bits |= (remaining > 1 ? (data[i + 1] & 0xFF) << 8 : 0);
+			bits |= (remaining > 2 ? (data[i + 2] & 0xFF) : 0);
+			encoded[j++] = ALPHABET[(bits >> 18) & 0x3F];
+			encoded[j++] = ALPHABET[(bits >> 12) & 0x3F];
+			if (remaining > 1) {
+				encoded[j++] = ALPHABET[(bits >> 6) & 0x3F];
+			}
+			if (remaining > 2) {
+				encoded[j++] = ALPHABET[bits & 0x3F];
+			}
+		}
+		return new String(encoded);
+	}
+
+	/**
+	 * Decode the specified string.
+	 * @param encoded The encoded string
+	 * @return The decoded bytes
+	 * @throws IllegalArgumentException if the string is not valid
+	 */
+	public static byte[] decode(String encoded) throws IllegalArgumentException {
+		int length = encoded.length();
+		if (length % 4 == 1) {
+			throw new IllegalArgumentException("Invalid Base64 length " + length);
+		}
+		byte[] decoded = new byte[length * 3 / 4];
+		int j = 0;
+		for (int i = 0; i < length; i += 4) {
+			int remaining = Math.min(4, length - i);
+			int bits = 0;
+			for (int k = 0; k < 4; k++) {
+				bits = (bits << 6) | (k < remaining ? decodeChar(encoded.charAt(i + k)) : 0);
+			}
+			decoded[j++] = (byte) (bits >> 16);
+			if (remaining > 2) {
+				decoded[j++] = (byte) (bits >> 8);
+			}
+			if (remaining > 3) {
+				decoded[j++] = (byte) bits;
+			}
+		}
+		return decoded;
+	}
+
+	/**
+	 * Returns the character used to encode the specified 6 bit value.
+	 * @param value The value (0-63)
+	 * @return The encoded character
+	 */
+	public static char encodeChar(int value) {
+		return ALPHABET[value];
+	}
+
+	/**
+	 * Returns the 6 bit value of the specified encoded character.
+	 * @param c The encoded character
+	 * @return The value or -1 if the character is not valid
+	 */
+	public static int indexOf(char c) {
+		return (c < DECODE.length ? DECODE[c] : -1);
+	}
+
+	private static int decodeChar(char c) {
+		int value = indexOf(c);
+		if (value == -1) {
+			throw new IllegalArgumentException("Invalid Base64 character '" + c + "'");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.Map;
+
+/**
+ * Extension of {@link ExecutionContextStore} for stores that can write several entries in a single operation, for
+ * example using a pipelined request to a remote cache.
+ * 
+ * @see WriteBehindExecutionContextStore
+ * 
+ * @author Phillip Webb
+ */
+public interface BatchExecutionContextStore extends ExecutionContextStore {
+
+	/**
+	 * Put several entries into the store.
+	 * @param entries Map of store ID to serialized execution data
+	 */
+	void putAll(Map entries);
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContext;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ExecutionContextRepository} that holds no server side state. The flash scope is serialized,
+ * optionally compressed and signed into a {@link TokenExecutionContextKey token} that is carried by the redirect URL in
+ * place of the usual execution key. Restoring the execution simply decodes the token, so any node in a cluster can
+ * restore the execution without sticky sessions or session replication.
+ * <p>
+ * Tokens are signed using <tt>HmacSHA256</tt> and are verified before any data is deserialized. Tokens that have been
+ * tampered with or that are older than the {@link #setTimeToLiveSeconds(int) time to live} are treated as missing
+ * executions. The {@link #setSecret(String) secret} must be shared by all nodes in the cluster, if not specified a
+ * random secret is generated meaning that tokens can only be restored by the node that created them.
+ * <p>
+ * Flash scopes that would produce a token longer than the {@link #setMaxTokenLength(int) maximum token length} are
+ * saved using the {@link #setFallbackRepository(ExecutionContextRepository) fallback repository}, by default a
+ * {@link SessionBindingExecutionContextRepository}.
+ * 
+ * @author Phillip Webb
+ */
+public class ClientTokenExecutionContextRepository implements ExecutionContextRepository {
+
+	private static final Log logger = LogFactory.getLog(ClientTokenExecutionContextRepository.class);
+
+	/**
+	 * Prefix used to distinguish tokens from keys created by the fallback repository.
+	 */
+	private static final String TOKEN_PREFIX = "t";
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private static final int MAC_LENGTH = 32;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int COMPRESSED = 0x01;
+
+	/**
+	 * Length of the signed header (version, flags and expiry time).
+	 */
+	private static final int HEADER_LENGTH = 10;
+
+	private SecretKeySpec secret;
+
+	private int maxTokenLength = 1024;
+
+	private long timeToLive = 300 * 1000;
+
+	private ExecutionContextRepository fallbackRepository = new SessionBindingExecutionContextRepository();
+
+	private ExecutionContextCompressor compressor = new DeflaterExecutionContextCompressor();
+
+	private int compressionThreshold = 128;
+
+	public ClientTokenExecutionContextRepository() {
+		byte[] randomSecret = new byte[MAC_LENGTH];
+		new SecureRandom().nextBytes(randomSecret);
+		this.secret = new SecretKeySpec(randomSecret, ALGORITHM);
+	}
+
+	public ExecutionContextKey parseKey(String key) throws BadlyFormattedExecutionContextKeyException {
+		Assert.notNull(key, "Unable to parse null key");
+		if (key.startsWith(TOKEN_PREFIX)) {
+			return new TokenExecutionContextKey(key);
+		}
+		if (fallbackRepository == null) {
+			throw new BadlyFormattedExecutionContextKeyException(key, null);
+		}
+		return fallbackRepository.parseKey(key);
+	}
+
+	public ExecutionContextKey save(RequestContext requestContext) throws ExecutionContextRepositoryException {
+		try {
+			if (!StoredExecutionContext.shouldBeSaved(requestContext)) {
+				return null;
+			}
+			byte[] data = new StoredExecutionContext(requestContext).toByteArray();
+			int flags = 0;
+			if (compressor != null && data.length > compressionThreshold) {
+				byte[] compressed = compressor.compress(data);
+				if (compressed.length < data.length) {
+					data = compressed;
+					flags |= COMPRESSED;
+				}
+			}
+			if (getTokenLength(data.length) > maxTokenLength) {
+				return saveToFallbackRepository(requestContext, data.length);
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAC_LENGTH + HEADER_LENGTH + data.length);
+			bytes.write(new byte[MAC_LENGTH]);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(FORMAT_VERSION);
+			out.writeByte(flags);
+			out.writeLong(currentTime() + timeToLive);
+			out.write(data);
+			out.close();
+			byte[] token = bytes.toByteArray();
+			System.arraycopy(sign(token), 0, token, 0, MAC_LENGTH);
+			return new TokenExecutionContextKey(TOKEN_PREFIX + Base64UrlUtils.encode(token));
+		} catch (IOException e) {
+			throw new ExecutionContextRepositoryException("Unable to save the specified MVC faces request", e);
+		} catch (RuntimeException e) {
+			if (e instanceof ExecutionContextRepositoryException) {
+				throw e;
+			}
+			throw new ExecutionContextRepositoryException("Unable to save the specified MVC faces request", e);
+		}
+	}
+
+	private ExecutionContextKey saveToFallbackRepository(RequestContext requestContext, int length) {
+		if (fallbackRepository == null) {
+			throw new ExecutionContextRepositoryException("Unable to save the MVC faces request, " + length
+					+ " bytes of flash scope data exceeds the maximum token length and no fallback repository is set");
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Saving " + length + " bytes of flash scope data using the fallback repository");
+		}
+		return fallbackRepository.save(requestContext);
+	}
+
+	public void restore(ExecutionContextKey key, RequestContext requestContext) throws NoSuchExecutionException,
+			ExecutionContextRepositoryException {
+		if (!(key instanceof TokenExecutionContextKey)) {
+			if (fallbackRepository == null) {
+				throw new NoSuchExecutionException(key);
+			}
+			fallbackRepository.restore(key, requestContext);
+			return;
+		}
+		try {
+			byte[] token = decodeToken(key);
+			byte[] data = new byte[token.length - MAC_LENGTH - HEADER_LENGTH];
+			System.arraycopy(token, MAC_LENGTH + HEADER_LENGTH, data, 0, data.length);
+			if ((token[MAC_LENGTH + 1] & COMPRESSED) != 0) {
+				Assert.state(compressor != null, "A compressor is required to restore compressed tokens");
+				data = compressor.decompress(data);
+			}
+			StoredExecutionContext.fromByteArray(data).restore(requestContext);
+		} catch (IOException e) {
+			throw new ExecutionContextRepositoryException(
+					"Unable to restore the MVC faces request with the execution key '" + key + "'", e);
+		} catch (RuntimeException e) {
+			if (e instanceof ExecutionContextRepositoryException) {
+				throw e;
+			}
+			throw new ExecutionContextRepositoryException(
+					"Unable to restore the MVC faces request with the execution key '" + key + "'", e);
+		}
+	}
+
+	/**
+	 * Decode and verify the token held by the specified key.
+	 * @param key The token key
+	 * @return The verified token bytes
+	 * @throws NoSuchExecutionException if the token is invalid or has expired
+	 */
+	private byte[] decodeToken(ExecutionContextKey key) throws NoSuchExecutionException {
+		byte[] token;
+		try {
+			token = Base64UrlUtils.decode(((TokenExecutionContextKey) key).getToken().substring(TOKEN_PREFIX.length()));
+		} catch (IllegalArgumentException e) {
+			throw new NoSuchExecutionException(key, e);
+		}
+		if (token.length < MAC_LENGTH + HEADER_LENGTH || !isSignatureValid(token)) {
+			logger.warn("Rejected MVC faces execution token with an invalid signature");
+			throw new NoSuchExecutionException(key);
+		}
+		if (token[MAC_LENGTH] != FORMAT_VERSION || currentTime() > readLong(token, MAC_LENGTH + 2)) {
+			throw new NoSuchExecutionException(key);
+		}
+		return token;
+	}
+
+	private boolean isSignatureValid(byte[] token) {
+		byte[] expected = sign(token);
+		int difference = 0;
+		for (int i = 0; i < MAC_LENGTH; i++) {
+			difference |= expected[i] ^ token[i];
+		}
+		return difference == 0;
+	}
+
+	/**
+	 * Calculate the signature for the specified token, ignoring the leading signature bytes.
+	 * @param token The token
+	 * @return The signature
+	 */
+	private byte[] sign(byte[] token) {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(secret);
+			mac.update(token, MAC_LENGTH, token.length - MAC_LENGTH);
+			return mac.doFinal();
+		} catch (GeneralSecurityException e) {
+			throw new ExecutionContextRepositoryException("Unable to sign MVC faces execution token", e);
+		}
+	}
+
+	private long readLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+	private int getTokenLength(int dataLength) {
+		return TOKEN_PREFIX.length() + ((MAC_LENGTH + HEADER_LENGTH + dataLength) * 4 + 2) / 3;
+	}
+
+	/**
+	 * Returns the current time in milliseconds. Subclasses can override this method for testing.
+	 * @return The current time
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Set the secret used to sign tokens. All nodes that can restore an execution must share the same secret. If not
+	 * specified a random secret is generated.
+	 * @param secret The secret (at least 16 characters)
+	 */
+	public void setSecret(String secret) {
+		Assert.isTrue(secret != null && secret.length() >= 16, "The secret must be at least 16 characters");
+		try {
+			this.secret = new SecretKeySpec(secret.getBytes("UTF-8"), ALGORITHM);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("Unexpected encoding exception");
+		}
+	}
+
+	/**
+	 * Set the maximum length of a token. Flash scopes that would result in a longer token are saved using the
+	 * {@link #setFallbackRepository(ExecutionContextRepository) fallback repository}. The default is 1024.
+	 * @param maxTokenLength The maximum token length
+	 */
+	public void setMaxTokenLength(int maxTokenLength) {
+		Assert.isTrue(maxTokenLength > 0, "The maxTokenLength must be positive");
+		this.maxTokenLength = maxTokenLength;
+	}
+
+	/**
+	 * Set the number of seconds that a token remains valid. The default is 300.
+	 * @param timeToLiveSeconds The time to live in seconds
+	 */
+	public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+		Assert.isTrue(timeToLiveSeconds > 0, "The timeToLiveSeconds must be positive");
+		this.timeToLive = timeToLiveSeconds * 1000L;
+	}
+
+	/**
+	 * Set the repository used when a token would exceed the {@link #setMaxTokenLength(int) maximum token length}.
+	 * Defaults to a {@link SessionBindingExecutionContextRepository}. Set to <tt>null</tt> to fail rather than fall
+	 * back.
+	 * @param fallbackRepository The fallback repository or <tt>null</tt>
+	 */
+	public void setFallbackRepository(ExecutionContextRepository fallbackRepository) {
+		this.fallbackRepository = fallbackRepository;
+	}
+
+	/**
+	 * Set the compressor used for flash scope data larger than the {@link #setCompressionThreshold(int) threshold}.
+	 * Defaults to a {@link DeflaterExecutionContextCompressor}. Set to <tt>null</tt> to disable compression.
+	 * @param compressor The compressor or <tt>null</tt>
+	 */
+	public void setCompressor(ExecutionContextCompressor compressor) {
+		this.compressor = compressor;
+	}
+
+	/**
+	 * Set the size in bytes above which flash scope data is compressed. The default is 128.
+	 * @param compressionThreshold The compression threshold
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		Assert.isTrue(compressionThreshold >= 0, "The compressionThreshold must not be negative");
+		this.compressionThreshold = compressionThreshold;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link ExecutionContextCompressor} implementation that uses the <tt>java.util.zip</tt> {@link Deflater}.
+ * 
+ * @author Phillip Webb
+ */
+public class DeflaterExecutionContextCompressor implements ExecutionContextCompressor {
+
+	private static final long serialVersionUID = 1L;
+
+	private int level = Deflater.BEST_SPEED;
+
+	public byte[] compress(byte[] data) throws IOException {
+		Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	public byte[] decompress(byte[] data) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int inflated = inflater.inflate(buffer);
+				if (inflated == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated compressed MVC faces execution data");
+				}
+				out.write(buffer, 0, inflated);
+			}
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			IOException exception = new IOException("Corrupt compressed MVC faces execution data");
+			exception.initCause(e);
+			throw exception;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Set the compression level, see {@link Deflater#setLevel(int)}. Defaults to {@link Deflater#BEST_SPEED}.
+	 * @param level The compression level
+	 */
+	public void setLevel(int level) {
+		Assert.isTrue(level == Deflater.DEFAULT_COMPRESSION || (level >= 0 && level <= 9),
+				"Invalid compression level " + level);
+		this.level = level;
+	}
+}
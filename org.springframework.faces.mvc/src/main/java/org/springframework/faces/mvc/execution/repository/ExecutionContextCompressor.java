@@ -0,0 +1,46 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Strategy interface used to compress large serialized executions. Compressors are written alongside the executions
+ * that they compress and must therefore be {@link Serializable}.
+ * 
+ * @see DeflaterExecutionContextCompressor
+ * 
+ * @author Phillip Webb
+ */
+public interface ExecutionContextCompressor extends Serializable {
+
+	/**
+	 * Compress the specified data.
+	 * @param data The data to compress
+	 * @return The compressed data
+	 * @throws IOException on error
+	 */
+	byte[] compress(byte[] data) throws IOException;
+
+	/**
+	 * Decompress data previously compressed using {@link #compress(byte[])}.
+	 * @param data The compressed data
+	 * @return The decompressed data
+	 * @throws IOException on error
+	 */
+	byte[] decompress(byte[] data) throws IOException;
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+
+/**
+ * Interface to be implemented by objects that wish to be notified of {@link ExecutionContextRepository} events. Most
+ * events are raised by an {@link InstrumentedExecutionContextRepository}, events that can only be observed by the
+ * repository itself (such as evictions) are raised by {@link ObservableExecutionContextRepository} implementations.
+ * <p>
+ * Listeners are called on the request thread and must be thread safe.
+ * 
+ * @see ExecutionContextRepositoryListenerAdapter
+ * @see ExecutionContextRepositoryMetrics
+ * 
+ * @author Phillip Webb
+ */
+public interface ExecutionContextRepositoryListener {
+
+	/**
+	 * Called when an execution has been saved.
+	 * @param key The key of the saved execution
+	 * @param durationNanos The time taken to save the execution in nanoseconds
+	 */
+	void executionSaved(ExecutionContextKey key, long durationNanos);
+
+	/**
+	 * Called when the approximate size of a saved execution has been sampled.
+	 * @param bytes The serialized size of the execution in bytes
+	 */
+	void executionSizeSampled(int bytes);
+
+	/**
+	 * Called when an execution has been restored.
+	 * @param key The key of the restored execution
+	 * @param durationNanos The time taken to restore the execution in nanoseconds
+	 */
+	void executionRestored(ExecutionContextKey key, long durationNanos);
+
+	/**
+	 * Called when an execution could not be restored because it does not exist.
+	 * @param key The key of the missing execution
+	 */
+	void executionNotFound(ExecutionContextKey key);
+
+	/**
+	 * Called when executions have been evicted in order to remain within the configured maximum.
+	 * @param count The number of evicted executions
+	 */
+	void executionsEvicted(int count);
+
+	/**
+	 * Called when executions have been removed because they exceeded the maximum age.
+	 * @param count The number of expired executions
+	 * @param reclaimedSerializedBytes The serialized size of the expired executions. Only executions that have been
+	 * serialized (for example when the session was replicated or passivated) are counted, others contribute 0
+	 */
+	void executionsExpired(int count, long reclaimedSerializedBytes);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+
+/**
+ * An abstract adapter class for listeners that wish to receive only a subset of
+ * {@link ExecutionContextRepositoryListener} events.
+ * 
+ * @author Phillip Webb
+ */
+public abstract class ExecutionContextRepositoryListenerAdapter implements ExecutionContextRepositoryListener {
+
+	public void executionSaved(ExecutionContextKey key, long durationNanos) {
+	}
+
+	public void executionSizeSampled(int bytes) {
+	}
+
+	public void executionRestored(ExecutionContextKey key, long durationNanos) {
+	}
+
+	public void executionNotFound(ExecutionContextKey key) {
+	}
+
+	public void executionsEvicted(int count) {
+	}
+
+	public void executionsExpired(int count, long reclaimedSerializedBytes) {
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+
+/**
+ * {@link ExecutionContextRepositoryListener} that collects metrics using synchronized counters. Metrics can be
+ * exposed using JMX by registering this object with an <tt>MBeanExporter</tt>, see
+ * {@link ExecutionContextRepositoryMetricsMBean}.
+ * <p>
+ * The {@link #getStoredCount() stored count} is derived from the number of saves, restores, evictions and expiries
+ * and does not include executions lost when a session expires, it should therefore be treated as an approximation.
+ * Byte counts are only available when the {@link InstrumentedExecutionContextRepository#setSizeSampleRate(int) size
+ * sample rate} is set.
+ * <p>
+ * Save and restore latencies are recorded on every request into striped histograms, so concurrent requests rarely
+ * contend. The remaining counters are guarded by the monitor of this object and are only updated by comparatively
+ * rare events: misses, evictions, expiries and sampled sizes.
+ * 
+ * @author Phillip Webb
+ */
+public class ExecutionContextRepositoryMetrics implements ExecutionContextRepositoryListener,
+		ExecutionContextRepositoryMetricsMBean {
+
+	private long notFoundCount;
+
+	private long evictionCount;
+
+	private long expiredCount;
+
+	private long reclaimedSerializedBytes;
+
+	private long sampledBytes;
+
+	private long sampleCount;
+
+	private final LatencyHistogram saveLatency = new LatencyHistogram();
+
+	private final LatencyHistogram restoreLatency = new LatencyHistogram();
+
+	public void executionSaved(ExecutionContextKey key, long durationNanos) {
+		saveLatency.record(durationNanos);
+	}
+
+	public synchronized void executionSizeSampled(int bytes) {
+		sampledBytes += bytes;
+		sampleCount++;
+	}
+
+	public void executionRestored(ExecutionContextKey key, long durationNanos) {
+		restoreLatency.record(durationNanos);
+	}
+
+	public synchronized void executionNotFound(ExecutionContextKey key) {
+		notFoundCount++;
+	}
+
+	public synchronized void executionsEvicted(int count) {
+		evictionCount += count;
+	}
+
+	public synchronized void executionsExpired(int count, long reclaimedSerializedBytes) {
+		this.expiredCount += count;
+		this.reclaimedSerializedBytes += reclaimedSerializedBytes;
+	}
+
+	public long getSaveCount() {
+		return saveLatency.getCount();
+	}
+
+	public long getRestoreCount() {
+		return restoreLatency.getCount();
+	}
+
+	public synchronized long getNotFoundCount() {
+		return notFoundCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public synchronized long getExpiredCount() {
+		return expiredCount;
+	}
+
+	public synchronized long getReclaimedSerializedBytes() {
+		return reclaimedSerializedBytes;
+	}
+
+	public long getStoredCount() {
+		return Math.max(getSaveCount() - getRestoreCount() - getEvictionCount() - getExpiredCount(), 0);
+	}
+
+	public synchronized long getAverageExecutionBytes() {
+		return (sampleCount == 0 ? 0 : sampledBytes / sampleCount);
+	}
+
+	public long getApproximateStoredBytes() {
+		return getStoredCount() * getAverageExecutionBytes();
+	}
+
+	public long getSaveLatencyMeanMicros() {
+		return saveLatency.getMeanMicros();
+	}
+
+	public long getSaveLatency99thPercentileMicros() {
+		return saveLatency.getPercentileMicros(99);
+	}
+
+	public long[] getSaveLatencyHistogram() {
+		return saveLatency.getCounts();
+	}
+
+	public long getRestoreLatencyMeanMicros() {
+		return restoreLatency.getMeanMicros();
+	}
+
+	public long getRestoreLatency99thPercentileMicros() {
+		return restoreLatency.getPercentileMicros(99);
+	}
+
+	public long[] getRestoreLatencyHistogram() {
+		return restoreLatency.getCounts();
+	}
+
+	public void reset() {
+		synchronized (this) {
+			notFoundCount = 0;
+			evictionCount = 0;
+			expiredCount = 0;
+			reclaimedSerializedBytes = 0;
+			sampledBytes = 0;
+			sampleCount = 0;
+		}
+		saveLatency.reset();
+		restoreLatency.reset();
+	}
+}
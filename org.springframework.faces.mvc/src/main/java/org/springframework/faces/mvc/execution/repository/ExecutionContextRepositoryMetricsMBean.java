@@ -0,0 +1,105 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * Standard JMX management interface for {@link ExecutionContextRepositoryMetrics}.
+ * 
+ * @author Phillip Webb
+ */
+public interface ExecutionContextRepositoryMetricsMBean {
+
+	/**
+	 * @return The number of saved executions
+	 */
+	long getSaveCount();
+
+	/**
+	 * @return The number of restored executions
+	 */
+	long getRestoreCount();
+
+	/**
+	 * @return The number of restores that failed because the execution did not exist
+	 */
+	long getNotFoundCount();
+
+	/**
+	 * @return The number of executions evicted because the maximum number of executions was exceeded
+	 */
+	long getEvictionCount();
+
+	/**
+	 * @return The number of executions removed because they exceeded the maximum age
+	 */
+	long getExpiredCount();
+
+	/**
+	 * @return The serialized size of expired executions, only counting executions that were serialized when the
+	 *         session was replicated or passivated
+	 */
+	long getReclaimedSerializedBytes();
+
+	/**
+	 * @return The approximate number of executions currently stored
+	 */
+	long getStoredCount();
+
+	/**
+	 * @return The average sampled size of an execution in bytes
+	 */
+	long getAverageExecutionBytes();
+
+	/**
+	 * @return The approximate number of bytes used by all stored executions
+	 */
+	long getApproximateStoredBytes();
+
+	/**
+	 * @return The mean save latency in microseconds
+	 */
+	long getSaveLatencyMeanMicros();
+
+	/**
+	 * @return The 99th percentile save latency in microseconds
+	 */
+	long getSaveLatency99thPercentileMicros();
+
+	/**
+	 * @return The save latency histogram, bucket <tt>n</tt> counts latencies less than <tt>2^n</tt> microseconds
+	 */
+	long[] getSaveLatencyHistogram();
+
+	/**
+	 * @return The mean restore latency in microseconds
+	 */
+	long getRestoreLatencyMeanMicros();
+
+	/**
+	 * @return The 99th percentile restore latency in microseconds
+	 */
+	long getRestoreLatency99thPercentileMicros();
+
+	/**
+	 * @return The restore latency histogram, bucket <tt>n</tt> counts latencies less than <tt>2^n</tt> microseconds
+	 */
+	long[] getRestoreLatencyHistogram();
+
+	/**
+	 * Reset all metrics.
+	 */
+	void reset();
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * Strategy interface used by {@link StoreBackedExecutionContextRepository} to hold serialized executions outside of the
+ * HTTP session. Entries are identified by a store ID that is unique across all sessions and are taken from the store
+ * at most once.
+ * <p>
+ * Note: This class will be accessed from multiple threads simultaneously, the implementation must be thread safe.
+ *
+ * @see ExpiringExecutionContextStore
+ *
+ * @author Phillip Webb
+ */
+public interface ExecutionContextStore {
+
+	/**
+	 * Put serialized execution data into the store.
+	 * @param id The unique store ID
+	 * @param data The serialized execution data
+	 */
+	void put(String id, byte[] data);
+
+	/**
+	 * Remove and return serialized execution data from the store.
+	 * @param id The unique store ID
+	 * @return The serialized execution data or <tt>null</tt> if the store does not contain the ID (or the entry has
+	 * been evicted)
+	 */
+	byte[] remove(String id);
+}
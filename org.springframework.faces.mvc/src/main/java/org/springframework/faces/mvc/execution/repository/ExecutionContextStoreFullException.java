@@ -0,0 +1,33 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * Exception thrown by an {@link ExecutionContextStore} that cannot accept an entry because every unit of its storage
+ * budget is in use and none can be evicted. The entry has not been stored, callers can retry or use a different store.
+ * 
+ * @author Phillip Webb
+ * @see MappedExecutionContextStore
+ * @see TieredExecutionContextStore
+ */
+public class ExecutionContextStoreFullException extends ExecutionContextRepositoryException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ExecutionContextStoreFullException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Background task that periodically {@link SessionBindingExecutionContextRepository#expireExecutions() expires}
+ * executions that have exceeded the {@link SessionBindingExecutionContextRepository#setMaxAgeSeconds(int) maxAge} in
+ * all live sessions. Sweeping does not use the session mutex so requests are never blocked. Executions are not
+ * serialized by the sweeper so the {@link #getReclaimedSerializedBytes() reclaimed serialized bytes} only cover
+ * executions that were serialized when the session was replicated or passivated; in sessions that are never
+ * serialized the value remains 0.
+ * <p>
+ * The sweeper is started when the bean is initialized and stopped when it is destroyed.
+ * 
+ * @author Phillip Webb
+ */
+public class ExecutionContextSweeper implements InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(ExecutionContextSweeper.class);
+
+	private SessionBindingExecutionContextRepository repository;
+
+	private long interval = 60 * 1000;
+
+	private Timer timer;
+
+	private long reclaimedSerializedBytes;
+
+	public void afterPropertiesSet() {
+		Assert.notNull(repository, "The repository is required");
+		timer = new Timer("MvcFacesExecutionSweeper", true);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				try {
+					sweep();
+				} catch (RuntimeException e) {
+					logger.error("Unable to expire MVC faces executions", e);
+				}
+			}
+		}, interval, interval);
+	}
+
+	public void destroy() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+
+	/**
+	 * Expire executions immediately.
+	 * @return The serialized size of the expired executions that had been serialized
+	 */
+	public long sweep() {
+		long bytes = repository.expireExecutions();
+		synchronized (this) {
+			reclaimedSerializedBytes += bytes;
+		}
+		if (bytes > 0 && logger.isInfoEnabled()) {
+			logger.info("Reclaimed " + bytes + " serialized bytes from expired MVC faces executions");
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the total serialized size of executions expired since the sweeper was created. Only executions that were
+	 * serialized when the session was replicated or passivated are counted.
+	 * @return The number of serialized bytes reclaimed
+	 */
+	public synchronized long getReclaimedSerializedBytes() {
+		return reclaimedSerializedBytes;
+	}
+
+	/**
+	 * Set the repository to sweep.
+	 * @param repository The repository
+	 */
+	public void setRepository(SessionBindingExecutionContextRepository repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Set the number of seconds between each sweep. The default is 60.
+	 * @param intervalSeconds The interval in seconds
+	 */
+	public void setIntervalSeconds(int intervalSeconds) {
+		Assert.isTrue(intervalSeconds > 0, "The intervalSeconds must be positive");
+		this.interval = intervalSeconds * 1000L;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Bounded, thread-safe in-JVM implementation of {@link ExecutionContextStore}. Entries expire once their
+ * {@link #setTimeToLiveSeconds(int) time to live} has passed and the oldest entries are evicted whenever the
+ * {@link #setMaxBytes(long) byte budget} or {@link #setMaxEntries(int) entry limit} is exceeded.
+ * <p>
+ * Entries are held in insertion order, since every entry shares the same time to live this is also expiry order.
+ * Expired and evicted entries are purged from the head of the map each time a new entry is added.
+ *
+ * @author Phillip Webb
+ */
+public class ExpiringExecutionContextStore implements ExecutionContextStore {
+
+	private static final Log logger = LogFactory.getLog(ExpiringExecutionContextStore.class);
+
+	/**
+	 * Map of store ID to {@link Entry} in insertion order. Guarded by the map itself.
+	 */
+	private final Map entries = new LinkedHashMap();
+
+	/**
+	 * Total size in bytes of all entries. Guarded by {@link #entries}.
+	 */
+	private long bytes;
+
+	private long timeToLive = 300 * 1000;
+
+	private long maxBytes = 32 * 1024 * 1024;
+
+	private int maxEntries = 10000;
+
+	public void put(String id, byte[] data) {
+		Assert.notNull(id, "The id is required");
+		Assert.notNull(data, "The data is required");
+		Entry entry = new Entry(id, data, currentTime() + timeToLive);
+		synchronized (entries) {
+			Entry previous = (Entry) entries.remove(id);
+			if (previous != null) {
+				bytes -= previous.getSize();
+			}
+			entries.put(id, entry);
+			bytes += entry.getSize();
+			purge();
+		}
+	}
+
+	public byte[] remove(String id) {
+		Entry entry;
+		synchronized (entries) {
+			entry = (Entry) entries.remove(id);
+			if (entry == null) {
+				return null;
+			}
+			bytes -= entry.getSize();
+		}
+		return (entry.isExpired(currentTime()) ? null : entry.getData());
+	}
+
+	/**
+	 * Purge expired entries and evict the oldest entries until the store is back within budget. Must be called whilst
+	 * holding the {@link #entries} monitor.
+	 */
+	private void purge() {
+		long now = currentTime();
+		Iterator iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry head = (Entry) iterator.next();
+			if (!head.isExpired(now) && !isOverBudget()) {
+				return;
+			}
+			iterator.remove();
+			bytes -= head.getSize();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Evicted MVC faces execution '" + head.getId() + "'"
+						+ (head.isExpired(now) ? " after expiry" : " to remain within budget"));
+			}
+		}
+	}
+
+	private boolean isOverBudget() {
+		return (bytes > maxBytes) || (entries.size() > maxEntries);
+	}
+
+	/**
+	 * Returns the current time in milliseconds. Subclasses can override this method for testing.
+	 * @return The current time
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the number of entries currently held in the store.
+	 * @return The number of entries
+	 */
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the total size in bytes of all entries currently held in the store.
+	 * @return The number of bytes
+	 */
+	public long getByteCount() {
+		synchronized (entries) {
+			return bytes;
+		}
+	}
+
+	/**
+	 * Set the number of seconds that an entry remains in the store before it expires. The default is 300.
+	 * @param timeToLiveSeconds The time to live in seconds
+	 */
+	public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+		Assert.isTrue(timeToLiveSeconds > 0, "The timeToLiveSeconds must be positive");
+		this.timeToLive = timeToLiveSeconds * 1000L;
+	}
+
+	/**
+	 * Set the maximum total size in bytes of all entries held by the store. The oldest entries will be evicted when
+	 * this value is exceeded. The default is 32MB.
+	 * @param maxBytes The maximum number of bytes
+	 */
+	public void setMaxBytes(long maxBytes) {
+		Assert.isTrue(maxBytes > 0, "The maxBytes must be positive");
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Set the maximum number of entries held by the store. The oldest entries will be evicted when this value is
+	 * exceeded. The default is 10000.
+	 * @param maxEntries The maximum number of entries
+	 */
+	public void setMaxEntries(int maxEntries) {
+		Assert.isTrue(maxEntries > 0, "The maxEntries must be positive");
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * A single entry held in the store.
+	 */
+	private static class Entry {
+
+		private String id;
+
+		private int size;
+
+		private long expires;
+
+		private byte[] data;
+
+		public Entry(String id, byte[] data, long expires) {
+			this.id = id;
+			this.data = data;
+			this.size = data.length;
+			this.expires = expires;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public boolean isExpired(long now) {
+			return now > expires;
+		}
+	}
+}
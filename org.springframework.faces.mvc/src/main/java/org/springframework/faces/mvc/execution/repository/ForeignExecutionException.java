@@ -0,0 +1,58 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * Exception that is thrown when a {@link NodeExecutionContextKey} that was created by a different node (or an earlier
+ * generation of this node) is restored. Callers can use the {@link #getNodeId() node ID} to forward the request to the
+ * node that owns the execution.
+ * 
+ * @author Phillip Webb
+ */
+public class ForeignExecutionException extends NoSuchExecutionException {
+
+	private static final long serialVersionUID = 1L;
+
+	private int nodeId;
+
+	private int generation;
+
+	/**
+	 * Constructor.
+	 * @param key The key that was created by a different node or generation
+	 */
+	public ForeignExecutionException(NodeExecutionContextKey key) {
+		super(key);
+		this.nodeId = key.getNodeId();
+		this.generation = key.getGeneration();
+	}
+
+	/**
+	 * Returns the ID of the node that created the execution.
+	 * @return The node ID
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Returns the generation of the node that created the execution.
+	 * @return The generation
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.JdkVersion;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContext;
+import org.springframework.util.Assert;
+
+/**
+ * Decorator that can be used to instrument any {@link ExecutionContextRepository}. Save and restore latencies and
+ * missing executions are reported to the {@link #getMetrics() metrics} and to any additional
+ * {@link #setListeners(List) listeners}. When the delegate is an {@link ObservableExecutionContextRepository}
+ * evictions are also reported.
+ * <p>
+ * By default only counters are updated for each request. The approximate size of saved executions can be sampled by
+ * setting the {@link #setSizeSampleRate(int) size sample rate}, each sample serializes the <tt>flashScope</tt>.
+ * <p>
+ * Latencies are measured using <tt>nanoTime()</tt> when running on Java 5 or above, on earlier JVMs the
+ * resolution is limited to milliseconds.
+ * 
+ * @author Phillip Webb
+ */
+public class InstrumentedExecutionContextRepository implements ExecutionContextRepository {
+
+	private static final Log logger = LogFactory.getLog(InstrumentedExecutionContextRepository.class);
+
+	private ExecutionContextRepository delegate;
+
+	private ExecutionContextRepositoryMetrics metrics = new ExecutionContextRepositoryMetrics();
+
+	private ExecutionContextRepositoryListener[] listeners = new ExecutionContextRepositoryListener[] { metrics };
+
+	private int sizeSampleRate = 0;
+
+	private int saveCounter;
+
+	private final ExecutionContextRepositoryListener dispatcher = new Dispatcher();
+
+	/**
+	 * Constructor.
+	 * @see #setDelegate(ExecutionContextRepository)
+	 */
+	public InstrumentedExecutionContextRepository() {
+	}
+
+	/**
+	 * Constructor.
+	 * @param delegate The repository to instrument
+	 */
+	public InstrumentedExecutionContextRepository(ExecutionContextRepository delegate) {
+		setDelegate(delegate);
+	}
+
+	public ExecutionContextKey parseKey(String key) throws BadlyFormattedExecutionContextKeyException,
+			ExecutionContextRepositoryException {
+		return getDelegate().parseKey(key);
+	}
+
+	public ExecutionContextKey save(RequestContext requestContext) throws ExecutionContextRepositoryException {
+		ExecutionContextRepository delegate = getDelegate();
+		long start = nanoTime();
+		ExecutionContextKey key = delegate.save(requestContext);
+		long duration = nanoTime() - start;
+		if (key != null) {
+			dispatcher.executionSaved(key, duration);
+			if (shouldSampleSize()) {
+				sampleSize(requestContext);
+			}
+		}
+		return key;
+	}
+
+	public void restore(ExecutionContextKey key, RequestContext requestContext) throws NoSuchExecutionException,
+			ExecutionContextRepositoryException {
+		ExecutionContextRepository delegate = getDelegate();
+		long start = nanoTime();
+		try {
+			delegate.restore(key, requestContext);
+		} catch (NoSuchExecutionException e) {
+			dispatcher.executionNotFound(key);
+			throw e;
+		}
+		dispatcher.executionRestored(key, nanoTime() - start);
+	}
+
+	private boolean shouldSampleSize() {
+		if (sizeSampleRate == 0) {
+			return false;
+		}
+		synchronized (this) {
+			return (++saveCounter % sizeSampleRate) == 0;
+		}
+	}
+
+	/**
+	 * Sample the size of an execution that has already been saved. Failures are ignored since the save itself has
+	 * succeeded, for example the delegate may not need to serialize the flash scope.
+	 * @param requestContext The request context that was saved
+	 */
+	private void sampleSize(RequestContext requestContext) {
+		int bytes;
+		try {
+			bytes = new StoredExecutionContext(requestContext).toByteArray().length;
+		} catch (RuntimeException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to sample the size of the saved MVC faces execution", e);
+			}
+			return;
+		}
+		dispatcher.executionSizeSampled(bytes);
+	}
+
+	/**
+	 * Returns the current value of the most precise available timer in nanoseconds.
+	 * @return The current time in nanoseconds
+	 */
+	private static long nanoTime() {
+		if (JdkVersion.isAtLeastJava15()) {
+			return System.nanoTime();
+		}
+		return System.currentTimeMillis() * 1000000L;
+	}
+
+	private ExecutionContextRepository getDelegate() {
+		Assert.state(delegate != null, "No delegate repository has been set");
+		return delegate;
+	}
+
+	/**
+	 * Set the repository to instrument.
+	 * @param delegate The delegate repository
+	 */
+	public void setDelegate(ExecutionContextRepository delegate) {
+		Assert.notNull(delegate, "The delegate is required");
+		this.delegate = delegate;
+		if (delegate instanceof ObservableExecutionContextRepository) {
+			((ObservableExecutionContextRepository) delegate).setListener(dispatcher);
+		}
+	}
+
+	/**
+	 * Returns the metrics collected by this repository.
+	 * @return The metrics
+	 */
+	public ExecutionContextRepositoryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set additional listeners that should be notified of repository events.
+	 * @param listeners A list of {@link ExecutionContextRepositoryListener}s
+	 */
+	public void setListeners(List listeners) {
+		Assert.notNull(listeners, "The listeners are required");
+		ExecutionContextRepositoryListener[] all = new ExecutionContextRepositoryListener[listeners.size() + 1];
+		all[0] = metrics;
+		for (int i = 0; i < listeners.size(); i++) {
+			all[i + 1] = (ExecutionContextRepositoryListener) listeners.get(i);
+		}
+		this.listeners = all;
+	}
+
+	/**
+	 * Set how often the size of a saved execution is sampled. For example a value of 100 will sample every 100th
+	 * save. The default is 0 (never sample).
+	 * @param sizeSampleRate The sample rate or 0
+	 */
+	public void setSizeSampleRate(int sizeSampleRate) {
+		Assert.isTrue(sizeSampleRate >= 0, "The sizeSampleRate must not be negative");
+		this.sizeSampleRate = sizeSampleRate;
+	}
+
+	/**
+	 * Dispatches events to all listeners.
+	 */
+	private class Dispatcher implements ExecutionContextRepositoryListener {
+
+		public void executionSaved(ExecutionContextKey key, long durationNanos) {
+			ExecutionContextRepositoryListener[] listeners = InstrumentedExecutionContextRepository.this.listeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].executionSaved(key, durationNanos);
+			}
+		}
+
+		public void executionSizeSampled(int bytes) {
+			ExecutionContextRepositoryListener[] listeners = InstrumentedExecutionContextRepository.this.listeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].executionSizeSampled(bytes);
+			}
+		}
+
+		public void executionRestored(ExecutionContextKey key, long durationNanos) {
+			ExecutionContextRepositoryListener[] listeners = InstrumentedExecutionContextRepository.this.listeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].executionRestored(key, durationNanos);
+			}
+		}
+
+		public void executionNotFound(ExecutionContextKey key) {
+			ExecutionContextRepositoryListener[] listeners = InstrumentedExecutionContextRepository.this.listeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].executionNotFound(key);
+			}
+		}
+
+		public void executionsEvicted(int count) {
+			ExecutionContextRepositoryListener[] listeners = InstrumentedExecutionContextRepository.this.listeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].executionsEvicted(count);
+			}
+		}
+
+		public void executionsExpired(int count, long reclaimedSerializedBytes) {
+			ExecutionContextRepositoryListener[] listeners = InstrumentedExecutionContextRepository.this.listeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].executionsExpired(count, reclaimedSerializedBytes);
+			}
+		}
+	}
+}
@@ -39,6 +39,14 @@ public final class IntegerExecutionContextKey extends ExecutionContextKey {
 		this.value = value;
 	}
 
+	/**
+	 * Returns the underlying value of the key.
+	 * @return The value
+	 */
+	public int getValue() {
+		return value;
+	}
+
 	public boolean equals(Object o) {
 		if (!(o instanceof IntegerExecutionContextKey)) {
 			return false;
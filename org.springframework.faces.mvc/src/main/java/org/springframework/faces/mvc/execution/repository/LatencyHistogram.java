@@ -0,0 +1,153 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * A thread-safe histogram of durations. Each bucket counts durations less than double the upper bound of the previous
+ * bucket, starting from 1 microsecond.
+ * <p>
+ * Durations are recorded into one of several stripes selected by the current thread, each guarded by its own monitor,
+ * so that concurrent requests rarely contend. Reads combine all stripes and are therefore more expensive.
+ * 
+ * @author Phillip Webb
+ */
+class LatencyHistogram {
+
+	private static final int BUCKETS = 32;
+
+	private static final int STRIPES = 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	public LatencyHistogram() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Record a duration.
+	 * @param durationNanos The duration in nanoseconds
+	 */
+	public void record(long durationNanos) {
+		long micros = Math.max(durationNanos / 1000, 0);
+		int bucket = 0;
+		while (bucket < BUCKETS - 1 && micros >= (1L << bucket)) {
+			bucket++;
+		}
+		Stripe stripe = stripes[System.identityHashCode(Thread.currentThread()) & (STRIPES - 1)];
+		synchronized (stripe) {
+			stripe.counts[bucket]++;
+			stripe.count++;
+			stripe.totalNanos += durationNanos;
+		}
+	}
+
+	/**
+	 * Returns the number of durations recorded in each bucket.
+	 * @return The bucket counts
+	 */
+	public long[] getCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				for (int j = 0; j < BUCKETS; j++) {
+					counts[j] += stripes[i].counts[j];
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the number of recorded durations.
+	 * @return The count
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				count += stripes[i].count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the mean duration in microseconds.
+	 * @return The mean duration or 0 if no durations have been recorded
+	 */
+	public long getMeanMicros() {
+		long count = 0;
+		long totalNanos = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				count += stripes[i].count;
+				totalNanos += stripes[i].totalNanos;
+			}
+		}
+		return (count == 0 ? 0 : totalNanos / count / 1000);
+	}
+
+	/**
+	 * Returns the upper bound of the bucket containing the specified percentile.
+	 * @param percentile The percentile (0-100)
+	 * @return The upper bound in microseconds or 0 if no durations have been recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		long[] snapshot = getCounts();
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += snapshot[i];
+		}
+		long target = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen > 0 && seen >= target) {
+				return 1L << i;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Reset all recorded durations.
+	 */
+	public void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				for (int j = 0; j < BUCKETS; j++) {
+					stripes[i].counts[j] = 0;
+				}
+				stripes[i].count = 0;
+				stripes[i].totalNanos = 0;
+			}
+		}
+	}
+
+	/**
+	 * Counts recorded by a subset of threads.
+	 */
+	private static class Stripe {
+
+		private final long[] counts = new long[BUCKETS];
+
+		private long count;
+
+		private long totalNanos;
+	}
+}
@@ -0,0 +1,638 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ExecutionContextStore} that holds data outside of the Java heap in memory-mapped segment
+ * files. Intended for large entries that would otherwise be promoted to the old generation while waiting to be
+ * restored, see {@link TieredExecutionContextStore}.
+ * <p>
+ * Entries are appended to the current segment. Once every entry in a segment has been removed or has expired the
+ * segment is reclaimed and reused, so the mapped files are created once and then recycled. Entries larger than the
+ * {@link #setSegmentSize(int) segment size} are given a dedicated segment that is retired as soon as the entry is
+ * removed, entries larger than the {@link #setMaxEntrySize(int) maximum entry size} are rejected. When the
+ * {@link #setMaxSegments(int) maximum number of segments} are in use the oldest segment is evicted along with any
+ * entries that it contains. Segments are never added beyond the maximum; if every segment is pinned by a concurrent
+ * copy the put fails fast with an {@link ExecutionContextStoreFullException} rather than blocking. The
+ * {@link TieredExecutionContextStore} responds by holding the entry in its heap tier.
+ * <p>
+ * The store monitor is only held whilst entries and segments are tracked. Data is copied to and from segments, and new
+ * segment files are created and mapped, without holding the monitor. Segments are pinned whilst data is being copied
+ * so that they are not evicted or reused.
+ * <p>
+ * Segments are created lazily in the {@link #setDirectory(File) directory} specified (defaults to the
+ * <tt>java.io.tmpdir</tt>). Before the first segment is created, segment files left in the directory by a previous run
+ * (for example when the JVM was killed) are deleted. The file of a retired segment is deleted once its mapping has
+ * been garbage collected. All remaining files are deleted when the store is {@link #destroy() destroyed}.
+ * 
+ * @author Phillip Webb
+ */
+public class MappedExecutionContextStore implements ExecutionContextStore, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(MappedExecutionContextStore.class);
+
+	private static final String FILE_PREFIX = "mvcfaces";
+
+	private static final String FILE_SUFFIX = ".seg";
+
+	/**
+	 * Map of store ID to {@link Entry}.
+	 */
+	private final Map entries = new HashMap();
+
+	/**
+	 * Active {@link Segment segments} in allocation order, the last segment is the current segment.
+	 */
+	private final LinkedList segments = new LinkedList();
+
+	/**
+	 * Reclaimed {@link Segment segments} available for reuse.
+	 */
+	private final LinkedList freeSegments = new LinkedList();
+
+	/**
+	 * Closed {@link Segment segments} with files that have not yet been deleted.
+	 */
+	private final List retiredSegments = new LinkedList();
+
+	private File directory;
+
+	private int segmentSize = 16 * 1024 * 1024;
+
+	private int maxEntrySize = 64 * 1024 * 1024;
+
+	private int maxSegments = 16;
+
+	private long timeToLive = 300 * 1000;
+
+	private boolean directoryCleaned;
+
+	public void put(String id, byte[] data) {
+		Assert.notNull(id, "The id is required");
+		Assert.notNull(data, "The data is required");
+		if (data.length > maxEntrySize) {
+			throw new ExecutionContextRepositoryException("Unable to store MVC faces execution of " + data.length
+					+ " bytes, the maximum entry size is " + maxEntrySize + " bytes");
+		}
+		long now = currentTime();
+		Entry entry;
+		synchronized (this) {
+			remove((Entry) entries.remove(id));
+			entry = allocate(id, data.length, now);
+		}
+		if (entry == null) {
+			boolean dedicated = data.length > segmentSize;
+			Segment segment = createSegment(dedicated ? data.length : segmentSize, dedicated);
+			synchronized (this) {
+				try {
+					entry = allocate(id, data.length, now, segment);
+				} catch (ExecutionContextStoreFullException e) {
+					segment.close();
+					retiredSegments.add(segment);
+					throw e;
+				}
+			}
+		}
+		entry.write(data);
+		synchronized (this) {
+			entry.getSegment().unpin();
+			remove((Entry) entries.put(id, entry));
+		}
+	}
+
+	public byte[] remove(String id) {
+		Entry entry;
+		synchronized (this) {
+			entry = (Entry) entries.remove(id);
+			if (entry == null || entry.isExpired(currentTime())) {
+				remove(entry);
+				return null;
+			}
+			entry.getSegment().pin();
+		}
+		byte[] data = entry.read();
+		synchronized (this) {
+			entry.getSegment().unpin();
+			remove(entry);
+		}
+		return data;
+	}
+
+	/**
+	 * Allocate space for an entry in the current segment or a free segment. Must be called whilst holding the store
+	 * monitor.
+	 * @param id The ID of the entry
+	 * @param length The required number of bytes
+	 * @param now The current time
+	 * @return A pinned entry or <tt>null</tt> if a new segment must be created
+	 */
+	private Entry allocate(String id, int length, long now) {
+		if (!retiredSegments.isEmpty()) {
+			deleteRetired(false);
+		}
+		reclaimExpired(now);
+		Segment current = (segments.isEmpty() ? null : (Segment) segments.getLast());
+		if (current != null && current.isUnused()) {
+			reclaim(current);
+		} else if (length <= segmentSize && current != null && !current.isDedicated()
+				&& current.getRemaining() >= length) {
+			return current.allocate(id, length, now + timeToLive);
+		}
+		evictToBudget();
+		if (length > segmentSize || freeSegments.isEmpty()) {
+			return null;
+		}
+		return allocate(id, length, now, (Segment) freeSegments.removeFirst());
+	}
+
+	/**
+	 * Allocate space for an entry in a new or free segment, evicting the oldest segments as required. Must be called
+	 * whilst holding the store monitor.
+	 * @param id The ID of the entry
+	 * @param length The required number of bytes
+	 * @param now The current time
+	 * @param segment The new segment
+	 * @return A pinned entry
+	 */
+	private Entry allocate(String id, int length, long now, Segment segment) {
+		evictToBudget();
+		segments.addLast(segment);
+		return segment.allocate(id, length, now + timeToLive);
+	}
+
+	/**
+	 * Evict the oldest segments that are not pinned until a new segment can be added.
+	 * @throws ExecutionContextStoreFullException if every segment is pinned
+	 */
+	private void evictToBudget() {
+		while (segments.size() >= maxSegments) {
+			Segment oldest = getOldestUnpinned();
+			if (oldest == null) {
+				throw new ExecutionContextStoreFullException("Unable to store MVC faces execution, all " + maxSegments
+						+ " segments are in use");
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Evicting " + oldest.getEntryCount() + " MVC faces executions to remain within budget");
+			}
+			evict(oldest);
+		}
+	}
+
+	private Segment getOldestUnpinned() {
+		for (Iterator iterator = segments.iterator(); iterator.hasNext();) {
+			Segment segment = (Segment) iterator.next();
+			if (!segment.isPinned()) {
+				return segment;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reclaim segments where every entry has expired.
+	 * @param now The current time
+	 */
+	private void reclaimExpired(long now) {
+		List expired = new ArrayList();
+		for (Iterator iterator = segments.iterator(); iterator.hasNext();) {
+			Segment segment = (Segment) iterator.next();
+			if (segment.isExpired(now) && !segment.isPinned()) {
+				expired.add(segment);
+			}
+		}
+		for (Iterator iterator = expired.iterator(); iterator.hasNext();) {
+			evict((Segment) iterator.next());
+		}
+	}
+
+	private void evict(Segment segment) {
+		Entry[] segmentEntries = segment.getEntries();
+		for (int i = 0; i < segmentEntries.length; i++) {
+			if (entries.get(segmentEntries[i].getId()) == segmentEntries[i]) {
+				entries.remove(segmentEntries[i].getId());
+			}
+			segment.remove(segmentEntries[i]);
+		}
+		if (segments.contains(segment)) {
+			reclaim(segment);
+		}
+	}
+
+	/**
+	 * Remove an entry from its segment, reclaiming the segment if it is no longer used.
+	 * @param entry The entry or <tt>null</tt>
+	 */
+	private void remove(Entry entry) {
+		if (entry == null) {
+			return;
+		}
+		Segment segment = entry.getSegment();
+		segment.remove(entry);
+		if (segment.isUnused() && segments.contains(segment)
+				&& (segment.isDedicated() || segment != segments.getLast())) {
+			reclaim(segment);
+		}
+	}
+
+	private void reclaim(Segment segment) {
+		segments.remove(segment);
+		if (segment.isDedicated()) {
+			segment.close();
+			retiredSegments.add(segment);
+		} else {
+			segment.reset();
+			freeSegments.addLast(segment);
+		}
+	}
+
+	/**
+	 * Delete the files of retired segments.
+	 * @param force If files should be deleted even if they may still be mapped
+	 */
+	private void deleteRetired(boolean force) {
+		for (Iterator iterator = retiredSegments.iterator(); iterator.hasNext();) {
+			Segment segment = (Segment) iterator.next();
+			if ((force || !segment.isMapped()) && segment.delete()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private Segment createSegment(int size, boolean dedicated) {
+		cleanDirectory();
+		File file = null;
+		try {
+			file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+			return new Segment(file, size, dedicated);
+		} catch (IOException e) {
+			if (file != null) {
+				file.delete();
+			}
+			throw new ExecutionContextRepositoryException("Unable to create MVC faces execution segment file", e);
+		}
+	}
+
+	/**
+	 * Delete segment files left in the directory by a previous run. Only called once, before the first segment is
+	 * created. Open segments hold a lock on their file so files in use by any store, in this or another JVM, are
+	 * skipped.
+	 */
+	private synchronized void cleanDirectory() {
+		if (directoryCleaned) {
+			return;
+		}
+		directoryCleaned = true;
+		File[] files = (directory != null ? directory : new File(System.getProperty("java.io.tmpdir"))).listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			String name = files[i].getName();
+			if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && files[i].isFile()
+					&& !isLocked(files[i]) && files[i].delete()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Deleted stale MVC faces execution segment file '" + files[i] + "'");
+				}
+			}
+		}
+	}
+
+	private boolean isLocked(File file) {
+		try {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				FileLock lock = randomAccessFile.getChannel().tryLock();
+				if (lock == null) {
+					return true;
+				}
+				lock.release();
+				return false;
+			} finally {
+				randomAccessFile.close();
+			}
+		} catch (OverlappingFileLockException e) {
+			return true;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the current time in milliseconds. Subclasses can override this method for testing.
+	 * @return The current time
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the number of entries currently held in the store.
+	 * @return The number of entries
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of segments currently mapped, including reclaimed segments waiting to be reused.
+	 * @return The number of segments
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size() + freeSegments.size();
+	}
+
+	/**
+	 * Unmap and delete all segment files. Any entries held in the store are lost. Since mappings cannot be released
+	 * explicitly, files that cannot be deleted yet are left to be removed when a store next starts in the same
+	 * directory.
+	 */
+	public synchronized void destroy() {
+		entries.clear();
+		List all = new ArrayList(segments);
+		all.addAll(freeSegments);
+		segments.clear();
+		freeSegments.clear();
+		for (Iterator iterator = all.iterator(); iterator.hasNext();) {
+			Segment segment = (Segment) iterator.next();
+			segment.close();
+			retiredSegments.add(segment);
+		}
+		deleteRetired(true);
+	}
+
+	/**
+	 * Set the directory used to hold segment files. Defaults to the <tt>java.io.tmpdir</tt>.
+	 * @param directory The directory
+	 */
+	public void setDirectory(File directory) {
+		Assert.isTrue(directory == null || directory.isDirectory(), "The directory '" + directory
+				+ "' does not exist");
+		this.directory = directory;
+	}
+
+	/**
+	 * Set the size in bytes of each segment file. The default is 16MB.
+	 * @param segmentSize The segment size
+	 */
+	public void setSegmentSize(int segmentSize) {
+		Assert.isTrue(segmentSize > 0, "The segmentSize must be positive");
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Set the maximum size in bytes of a single entry. Entries larger than the {@link #setSegmentSize(int) segment
+	 * size} are held in a dedicated segment of the same size, this value therefore limits the size of any segment
+	 * file. The default is 64MB.
+	 * @param maxEntrySize The maximum entry size
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		Assert.isTrue(maxEntrySize > 0, "The maxEntrySize must be positive");
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * Set the maximum number of segments that can hold entries. The oldest segment is evicted when this value is
+	 * reached. If every segment is pinned by a concurrent copy, a put fails with an
+	 * {@link ExecutionContextStoreFullException}. The default is 16.
+	 * @param maxSegments The maximum number of segments
+	 */
+	public void setMaxSegments(int maxSegments) {
+		Assert.isTrue(maxSegments > 0, "The maxSegments must be positive");
+		this.maxSegments = maxSegments;
+	}
+
+	/**
+	 * Set the number of seconds that an entry remains in the store before it expires. The default is 300.
+	 * @param timeToLiveSeconds The time to live in seconds
+	 */
+	public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+		Assert.isTrue(timeToLiveSeconds > 0, "The timeToLiveSeconds must be positive");
+		this.timeToLive = timeToLiveSeconds * 1000L;
+	}
+
+	/**
+	 * A single entry held in a segment.
+	 */
+	private static class Entry {
+
+		private String id;
+
+		private Segment segment;
+
+		private int offset;
+
+		private int length;
+
+		private long expires;
+
+		public Entry(String id, Segment segment, int offset, int length, long expires) {
+			this.id = id;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.expires = expires;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public Segment getSegment() {
+			return segment;
+		}
+
+		public boolean isExpired(long now) {
+			return now > expires;
+		}
+
+		public void write(byte[] data) {
+			segment.write(offset, data);
+		}
+
+		public byte[] read() {
+			return segment.read(offset, length);
+		}
+	}
+
+	/**
+	 * A memory-mapped segment file. The file is locked until the segment is closed so that it is not removed when
+	 * another store cleans the directory. Space is allocated from the segment until it is {@link #reset() reset}.
+	 * Apart from {@link #write(int, byte[])} and {@link #read(int, int)} all methods must be called whilst holding the
+	 * store monitor.
+	 */
+	private static class Segment {
+
+		private File file;
+
+		private RandomAccessFile randomAccessFile;
+
+		private MappedByteBuffer buffer;
+
+		private Reference mapping;
+
+		private boolean dedicated;
+
+		private int position;
+
+		private long expires;
+
+		private int pins;
+
+		private Set entries = new HashSet();
+
+		public Segment(File file, int size, boolean dedicated) throws IOException {
+			this.file = file;
+			this.dedicated = dedicated;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				randomAccessFile.getChannel().lock();
+				this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} catch (IOException e) {
+				randomAccessFile.close();
+				throw e;
+			} catch (RuntimeException e) {
+				randomAccessFile.close();
+				throw e;
+			}
+			this.mapping = new WeakReference(buffer);
+		}
+
+		public boolean isDedicated() {
+			return dedicated;
+		}
+
+		public int getRemaining() {
+			return buffer.capacity() - position;
+		}
+
+		/**
+		 * Allocate space for a new entry and pin the segment so that it can be written.
+		 * @param id The ID of the entry
+		 * @param length The length of the entry
+		 * @param expires The time that the entry expires
+		 * @return The entry
+		 */
+		public Entry allocate(String id, int length, long expires) {
+			Entry entry = new Entry(id, this, position, length, expires);
+			position += length;
+			this.expires = Math.max(this.expires, expires);
+			entries.add(entry);
+			pin();
+			return entry;
+		}
+
+		public void write(int offset, byte[] data) {
+			ByteBuffer target = buffer.duplicate();
+			target.position(offset);
+			target.put(data);
+		}
+
+		public byte[] read(int offset, int length) {
+			byte[] data = new byte[length];
+			ByteBuffer source = buffer.duplicate();
+			source.position(offset);
+			source.get(data);
+			return data;
+		}
+
+		public void pin() {
+			pins++;
+		}
+
+		public void unpin() {
+			pins--;
+		}
+
+		public boolean isPinned() {
+			return pins > 0;
+		}
+
+		public void remove(Entry entry) {
+			entries.remove(entry);
+		}
+
+		public int getEntryCount() {
+			return entries.size();
+		}
+
+		public boolean isUnused() {
+			return entries.isEmpty() && !isPinned();
+		}
+
+		public Entry[] getEntries() {
+			return (Entry[]) entries.toArray(new Entry[entries.size()]);
+		}
+
+		public boolean isExpired(long now) {
+			return !entries.isEmpty() && now > expires;
+		}
+
+		public void reset() {
+			entries.clear();
+			position = 0;
+			expires = 0;
+		}
+
+		/**
+		 * Close the segment file and release the mapping so that it can be garbage collected.
+		 */
+		public void close() {
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				logger.warn("Unable to close MVC faces execution segment file '" + file + "'", e);
+			}
+			buffer = null;
+		}
+
+		/**
+		 * Returns <tt>true</tt> if the mapping of a closed segment has not yet been garbage collected.
+		 * @return If the segment may still be mapped
+		 */
+		public boolean isMapped() {
+			return mapping.get() != null;
+		}
+
+		/**
+		 * Delete the segment file.
+		 * @return <tt>true</tt> if the file has been deleted
+		 */
+		public boolean delete() {
+			return file.delete() || !file.exists();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ExecutionContextRepository} that issues {@link NodeExecutionContextKey node-affine keys}.
+ * Executions are saved using a delegate repository (by default a {@link SessionBindingExecutionContextRepository})
+ * that must return {@link IntegerExecutionContextKey integer keys}, the integer value becomes the sequence of the node
+ * key.
+ * <p>
+ * Keys created by another node, or by an earlier generation of this node, are rejected with a
+ * {@link ForeignExecutionException} before the delegate is consulted so that the session is never accessed for an
+ * execution that cannot exist. The exception includes the ID of the owning node should the request need to be
+ * forwarded. Since the node ID is encoded in the first three characters of the key a load balancer can also route
+ * requests directly using the <tt>execution</tt> parameter.
+ * <p>
+ * Each node in the cluster must be configured with a unique {@link #setNodeId(int) node ID}. The
+ * {@link #setGeneration(int) generation} defaults to a value derived from the time the repository was created so that
+ * keys issued before a restart are also rejected.
+ * 
+ * @author Phillip Webb
+ */
+public class NodeAffineExecutionContextRepository implements ExecutionContextRepository {
+
+	private static final Log logger = LogFactory.getLog(NodeAffineExecutionContextRepository.class);
+
+	private int nodeId;
+
+	private int generation = (int) (System.currentTimeMillis() / 1000) & NodeExecutionContextKey.MAX_NODE_ID;
+
+	private ExecutionContextRepository delegate = new SessionBindingExecutionContextRepository();
+
+	public ExecutionContextKey parseKey(String key) throws BadlyFormattedExecutionContextKeyException {
+		return NodeExecutionContextKey.parse(key);
+	}
+
+	public ExecutionContextKey save(RequestContext requestContext) throws ExecutionContextRepositoryException {
+		ExecutionContextKey key = delegate.save(requestContext);
+		if (key == null) {
+			return null;
+		}
+		if (!(key instanceof IntegerExecutionContextKey)) {
+			throw new ExecutionContextRepositoryException("Unable to save the specified MVC faces request, "
+					+ "the delegate repository returned an unsupported key type " + key.getClass().getName());
+		}
+		return new NodeExecutionContextKey(nodeId, generation, ((IntegerExecutionContextKey) key).getValue());
+	}
+
+	public void restore(ExecutionContextKey key, RequestContext requestContext) throws NoSuchExecutionException,
+			ExecutionContextRepositoryException {
+		if (!(key instanceof NodeExecutionContextKey)) {
+			throw new NoSuchExecutionException(key);
+		}
+		NodeExecutionContextKey nodeKey = (NodeExecutionContextKey) key;
+		if (nodeKey.getNodeId() != nodeId || nodeKey.getGeneration() != generation) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Rejecting MVC faces execution '" + key + "' created by node " + nodeKey.getNodeId()
+						+ " generation " + nodeKey.getGeneration());
+			}
+			throw new ForeignExecutionException(nodeKey);
+		}
+		try {
+			delegate.restore(new IntegerExecutionContextKey(nodeKey.getSequence()), requestContext);
+		} catch (NoSuchExecutionException e) {
+			throw new NoSuchExecutionException(key, e);
+		}
+	}
+
+	/**
+	 * Returns the ID of this node.
+	 * @return The node ID
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Set the ID of this node, each node in the cluster must use a unique value. The default is 0.
+	 * @param nodeId The node ID (0-65535)
+	 */
+	public void setNodeId(int nodeId) {
+		Assert.isTrue(nodeId >= 0 && nodeId <= NodeExecutionContextKey.MAX_NODE_ID, "The nodeId must be between 0 and "
+				+ NodeExecutionContextKey.MAX_NODE_ID);
+		this.nodeId = nodeId;
+	}
+
+	/**
+	 * Set the generation of this node. Defaults to a value derived from the time the repository was created.
+	 * @param generation The generation (0-65535)
+	 */
+	public void setGeneration(int generation) {
+		Assert.isTrue(generation >= 0 && generation <= NodeExecutionContextKey.MAX_NODE_ID,
+				"The generation must be between 0 and " + NodeExecutionContextKey.MAX_NODE_ID);
+		this.generation = generation;
+	}
+
+	/**
+	 * Set the repository used to save and restore executions. The repository must return
+	 * {@link IntegerExecutionContextKey integer keys}. Defaults to a {@link SessionBindingExecutionContextRepository}.
+	 * @param delegate The delegate repository
+	 */
+	public void setDelegate(ExecutionContextRepository delegate) {
+		Assert.notNull(delegate, "The delegate is required");
+		this.delegate = delegate;
+	}
+}
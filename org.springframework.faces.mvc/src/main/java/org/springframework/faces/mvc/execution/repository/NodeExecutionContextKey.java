@@ -0,0 +1,157 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ExecutionContextKey} that packs the ID of the node that created the execution, a generation
+ * and a sequence into a single <tt>long</tt>. The node ID occupies the top 16 bits, the generation the next 16 bits
+ * and the sequence the low 32 bits.
+ * <p>
+ * Keys are encoded as exactly {@link #ENCODED_LENGTH 11} URL safe Base64 characters. Since 16 bits are encoded by the
+ * first three characters a load balancer can route requests using only the prefix of the <tt>execution</tt>
+ * parameter.
+ * 
+ * @see NodeAffineExecutionContextRepository
+ * 
+ * @author Phillip Webb
+ */
+public final class NodeExecutionContextKey extends ExecutionContextKey {
+
+	/**
+	 * The length of an encoded key.
+	 */
+	public static final int ENCODED_LENGTH = 11;
+
+	/**
+	 * The maximum node ID or generation.
+	 */
+	public static final int MAX_NODE_ID = 0xFFFF;
+
+	/**
+	 * The underlying value for the key.
+	 */
+	private long value;
+
+	/**
+	 * Constructor.
+	 * @param nodeId The node ID (0-65535)
+	 * @param generation The generation (0-65535)
+	 * @param sequence The sequence
+	 */
+	public NodeExecutionContextKey(int nodeId, int generation, int sequence) {
+		Assert.isTrue(nodeId >= 0 && nodeId <= MAX_NODE_ID, "The nodeId must be between 0 and " + MAX_NODE_ID);
+		Assert.isTrue(generation >= 0 && generation <= MAX_NODE_ID, "The generation must be between 0 and "
+				+ MAX_NODE_ID);
+		this.value = ((long) nodeId << 48) | ((long) generation << 32) | (sequence & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Constructor.
+	 * @param value The packed value of the key
+	 * @see #parse(String)
+	 */
+	public NodeExecutionContextKey(long value) {
+		this.value = value;
+	}
+
+	/**
+	 * Returns the packed value of the key.
+	 * @return The value
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the ID of the node that created the key.
+	 * @return The node ID
+	 */
+	public int getNodeId() {
+		return (int) (value >>> 48);
+	}
+
+	/**
+	 * Returns the generation of the node that created the key.
+	 * @return The generation
+	 */
+	public int getGeneration() {
+		return (int) (value >>> 32) & 0xFFFF;
+	}
+
+	/**
+	 * Returns the sequence of the key.
+	 * @return The sequence
+	 */
+	public int getSequence() {
+		return (int) value;
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof NodeExecutionContextKey)) {
+			return false;
+		}
+		return value == ((NodeExecutionContextKey) o).value;
+	}
+
+	public int hashCode() {
+		return (int) (value ^ (value >>> 32));
+	}
+
+	public String toString() {
+		char[] encoded = new char[ENCODED_LENGTH];
+		long remaining = value;
+		for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+			encoded[i] = Base64UrlUtils.encodeChar((int) (remaining & 0x3F));
+			remaining >>>= 6;
+		}
+		return new String(encoded);
+	}
+
+	/**
+	 * Parse the packed value of an encoded key without creating a key instance.
+	 * @param key The string key to parse (cannot be <tt>null</tt>)
+	 * @return The packed value
+	 * @throws BadlyFormattedExecutionContextKeyException if the string key value cannot be parsed
+	 */
+	public static long parseValue(String key) throws BadlyFormattedExecutionContextKeyException {
+		Assert.notNull(key, "Unable to parse null value to NodeExecutionContextKey");
+		if (key.length() != ENCODED_LENGTH) {
+			throw new BadlyFormattedExecutionContextKeyException(key, null);
+		}
+		long value = 0;
+		for (int i = 0; i < ENCODED_LENGTH; i++) {
+			int digit = Base64UrlUtils.indexOf(key.charAt(i));
+			if (digit == -1 || (i == 0 && digit > 0x0F)) {
+				throw new BadlyFormattedExecutionContextKeyException(key, null);
+			}
+			value = (value << 6) | digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Parse the specified string to create a {@link NodeExecutionContextKey}.
+	 * @param key The string key to parse (cannot be <tt>null</tt>)
+	 * @return A {@link NodeExecutionContextKey} instance
+	 * @throws BadlyFormattedExecutionContextKeyException if the string key value cannot be parsed
+	 */
+	public static NodeExecutionContextKey parse(String key) throws BadlyFormattedExecutionContextKeyException {
+		return new NodeExecutionContextKey(parseValue(key));
+	}
+}
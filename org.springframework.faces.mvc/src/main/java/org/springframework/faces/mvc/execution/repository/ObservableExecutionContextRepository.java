@@ -0,0 +1,34 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+/**
+ * An {@link ExecutionContextRepository} that can report events that are only visible to the repository itself, such as
+ * executions {@link ExecutionContextRepositoryListener#executionsEvicted(int) evicted} because the maximum number of
+ * executions has been exceeded.
+ * 
+ * @see InstrumentedExecutionContextRepository
+ * 
+ * @author Phillip Webb
+ */
+public interface ObservableExecutionContextRepository extends ExecutionContextRepository {
+
+	/**
+	 * Set the listener that should be notified of repository events.
+	 * @param listener The listener or <tt>null</tt>
+	 */
+	void setListener(ExecutionContextRepositoryListener listener);
+}
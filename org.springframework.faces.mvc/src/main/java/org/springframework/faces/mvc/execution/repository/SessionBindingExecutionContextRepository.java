@@ -15,12 +15,31 @@
  */
 package org.springframework.faces.mvc.execution.repository;
 
-import java.io.Serializable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.ConfigurableObjectInputStream;
 import org.springframework.faces.mvc.execution.ExecutionContextKey;
 import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.RequestControlContext;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.webflow.core.collection.LocalAttributeMap;
 import org.springframework.webflow.core.collection.MutableAttributeMap;
 import org.springframework.webflow.core.collection.SharedAttributeMap;
@@ -33,11 +52,21 @@ import org.springframework.webflow.core.collection.SharedAttributeMap;
  * oldest execution. The default is 5, which should be fine for most situations. Set it to -1 for no limit. Setting
  * maxConversations to 1 allows easy resource cleanup in situations where there should only be one active conversation
  * per session.
+ * <p>
+ * Executions are written using a compact binary format whenever the session is replicated or passivated. Large
+ * executions are compressed using the configured {@link #setCompressor(ExecutionContextCompressor) compressor}.
+ * <p>
+ * The {@link #setMaxAgeSeconds(int) maxAge} property can be used to expire executions that are never restored, for
+ * example when the user closes the browser tab after a redirect. Expired executions cannot be restored and are removed
+ * whenever the session saves a new execution. Executions in idle sessions can be removed by periodically calling
+ * {@link #expireExecutions()}, usually from an {@link ExecutionContextSweeper}.
  * 
  * @author Erwin Vervaet
  * @author Phillip Webb
  */
-public class SessionBindingExecutionContextRepository implements ExecutionContextRepository {
+public class SessionBindingExecutionContextRepository implements ObservableExecutionContextRepository {
+
+	private static final Log logger = LogFactory.getLog(SessionBindingExecutionContextRepository.class);
 
 	/**
 	 * The session key used to store the executions.
@@ -49,26 +78,60 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 	 */
 	private int maxExecutions = 5;
 
+	/**
+	 * The compressor used for large executions or <tt>null</tt>.
+	 */
+	private ExecutionContextCompressor compressor = new DeflaterExecutionContextCompressor();
+
+	/**
+	 * The size in bytes above which executions are compressed.
+	 */
+	private int compressionThreshold = 4096;
+
+	/**
+	 * The listener notified of evictions or <tt>null</tt>.
+	 */
+	private ExecutionContextRepositoryListener listener;
+
+	/**
+	 * The maximum age of an execution in milliseconds or -1.
+	 */
+	private long maxAge = -1;
+
+	/**
+	 * Weak registry of containers that may hold executions that need to expire.
+	 */
+	private final Map containers = Collections.synchronizedMap(new WeakHashMap());
+
 	public ExecutionContextKey parseKey(String key) {
 		return IntegerExecutionContextKey.parse(key);
 	}
 
 	/**
 	 * Obtain the container used to store executions in the current session. Create a new empty container and add it to
-	 * the session if no existing container can be found.
+	 * the session if no existing container can be found. The session mutex is only used when the container is first
+	 * created.
 	 * 
 	 * @param request The HTTP request
 	 * @return A container (never <tt>null</tt>)
 	 */
 	private StoredExecutionContextContainer getContainer(SharedAttributeMap sessionMap) {
-		synchronized (sessionMap.getMutex()) {
-			StoredExecutionContextContainer container = (StoredExecutionContextContainer) sessionMap.get(sessionKey);
-			if (container == null) {
-				container = new StoredExecutionContextContainer(maxExecutions);
-				sessionMap.put(sessionKey, container);
+		StoredExecutionContextContainer container = (StoredExecutionContextContainer) sessionMap.get(sessionKey);
+		if (container == null) {
+			synchronized (sessionMap.getMutex()) {
+				container = (StoredExecutionContextContainer) sessionMap.get(sessionKey);
+				if (container == null) {
+					container = new StoredExecutionContextContainer(maxExecutions, compressor,
+								compressionThreshold);
+					sessionMap.put(sessionKey, container);
+				}
 			}
-			return container;
 		}
+		if (maxAge > 0 && !container.isRegistered()) {
+			containers.put(container, Boolean.TRUE);
+			container.setRegistered(true);
+		}
+		return container;
 	}
 
 	public ExecutionContextKey save(RequestContext requestContext) throws ExecutionContextRepositoryException {
@@ -77,7 +140,15 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 				return null;
 			}
 			SharedAttributeMap sessionMap = requestContext.getExternalContext().getSessionMap();
-			return getContainer(sessionMap).save(requestContext);
+			StoredExecutionContextContainer container = getContainer(sessionMap);
+			ExecutionContextKey key = container.save(requestContext, listener);
+			if (maxAge > 0) {
+				List expired = container.expire(System.currentTimeMillis() - maxAge);
+				if (!expired.isEmpty() && listener != null) {
+					listener.executionsExpired(expired.size(), getSize(expired));
+				}
+			}
+			return key;
 		} catch (RuntimeException e) {
 			if (e instanceof ExecutionContextRepositoryException) {
 				throw e;
@@ -89,7 +160,7 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 	public void restore(ExecutionContextKey key, RequestContext requestContext) {
 		try {
 			SharedAttributeMap sessionMap = requestContext.getExternalContext().getSessionMap();
-			getContainer(sessionMap).restore(key, requestContext);
+			getContainer(sessionMap).restore(key, requestContext, maxAge);
 		} catch (RuntimeException e) {
 			if (e instanceof ExecutionContextRepositoryException) {
 				throw e;
@@ -119,18 +190,115 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 	}
 
 	/**
-	 * Class stored in HTTP session to contain all active executions.
+	 * Set the compressor used for executions that exceed the {@link #setCompressionThreshold(int) compression
+	 * threshold} when the session is replicated or passivated. Set to <tt>null</tt> to disable compression. Defaults
+	 * to a {@link DeflaterExecutionContextCompressor}.
+	 * @param compressor The compressor or <tt>null</tt>
+	 */
+	public void setCompressor(ExecutionContextCompressor compressor) {
+		this.compressor = compressor;
+	}
+
+	/**
+	 * Set the serialized size in bytes above which executions will be compressed. The default is 4096.
+	 * @param compressionThreshold The compression threshold
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		Assert.isTrue(compressionThreshold >= 0, "The compressionThreshold must not be negative");
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public void setListener(ExecutionContextRepositoryListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Set the maximum number of seconds that an execution can be stored before it expires. Set to -1 for no limit.
+	 * The default is -1.
+	 * @param maxAgeSeconds The maximum age in seconds
+	 */
+	public void setMaxAgeSeconds(int maxAgeSeconds) {
+		Assert.isTrue(maxAgeSeconds == -1 || maxAgeSeconds > 0, "The maxAgeSeconds must be positive or -1");
+		this.maxAge = (maxAgeSeconds == -1 ? -1 : maxAgeSeconds * 1000L);
+	}
+
+	/**
+	 * Expire executions older than the {@link #setMaxAgeSeconds(int) maxAge} in all sessions that have used this
+	 * repository. The session mutex is not used. The returned value is the size of each expired execution when it was
+	 * last serialized, executions that have never been serialized (because the session has not been replicated or
+	 * passivated) are not counted.
+	 * @return The serialized size of the expired executions that had been serialized
+	 */
+	public long expireExecutions() {
+		if (maxAge <= 0) {
+			return 0;
+		}
+		Object[] registered;
+		synchronized (containers) {
+			registered = containers.keySet().toArray();
+		}
+		long cutoff = System.currentTimeMillis() - maxAge;
+		int count = 0;
+		long bytes = 0;
+		for (int i = 0; i < registered.length; i++) {
+			List expired = ((StoredExecutionContextContainer) registered[i]).expire(cutoff);
+			bytes += getSize(expired);
+			count += expired.size();
+		}
+		if (count > 0) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Expired " + count + " MVC faces executions reclaiming " + bytes + " serialized bytes");
+			}
+			if (listener != null) {
+				listener.executionsExpired(count, bytes);
+			}
+		}
+		return bytes;
+	}
+
+	private static long getSize(List storedExecutionContexts) {
+		long size = 0;
+		for (Iterator iterator = storedExecutionContexts.iterator(); iterator.hasNext();) {
+			size += ((StoredExecutionContext) iterator.next()).getSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of containers that are registered for expiry.
+	 * @return The number of registered containers
+	 */
+	protected int getRegisteredContainerCount() {
+		return containers.size();
+	}
+
+	/**
+	 * Class stored in HTTP session to contain all active executions. The container only holds its own monitor whilst
+	 * the stored map is updated, flash scopes are copied outside of the lock allowing concurrent AJAX requests from the
+	 * same session to save and restore executions in parallel.
+	 * <p>
+	 * The container is {@link Externalizable}. The sequence and capacity are written as variable length integers, keys
+	 * as raw ints and each execution as its creation time followed by a length prefixed block that is compressed when
+	 * it exceeds the compression threshold.
 	 * @see StoredExecutionContext
 	 */
-	static class StoredExecutionContextContainer implements Serializable {
+	static class StoredExecutionContextContainer implements Externalizable {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Version of the externalized format.
+		 */
+		private static final int FORMAT_VERSION = 1;
 
 		/**
 		 * Map of {@link ExecutionContextKey} to {@link StoredExecutionContext} objects stored in key insertion order.
+		 * Guarded by the container.
 		 */
 		private LinkedHashMap stored;
 
 		/**
-		 * Sequence number incremented on each save.
+		 * Sequence number incremented on each save. Guarded by the container.
 		 */
 		private int sequence;
 
@@ -139,8 +307,37 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 		 */
 		private int maxCapacity;
 
+		/**
+		 * The compressor used for large executions or <tt>null</tt>.
+		 */
+		private ExecutionContextCompressor compressor;
+
+		/**
+		 * The size in bytes above which executions are compressed.
+		 */
+		private int compressionThreshold;
+
+		/**
+		 * If the container has been registered for expiry.
+		 */
+		private transient volatile boolean registered;
+
+		/**
+		 * Constructor used when the container is read from an external form.
+		 */
+		public StoredExecutionContextContainer() {
+			this(-1);
+		}
+
 		public StoredExecutionContextContainer(int maxCapacity) {
+			this(maxCapacity, null, 0);
+		}
+
+		public StoredExecutionContextContainer(int maxCapacity, ExecutionContextCompressor compressor,
+				int compressionThreshold) {
 			this.maxCapacity = maxCapacity;
+			this.compressor = compressor;
+			this.compressionThreshold = compressionThreshold;
 			this.stored = new LinkedHashMap();
 		}
 
@@ -149,26 +346,53 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 		 * @return <tt>true</tt> if the capacity has been exceeded
 		 */
 		private boolean capactityExceeded() {
-			return ((maxCapacity > 0) && (getSize() > maxCapacity));
+			return ((maxCapacity > 0) && (stored.size() > maxCapacity));
 		}
 
 		/**
 		 * @return The number of stored items
 		 */
-		protected int getSize() {
+		protected synchronized int getSize() {
 			return stored.size();
 		}
 
+		/**
+		 * @param key The execution key
+		 * @return The stored execution or <tt>null</tt>
+		 */
+		protected synchronized StoredExecutionContext getStored(ExecutionContextKey key) {
+			return (StoredExecutionContext) stored.get(key);
+		}
+
 		/**
 		 * Save data from the specified request, removing old executions as necessary.
 		 * @param requestContext The request context
 		 * @return The key of the newly saved execution
 		 */
-		public synchronized ExecutionContextKey save(RequestContext requestContext) {
-			IntegerExecutionContextKey key = new IntegerExecutionContextKey(++sequence);
-			stored.put(key, new StoredExecutionContext(requestContext));
-			if (capactityExceeded() && (getSize() > 1)) {
-				stored.remove(stored.keySet().iterator().next());
+		public ExecutionContextKey save(RequestContext requestContext) {
+			return save(requestContext, null);
+		}
+
+		/**
+		 * Save data from the specified request, removing old executions as necessary.
+		 * @param requestContext The request context
+		 * @param listener Listener to notify of evictions or <tt>null</tt>
+		 * @return The key of the newly saved execution
+		 */
+		public ExecutionContextKey save(RequestContext requestContext, ExecutionContextRepositoryListener listener) {
+			StoredExecutionContext storedExecutionContext = new StoredExecutionContext(requestContext);
+			IntegerExecutionContextKey key;
+			int evicted = 0;
+			synchronized (this) {
+				key = new IntegerExecutionContextKey(++sequence);
+				stored.put(key, storedExecutionContext);
+				while (capactityExceeded() && (stored.size() > 1)) {
+					stored.remove(stored.keySet().iterator().next());
+					evicted++;
+				}
+			}
+			if (evicted > 0 && listener != null) {
+				listener.executionsEvicted(evicted);
 			}
 			return key;
 		}
@@ -178,25 +402,164 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 		 * @param key The execution key
 		 * @param requestContext The request to restore
 		 */
-		public synchronized void restore(ExecutionContextKey key, RequestContext requestContext) {
-			StoredExecutionContext storedExecutionContext = (StoredExecutionContext) stored.remove(key);
+		public void restore(ExecutionContextKey key, RequestContext requestContext) {
+			restore(key, requestContext, -1);
+		}
+
+		/**
+		 * Restore data to the specified request, removing the conversation.
+		 * @param key The execution key
+		 * @param requestContext The request to restore
+		 * @param maxAge The maximum age of the execution in milliseconds or -1
+		 */
+		public void restore(ExecutionContextKey key, RequestContext requestContext, long maxAge) {
+			StoredExecutionContext storedExecutionContext;
+			synchronized (this) {
+				storedExecutionContext = (StoredExecutionContext) stored.remove(key);
+			}
 			if (storedExecutionContext == null) {
 				throw new NoSuchExecutionException(key);
 			}
+			if (maxAge > 0 && storedExecutionContext.getCreated() < System.currentTimeMillis() - maxAge) {
+				throw new NoSuchExecutionException(key);
+			}
 			storedExecutionContext.restore(requestContext);
 		}
+
+		/**
+		 * Remove executions created before the specified time. Executions are stored in creation order so only the
+		 * head of the insertion order needs to be checked.
+		 * @param cutoff The cutoff time
+		 * @return A list of the removed {@link StoredExecutionContext}s
+		 */
+		public synchronized List expire(long cutoff) {
+			List expired = Collections.EMPTY_LIST;
+			for (Iterator iterator = stored.values().iterator(); iterator.hasNext();) {
+				StoredExecutionContext storedExecutionContext = (StoredExecutionContext) iterator.next();
+				if (storedExecutionContext.getCreated() >= cutoff) {
+					return expired;
+				}
+				iterator.remove();
+				expired = (expired.isEmpty() ? new ArrayList() : expired);
+				expired.add(storedExecutionContext);
+			}
+			return expired;
+		}
+
+		public boolean isRegistered() {
+			return registered;
+		}
+
+		public void setRegistered(boolean registered) {
+			this.registered = registered;
+		}
+
+		public void writeExternal(ObjectOutput out) throws IOException {
+			List keys;
+			List values;
+			int sequence;
+			synchronized (this) {
+				keys = new ArrayList(stored.keySet());
+				values = new ArrayList(stored.values());
+				sequence = this.sequence;
+			}
+			out.writeByte(FORMAT_VERSION);
+			VarIntUtils.writeUnsigned(out, sequence);
+			VarIntUtils.writeSigned(out, maxCapacity);
+			out.writeObject(compressor);
+			VarIntUtils.writeUnsigned(out, compressionThreshold);
+			VarIntUtils.writeUnsigned(out, keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				out.writeInt(((IntegerExecutionContextKey) keys.get(i)).getValue());
+				out.writeLong(((StoredExecutionContext) values.get(i)).getCreated());
+				byte[] data = ((StoredExecutionContext) values.get(i)).toByteArray();
+				boolean compressed = (compressor != null && data.length > compressionThreshold);
+				if (compressed) {
+					data = compressor.compress(data);
+				}
+				out.writeBoolean(compressed);
+				VarIntUtils.writeUnsigned(out, data.length);
+				out.write(data);
+			}
+		}
+
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			int version = in.readByte();
+			if (version != FORMAT_VERSION) {
+				throw new InvalidObjectException("Unsupported MVC faces execution format version " + version);
+			}
+			sequence = VarIntUtils.readUnsigned(in);
+			maxCapacity = VarIntUtils.readSigned(in);
+			compressor = (ExecutionContextCompressor) in.readObject();
+			compressionThreshold = VarIntUtils.readUnsigned(in);
+			int count = VarIntUtils.readUnsigned(in);
+			for (int i = 0; i < count; i++) {
+				IntegerExecutionContextKey key = new IntegerExecutionContextKey(in.readInt());
+				long created = in.readLong();
+				boolean compressed = in.readBoolean();
+				byte[] data = new byte[VarIntUtils.readUnsigned(in)];
+				in.readFully(data);
+				if (compressed) {
+					data = compressor.decompress(data);
+				}
+				StoredExecutionContext storedExecutionContext = StoredExecutionContext.fromByteArray(data);
+				storedExecutionContext.setCreated(created);
+				stored.put(key, storedExecutionContext);
+			}
+		}
 	}
 
 	/**
 	 * A single stored execution contained in a {@link StoredExecutionContextContainer}.
 	 */
-	static class StoredExecutionContext implements Serializable {
+	static class StoredExecutionContext implements Externalizable {
+
+		private static final long serialVersionUID = 1L;
 
 		/**
 		 * Stored flash scope
 		 */
 		private MutableAttributeMap flashScope;
 
+		/**
+		 * The time that the execution was created.
+		 */
+		private long created = System.currentTimeMillis();
+
+		/**
+		 * The size in bytes of the execution when it was last serialized or 0.
+		 */
+		private int size;
+
+		/**
+		 * Constructor used when the execution is read from an external form.
+		 */
+		public StoredExecutionContext() {
+			this.flashScope = new LocalAttributeMap();
+		}
+
+		/**
+		 * Returns the time that the execution was created. The creation time is not included in the externalized form
+		 * of the execution.
+		 * @return The creation time in milliseconds
+		 */
+		public long getCreated() {
+			return created;
+		}
+
+		void setCreated(long created) {
+			this.created = created;
+		}
+
+		/**
+		 * Returns the size of the execution when it was last serialized using {@link #toByteArray()} or deserialized
+		 * using {@link #fromByteArray(byte[])}.
+		 * @return The size in bytes or 0 if the execution has not been serialized
+		 */
+		public int getSize() {
+			return size;
+		}
+
 		/**
 		 * Constructor.
 		 * @param requestContext The request context to save data from.
@@ -207,11 +570,77 @@ public class SessionBindingExecutionContextRepository implements ExecutionContex
 		}
 
 		/**
-		 * Restore data to the specified request context.
+		 * Restore data to the specified request context. When possible the data is restored lazily so that it is only
+		 * copied if the <tt>flashScope</tt> is accessed.
 		 * @param requestContext
 		 */
 		public void restore(RequestContext requestContext) {
-			requestContext.getFlashScope().replaceWith(this.flashScope);
+			if (requestContext instanceof RequestControlContext) {
+				((RequestControlContext) requestContext).restoreFlashScope(this.flashScope);
+			} else {
+				requestContext.getFlashScope().replaceWith(this.flashScope);
+			}
+		}
+
+		public void writeExternal(ObjectOutput out) throws IOException {
+			Map attributes = flashScope.asMap();
+			VarIntUtils.writeUnsigned(out, attributes.size());
+			for (Iterator iterator = attributes.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry attribute = (Map.Entry) iterator.next();
+				out.writeUTF((String) attribute.getKey());
+				out.writeObject(attribute.getValue());
+			}
+		}
+
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			int count = VarIntUtils.readUnsigned(in);
+			for (int i = 0; i < count; i++) {
+				flashScope.put(in.readUTF(), in.readObject());
+			}
+		}
+
+		/**
+		 * Serialize this stored execution to a byte array. Used by repositories that do not hold executions as live
+		 * objects.
+		 * @return The serialized execution
+		 * @see #fromByteArray(byte[])
+		 */
+		public byte[] toByteArray() {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				writeExternal(out);
+				out.close();
+				byte[] data = bytes.toByteArray();
+				size = data.length;
+				return data;
+			} catch (IOException e) {
+				throw new ExecutionContextRepositoryException("Unable to serialize the MVC faces execution", e);
+			}
+		}
+
+		/**
+		 * Deserialize a stored execution previously serialized using {@link #toByteArray()}.
+		 * @param data The serialized execution
+		 * @return The stored execution
+		 */
+		public static StoredExecutionContext fromByteArray(byte[] data) {
+			try {
+				ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(data), ClassUtils
+						.getDefaultClassLoader());
+				try {
+					StoredExecutionContext storedExecutionContext = new StoredExecutionContext();
+					storedExecutionContext.readExternal(in);
+					storedExecutionContext.size = data.length;
+					return storedExecutionContext;
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				throw new ExecutionContextRepositoryException("Unable to deserialize the MVC faces execution", e);
+			} catch (ClassNotFoundException e) {
+				throw new ExecutionContextRepositoryException("Unable to deserialize the MVC faces execution", e);
+			}
 		}
 
 		/**
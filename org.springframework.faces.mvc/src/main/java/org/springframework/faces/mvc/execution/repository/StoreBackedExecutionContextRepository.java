@@ -0,0 +1,254 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContext;
+import org.springframework.util.Assert;
+import org.springframework.webflow.core.collection.SharedAttributeMap;
+
+/**
+ * Implementation of {@link ExecutionContextRepository} that holds serialized executions in an
+ * {@link ExecutionContextStore} rather than in the HTTP session. The session only contains a small set of active keys,
+ * keeping the replicated session payload small. By default an {@link ExpiringExecutionContextStore} is used.
+ * <p>
+ * Entries in the store are keyed by a unique identifier generated for the session combined with the
+ * {@link ExecutionContextKey}. The session mutex is only used when the key set is first created, saving and restoring
+ * executions synchronizes on the key set itself.
+ * <p>
+ * As with {@link SessionBindingExecutionContextRepository} the {@link #setMaxExecutions(int) maxExecutions} property
+ * can be used to limit the number of concurrently active executions allowed in a single session.
+ *
+ * @author Phillip Webb
+ */
+public class StoreBackedExecutionContextRepository implements ObservableExecutionContextRepository {
+
+	/**
+	 * The session key used to store the active keys.
+	 */
+	private String sessionKey = "mvcFacesExecutionKeys";
+
+	/**
+	 * The maximum number of concurrent executions.
+	 */
+	private int maxExecutions = 5;
+
+	private ExecutionContextStore store = new ExpiringExecutionContextStore();
+
+	/**
+	 * The listener notified of evictions or <tt>null</tt>.
+	 */
+	private ExecutionContextRepositoryListener listener;
+
+	public ExecutionContextKey parseKey(String key) {
+		return IntegerExecutionContextKey.parse(key);
+	}
+
+	/**
+	 * Obtain the key set for the current session.
+	 * @param sessionMap The session map
+	 * @param create <tt>true</tt> if a new key set should be created when one does not exist
+	 * @return The key set or <tt>null</tt> if <tt>create</tt> is <tt>false</tt> and no key set exists
+	 */
+	private SessionKeys getSessionKeys(SharedAttributeMap sessionMap, boolean create) {
+		SessionKeys sessionKeys = (SessionKeys) sessionMap.get(sessionKey);
+		if (sessionKeys == null && create) {
+			synchronized (sessionMap.getMutex()) {
+				sessionKeys = (SessionKeys) sessionMap.get(sessionKey);
+				if (sessionKeys == null) {
+					sessionKeys = new SessionKeys();
+					sessionMap.put(sessionKey, sessionKeys);
+				}
+			}
+		}
+		return sessionKeys;
+	}
+
+	public ExecutionContextKey save(RequestContext requestContext) throws ExecutionContextRepositoryException {
+		try {
+			if (!StoredExecutionContext.shouldBeSaved(requestContext)) {
+				return null;
+			}
+			byte[] data = new StoredExecutionContext(requestContext).toByteArray();
+			SessionKeys sessionKeys = getSessionKeys(requestContext.getExternalContext().getSessionMap(), true);
+			ExecutionContextKey key = sessionKeys.next();
+			store.put(sessionKeys.getStoreId(key), data);
+			String[] evicted = sessionKeys.removeOldest(maxExecutions);
+			for (int i = 0; i < evicted.length; i++) {
+				store.remove(evicted[i]);
+			}
+			if (evicted.length > 0 && listener != null) {
+				listener.executionsEvicted(evicted.length);
+			}
+			return key;
+		} catch (RuntimeException e) {
+			if (e instanceof ExecutionContextRepositoryException) {
+				throw e;
+			}
+			throw new ExecutionContextRepositoryException("Unable to save the specified MVC faces request", e);
+		}
+	}
+
+	public void restore(ExecutionContextKey key, RequestContext requestContext) {
+		try {
+			SessionKeys sessionKeys = getSessionKeys(requestContext.getExternalContext().getSessionMap(), false);
+			if (sessionKeys == null || !sessionKeys.remove(key)) {
+				throw new NoSuchExecutionException(key);
+			}
+			byte[] data = store.remove(sessionKeys.getStoreId(key));
+			if (data == null) {
+				throw new NoSuchExecutionException(key);
+			}
+			StoredExecutionContext.fromByteArray(data).restore(requestContext);
+		} catch (RuntimeException e) {
+			if (e instanceof ExecutionContextRepositoryException) {
+				throw e;
+			}
+			throw new ExecutionContextRepositoryException(
+					"Unable to restore the MVC faces request with the execution key '" + key + "'", e);
+		}
+	}
+
+	/**
+	 * Set the maximum number of allowed concurrent executions that can be stored per session. Set to -1 for no limit.
+	 * The default is 5.
+	 * @param maxExecutions The maximum number of allowed concurrent executions.
+	 */
+	public void setMaxExecutions(int maxExecutions) {
+		this.maxExecutions = maxExecutions;
+	}
+
+	/**
+	 * Set the session key that will be used to store active keys. Defaults to "mvcFacesExecutionKeys" if not specified.
+	 * @param sessionKey The session key.
+	 */
+	public void setSessionKey(String sessionKey) {
+		Assert.hasLength(sessionKey, "The sessionKey is required");
+		this.sessionKey = sessionKey;
+	}
+
+	/**
+	 * Set the store used to hold serialized executions. Defaults to an {@link ExpiringExecutionContextStore} if not
+	 * specified.
+	 * @param store The execution context store
+	 */
+	public void setStore(ExecutionContextStore store) {
+		Assert.notNull(store, "The store is required");
+		this.store = store;
+	}
+
+	public void setListener(ExecutionContextRepositoryListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Class stored in HTTP session to track the active keys.
+	 */
+	static class SessionKeys implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final Random random = new SecureRandom();
+
+		/**
+		 * Unique identifier of the session used to namespace store IDs.
+		 */
+		private String id;
+
+		/**
+		 * Active keys stored in insertion order.
+		 */
+		private LinkedList keys;
+
+		/**
+		 * Sequence number incremented on each save.
+		 */
+		private int sequence;
+
+		public SessionKeys() {
+			byte[] bytes = new byte[16];
+			random.nextBytes(bytes);
+			StringBuffer id = new StringBuffer(bytes.length * 2);
+			for (int i = 0; i < bytes.length; i++) {
+				id.append(Character.forDigit((bytes[i] >> 4) & 0x0F, 16));
+				id.append(Character.forDigit(bytes[i] & 0x0F, 16));
+			}
+			this.id = id.toString();
+			this.keys = new LinkedList();
+		}
+
+		/**
+		 * Returns the store ID for the specified key.
+		 * @param key The execution key
+		 * @return The store ID
+		 */
+		public String getStoreId(ExecutionContextKey key) {
+			return getStoreId(key.toString());
+		}
+
+		private String getStoreId(String key) {
+			return id + ":" + key;
+		}
+
+		/**
+		 * Create and track a new key.
+		 * @return The newly created key
+		 */
+		public synchronized ExecutionContextKey next() {
+			IntegerExecutionContextKey key = new IntegerExecutionContextKey(++sequence);
+			keys.addLast(key.toString());
+			return key;
+		}
+
+		/**
+		 * Stop tracking the specified key.
+		 * @param key The key to remove
+		 * @return <tt>true</tt> if the key was being tracked
+		 */
+		public synchronized boolean remove(ExecutionContextKey key) {
+			return keys.remove(key.toString());
+		}
+
+		/**
+		 * Remove the oldest keys until no more than <tt>maxCapacity</tt> keys are being tracked.
+		 * @param maxCapacity The maximum capacity or -1
+		 * @return The store IDs of any removed keys
+		 */
+		public synchronized String[] removeOldest(int maxCapacity) {
+			if (maxCapacity <= 0 || keys.size() <= maxCapacity) {
+				return new String[] {};
+			}
+			String[] removed = new String[keys.size() - maxCapacity];
+			for (int i = 0; i < removed.length; i++) {
+				removed[i] = getStoreId((String) keys.removeFirst());
+			}
+			return removed;
+		}
+
+		/**
+		 * @return The number of tracked keys
+		 */
+		protected synchronized int getSize() {
+			return keys.size();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ExecutionContextStore} that divides entries between two tiers based on their size. Small
+ * entries are held in the heap tier (by default an {@link ExpiringExecutionContextStore}), entries larger than the
+ * {@link #setThreshold(int) threshold} are held in the overflow tier (by default a
+ * {@link MappedExecutionContextStore}). Keeping large flash scopes, such as search results, off the heap stops them
+ * being promoted to the old generation while they wait to be restored.
+ * <p>
+ * If the overflow tier throws an {@link ExecutionContextStoreFullException} the entry is held in the heap tier
+ * instead, so a burst of large saves degrades to heap storage rather than failing.
+ * <p>
+ * Typically used with a {@link StoreBackedExecutionContextRepository}.
+ * 
+ * @author Phillip Webb
+ */
+public class TieredExecutionContextStore implements ExecutionContextStore, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(TieredExecutionContextStore.class);
+
+	private ExecutionContextStore heapStore = new ExpiringExecutionContextStore();
+
+	private ExecutionContextStore overflowStore = new MappedExecutionContextStore();
+
+	private int threshold = 64 * 1024;
+
+	public void put(String id, byte[] data) {
+		Assert.notNull(data, "The data is required");
+		if (data.length > threshold) {
+			try {
+				overflowStore.put(id, data);
+				return;
+			} catch (ExecutionContextStoreFullException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Overflow store full, holding MVC faces execution of " + data.length
+							+ " bytes in the heap store");
+				}
+			}
+		}
+		heapStore.put(id, data);
+	}
+
+	public byte[] remove(String id) {
+		byte[] data = heapStore.remove(id);
+		return (data != null ? data : overflowStore.remove(id));
+	}
+
+	public void destroy() throws Exception {
+		if (heapStore instanceof DisposableBean) {
+			((DisposableBean) heapStore).destroy();
+		}
+		if (overflowStore instanceof DisposableBean) {
+			((DisposableBean) overflowStore).destroy();
+		}
+	}
+
+	/**
+	 * Set the store used for entries that do not exceed the threshold. Defaults to an
+	 * {@link ExpiringExecutionContextStore}.
+	 * @param heapStore The heap store
+	 */
+	public void setHeapStore(ExecutionContextStore heapStore) {
+		Assert.notNull(heapStore, "The heapStore is required");
+		this.heapStore = heapStore;
+	}
+
+	/**
+	 * Set the store used for entries that exceed the threshold. Defaults to a {@link MappedExecutionContextStore}.
+	 * @param overflowStore The overflow store
+	 */
+	public void setOverflowStore(ExecutionContextStore overflowStore) {
+		Assert.notNull(overflowStore, "The overflowStore is required");
+		this.overflowStore = overflowStore;
+	}
+
+	/**
+	 * Set the size in bytes above which entries are held in the overflow store. The default is 64KB.
+	 * @param threshold The threshold
+	 */
+	public void setThreshold(int threshold) {
+		Assert.isTrue(threshold >= 0, "The threshold must not be negative");
+		this.threshold = threshold;
+	}
+}
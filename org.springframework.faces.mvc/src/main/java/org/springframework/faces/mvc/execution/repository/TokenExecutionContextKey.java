@@ -0,0 +1,66 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ExecutionContextKey} that carries the complete execution as an opaque token.
+ * 
+ * @see ClientTokenExecutionContextRepository
+ * 
+ * @author Phillip Webb
+ */
+public final class TokenExecutionContextKey extends ExecutionContextKey {
+
+	/**
+	 * The URL safe token.
+	 */
+	private String token;
+
+	/**
+	 * Constructor.
+	 * @param token The URL safe token
+	 */
+	public TokenExecutionContextKey(String token) {
+		Assert.hasLength(token, "The token is required");
+		this.token = token;
+	}
+
+	/**
+	 * Returns the underlying token.
+	 * @return The token
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof TokenExecutionContextKey)) {
+			return false;
+		}
+		return token.equals(((TokenExecutionContextKey) o).token);
+	}
+
+	public int hashCode() {
+		return token.hashCode();
+	}
+
+	public String toString() {
+		return token;
+	}
+}
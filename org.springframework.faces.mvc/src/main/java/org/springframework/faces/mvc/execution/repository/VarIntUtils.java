@@ -0,0 +1,84 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Utility methods for reading and writing variable length integers. Values are written 7 bits at a time with the high
+ * bit of each byte indicating that more bytes follow. Signed values are zig-zag encoded so that small negative numbers
+ * also remain small.
+ * 
+ * @author Phillip Webb
+ */
+abstract class VarIntUtils {
+
+	/**
+	 * Write an unsigned variable length integer.
+	 * @param out The output
+	 * @param value The value to write (must not be negative)
+	 * @throws IOException on error
+	 */
+	public static void writeUnsigned(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read an unsigned variable length integer.
+	 * @param in The input
+	 * @return The value
+	 * @throws IOException on error
+	 */
+	public static int readUnsigned(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed variable length integer");
+	}
+
+	/**
+	 * Write a signed variable length integer.
+	 * @param out The output
+	 * @param value The value to write
+	 * @throws IOException on error
+	 */
+	public static void writeSigned(DataOutput out, int value) throws IOException {
+		writeUnsigned(out, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Read a signed variable length integer.
+	 * @param in The input
+	 * @return The value
+	 * @throws IOException on error
+	 */
+	public static int readSigned(DataInput in) throws IOException {
+		int value = readUnsigned(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * Decorator that adds write-behind behavior to an {@link ExecutionContextStore}. Calls to {@link #put(String, byte[])}
+ * return immediately, queued entries are written to the delegate store in batches by a background thread. Used with a
+ * {@link StoreBackedExecutionContextRepository} this removes the round-trip to a shared external store from the
+ * response of the POST that triggered the redirect.
+ * <p>
+ * Entries that have not yet been written are returned directly from the queue by {@link #remove(String)} so a fast
+ * redirect never misses its own data. Entries that are restored before they are written are never sent to the
+ * delegate. If the delegate implements {@link BatchExecutionContextStore} each batch is written using a single call.
+ * <p>
+ * If the delegate fails to write a batch the entries are returned to the queue, and remain readable by
+ * {@link #remove(String)}, until they have been retried {@link #setMaxRetries(int) maxRetries} times. Entries that
+ * still cannot be written are then discarded and logged.
+ * <p>
+ * When more than {@link #setMaxPending(int) maxPending} entries are queued new entries are written directly to the
+ * delegate by the calling thread. The flusher thread is started when the first entry is queued and is stopped (after
+ * writing any remaining entries) when the store is {@link #destroy() destroyed}.
+ * 
+ * @author Phillip Webb
+ */
+public class WriteBehindExecutionContextStore implements ExecutionContextStore, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(WriteBehindExecutionContextStore.class);
+
+	/**
+	 * Map of store ID to pending {@link Entry entries}. Guarded by {@link #queue}.
+	 */
+	private final Map pending = new HashMap();
+
+	/**
+	 * Pending {@link Entry entries} in insertion order. May contain entries that have already been restored.
+	 */
+	private final LinkedList queue = new LinkedList();
+
+	private ExecutionContextStore delegate;
+
+	private int batchSize = 100;
+
+	private long flushInterval = 10;
+
+	private int maxPending = 10000;
+
+	private int maxRetries = 3;
+
+	private Thread flusher;
+
+	private volatile boolean running;
+
+	/**
+	 * Constructor.
+	 * @see #setDelegate(ExecutionContextStore)
+	 */
+	public WriteBehindExecutionContextStore() {
+	}
+
+	/**
+	 * Constructor.
+	 * @param delegate The store that entries are written to
+	 */
+	public WriteBehindExecutionContextStore(ExecutionContextStore delegate) {
+		setDelegate(delegate);
+	}
+
+	public void put(String id, byte[] data) {
+		Assert.notNull(id, "The id is required");
+		Assert.notNull(data, "The data is required");
+		Entry entry = new Entry(id, data);
+		synchronized (queue) {
+			if (pending.size() >= maxPending) {
+				entry = null;
+			} else {
+				pending.put(id, entry);
+				queue.addLast(entry);
+				queue.notifyAll();
+			}
+		}
+		if (entry == null) {
+			getDelegate().put(id, data);
+			return;
+		}
+		startFlusherIfNecessary();
+	}
+
+	public byte[] remove(String id) {
+		Entry entry;
+		synchronized (queue) {
+			entry = (Entry) pending.remove(id);
+		}
+		if (entry != null) {
+			byte[] data = entry.consume();
+			if (data != null) {
+				return data;
+			}
+		}
+		return getDelegate().remove(id);
+	}
+
+	/**
+	 * Write all queued entries to the delegate store using the calling thread. Entries that have already been taken by
+	 * the flusher thread are awaited so that all pending entries have been written when this method returns.
+	 */
+	public void flush() {
+		writeQueued();
+		Object[] inFlight;
+		synchronized (queue) {
+			inFlight = pending.values().toArray();
+		}
+		for (int i = 0; i < inFlight.length; i++) {
+			Entry entry = (Entry) inFlight[i];
+			while (!entry.awaitComplete(flushInterval)) {
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+				writeQueued();
+			}
+		}
+	}
+
+	private void writeQueued() {
+		List batch = new ArrayList(batchSize);
+		while (drainTo(batch) > 0) {
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Move up to {@link #setBatchSize(int) batchSize} entries from the queue to the specified batch.
+	 * @param batch The batch to add entries to
+	 * @return The number of entries added
+	 */
+	private int drainTo(List batch) {
+		synchronized (queue) {
+			int count = 0;
+			while (batch.size() < batchSize && !queue.isEmpty()) {
+				batch.add(queue.removeFirst());
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Write a batch of entries to the delegate. Entries that have been restored or replaced are skipped.
+	 * @param batch The batch of {@link Entry entries}
+	 * @return <tt>true</tt> if the batch was written or <tt>false</tt> if the delegate failed
+	 */
+	private boolean write(List batch) {
+		Map data = new LinkedHashMap();
+		List claimed = new ArrayList(batch.size());
+		for (Iterator iterator = batch.iterator(); iterator.hasNext();) {
+			Entry entry = (Entry) iterator.next();
+			if (isPending(entry) && entry.claim()) {
+				data.put(entry.getId(), entry.getData());
+				claimed.add(entry);
+			}
+		}
+		if (data.isEmpty()) {
+			return true;
+		}
+		try {
+			writeToDelegate(data);
+		} catch (RuntimeException e) {
+			logger.error("Unable to write " + data.size() + " MVC faces executions to the store", e);
+			retry(claimed);
+			return false;
+		}
+		for (Iterator iterator = claimed.iterator(); iterator.hasNext();) {
+			Entry entry = (Entry) iterator.next();
+			synchronized (queue) {
+				if (pending.get(entry.getId()) == entry) {
+					pending.remove(entry.getId());
+				}
+			}
+			entry.written();
+		}
+		return true;
+	}
+
+	/**
+	 * Return entries that could not be written to the queue so that they remain readable and are written again.
+	 * Entries that have already been retried {@link #setMaxRetries(int) maxRetries} times are discarded.
+	 * @param claimed The claimed {@link Entry entries}
+	 */
+	private void retry(List claimed) {
+		int discarded = 0;
+		synchronized (queue) {
+			for (Iterator iterator = claimed.iterator(); iterator.hasNext();) {
+				Entry entry = (Entry) iterator.next();
+				if (pending.get(entry.getId()) != entry) {
+					// Restored or replaced whilst being written, a waiting restore will consume the entry
+					entry.release();
+				} else if (entry.release() <= maxRetries) {
+					queue.addLast(entry);
+				} else {
+					pending.remove(entry.getId());
+					entry.discard();
+					discarded++;
+				}
+			}
+		}
+		if (discarded > 0) {
+			logger.error("Discarded " + discarded + " MVC faces executions after " + maxRetries
+					+ " failed attempts to write them to the store");
+		}
+	}
+
+	private boolean isPending(Entry entry) {
+		synchronized (queue) {
+			return pending.get(entry.getId()) == entry;
+		}
+	}
+
+	private void writeToDelegate(Map data) {
+		ExecutionContextStore delegate = getDelegate();
+		if (delegate instanceof BatchExecutionContextStore) {
+			((BatchExecutionContextStore) delegate).putAll(data);
+			return;
+		}
+		for (Iterator iterator = data.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			delegate.put((String) entry.getKey(), (byte[]) entry.getValue());
+		}
+	}
+
+	private synchronized void startFlusherIfNecessary() {
+		if (flusher == null) {
+			running = true;
+			flusher = new Thread(new Flusher(), "MvcFacesWriteBehindFlusher");
+			flusher.setDaemon(true);
+			flusher.start();
+		}
+	}
+
+	/**
+	 * Stop the flusher thread and write any remaining entries to the delegate.
+	 */
+	public void destroy() throws InterruptedException {
+		Thread flusher;
+		synchronized (this) {
+			flusher = this.flusher;
+			this.flusher = null;
+			running = false;
+		}
+		if (flusher != null) {
+			flusher.interrupt();
+			flusher.join();
+		}
+		flush();
+	}
+
+	private ExecutionContextStore getDelegate() {
+		Assert.state(delegate != null, "No delegate store has been set");
+		return delegate;
+	}
+
+	/**
+	 * Returns the number of entries that have not yet been written to the delegate.
+	 * @return The number of pending entries
+	 */
+	public int getPendingCount() {
+		synchronized (queue) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * Set the store that entries are written to.
+	 * @param delegate The delegate store
+	 */
+	public void setDelegate(ExecutionContextStore delegate) {
+		Assert.notNull(delegate, "The delegate is required");
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Set the maximum number of entries written in a single batch. The default is 100.
+	 * @param batchSize The batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "The batchSize must be positive");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds that the flusher waits for further entries before writing a batch. The
+	 * default is 10.
+	 * @param flushInterval The flush interval in milliseconds
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval > 0, "The flushInterval must be positive");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Set the maximum number of pending entries. Once exceeded new entries are written directly to the delegate. The
+	 * default is 10000.
+	 * @param maxPending The maximum number of pending entries
+	 */
+	public void setMaxPending(int maxPending) {
+		Assert.isTrue(maxPending > 0, "The maxPending must be positive");
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * Set the number of times that an entry is retried when the delegate fails to write it. Entries that cannot be
+	 * written after this many retries are discarded. The default is 3.
+	 * @param maxRetries The maximum number of retries
+	 */
+	public void setMaxRetries(int maxRetries) {
+		Assert.isTrue(maxRetries >= 0, "The maxRetries must not be negative");
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Background task that writes queued entries in batches. After a failed write the flusher pauses for the
+	 * {@link #setFlushInterval(long) flush interval} before retrying.
+	 */
+	private class Flusher implements Runnable {
+
+		public void run() {
+			List batch = new ArrayList(batchSize);
+			while (running) {
+				try {
+					synchronized (queue) {
+						if (queue.isEmpty()) {
+							queue.wait(flushInterval);
+						}
+					}
+					if (drainTo(batch) > 0) {
+						boolean written = write(batch);
+						batch.clear();
+						if (!written) {
+							Thread.sleep(flushInterval);
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (RuntimeException e) {
+					logger.error("Unexpected error writing MVC faces executions", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A single pending entry. An entry is either consumed by a restore or claimed and written by the flusher. A claimed
+	 * entry that could not be written is released back to the pending state or discarded.
+	 */
+	private static class Entry {
+
+		private static final int PENDING = 0;
+		private static final int CONSUMED = 1;
+		private static final int CLAIMED = 2;
+		private static final int WRITTEN = 3;
+		private static final int DISCARDED = 4;
+
+		private String id;
+
+		private byte[] data;
+
+		private int state = PENDING;
+
+		private int attempts;
+
+		public Entry(String id, byte[] data) {
+			this.id = id;
+			this.data = data;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public synchronized byte[] getData() {
+			return data;
+		}
+
+		/**
+		 * Consume the entry, waiting for any write that is in progress. Data is only returned if the entry has not
+		 * been written, either because the flusher had not claimed it or because the write failed.
+		 * @return The data or <tt>null</tt> if the entry has been written or discarded
+		 */
+		public synchronized byte[] consume() {
+			boolean interrupted = false;
+			while (state == CLAIMED) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (state != PENDING) {
+				return null;
+			}
+			state = CONSUMED;
+			notifyAll();
+			byte[] consumed = data;
+			data = null;
+			return consumed;
+		}
+
+		/**
+		 * Claim the entry so that it can be written.
+		 * @return <tt>true</tt> if the entry was claimed or <tt>false</tt> if it has been consumed
+		 */
+		public synchronized boolean claim() {
+			if (state != PENDING) {
+				return false;
+			}
+			state = CLAIMED;
+			return true;
+		}
+
+		public synchronized void written() {
+			state = WRITTEN;
+			data = null;
+			notifyAll();
+		}
+
+		/**
+		 * Release a claimed entry that could not be written so that it can be consumed or claimed again.
+		 * @return The number of failed attempts to write the entry
+		 */
+		public synchronized int release() {
+			state = PENDING;
+			notifyAll();
+			return ++attempts;
+		}
+
+		public synchronized void discard() {
+			state = DISCARDED;
+			data = null;
+			notifyAll();
+		}
+
+		/**
+		 * Wait up to the specified time for the entry to be written, consumed or discarded.
+		 * @param timeout The maximum time to wait in milliseconds
+		 * @return <tt>true</tt> if the entry has been written, consumed or discarded
+		 */
+		public synchronized boolean awaitComplete(long timeout) {
+			if (state == PENDING || state == CLAIMED) {
+				try {
+					wait(timeout);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return state == CONSUMED || state == WRITTEN || state == DISCARDED;
+		}
+	}
+}
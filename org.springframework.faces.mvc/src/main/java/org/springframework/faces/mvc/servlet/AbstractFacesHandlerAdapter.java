@@ -16,16 +16,25 @@
 package org.springframework.faces.mvc.servlet;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.faces.component.UIViewRoot;
 import javax.faces.context.FacesContext;
 import javax.faces.event.PhaseEvent;
 import javax.faces.event.PhaseId;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.BeanFactoryUtils;
@@ -48,6 +57,7 @@ import org.springframework.faces.mvc.execution.RequestControlContextImpl;
 import org.springframework.faces.mvc.execution.repository.ExecutionContextRepository;
 import org.springframework.faces.mvc.execution.repository.NoSuchExecutionException;
 import org.springframework.faces.mvc.navigation.NavigationLocation;
+import org.springframework.faces.mvc.navigation.NavigationRequestEvent;
 import org.springframework.faces.mvc.servlet.support.HttpServletRequestEncodingScheme;
 import org.springframework.faces.mvc.support.MvcFacesStateHolderComponent;
 import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
@@ -59,10 +69,17 @@ import org.springframework.web.servlet.HandlerAdapter;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.support.WebContentGenerator;
 import org.springframework.webflow.context.servlet.ServletExternalContext;
+import org.springframework.webflow.core.collection.AttributeMap;
+import org.springframework.webflow.execution.View;
 import org.springframework.webflow.mvc.servlet.MvcExternalContext;
 
 /**
  * Abstract base implementation of a MVC {@link HandlerAdapter} that can be used to process {@link FacesHandler}s.
+ * <p>
+ * Navigation outcomes are usually handled by storing the execution in the {@link ExecutionContextRepository} and
+ * redirecting the client. Navigation from AJAX requests, or for specific outcomes, can optionally be handled in-process
+ * by forwarding to the target location and handing the flash scope over in memory. See
+ * {@link #setForwardAjaxNavigation(boolean)} and {@link #setForwardOutcomes(Collection)}.
  * 
  * @see FacesHandlerAdapter
  * 
@@ -76,6 +93,14 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 	private MvcFacesExceptionHandler[] allExceptionHandlers;
 	private AjaxHandler ajaxHandler;
 	private HttpServletRequestEncodingScheme urlEncodingScheme = new HttpServletRequestEncodingScheme();
+	private boolean forwardAjaxNavigation = false;
+	private Set forwardOutcomes = Collections.EMPTY_SET;
+	private int maxSessionViewScopes = 0;
+
+	private static final String FORWARD_PATH_ATTRIBUTE = AbstractFacesHandlerAdapter.class.getName() + ".forwardPath";
+	private static final String FORWARDED_FLASH_SCOPE_ATTRIBUTE = AbstractFacesHandlerAdapter.class.getName()
+			+ ".forwardedFlashScope";
+	private static final String FORWARDED_ATTRIBUTE = AbstractFacesHandlerAdapter.class.getName() + ".forwarded";
 
 	public long getLastModified(HttpServletRequest request, Object handler) {
 		return -1;
@@ -95,20 +120,30 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 			restoreExecution(requestContext, request);
 			try {
 				doHandle(requestContext, request, response);
-				return null;
 			} catch (Exception e) {
 				handleException(requestContext, request, response, e);
-				return null;
 			}
 		} finally {
 			requestContext.release();
 		}
+		if (isForwardNavigationEnabled()) {
+			forwardIfScheduled(request, response);
+		}
+		return null;
 	}
 
 	/**
 	 * Restore the any store state for the flow execution.
 	 */
-	private void restoreExecution(RequestContext requestContext, HttpServletRequest request) {
+	private void restoreExecution(RequestControlContext requestContext, HttpServletRequest request) {
+		if (isForwardNavigationEnabled()) {
+			AttributeMap forwardedFlashScope = (AttributeMap) request.getAttribute(FORWARDED_FLASH_SCOPE_ATTRIBUTE);
+			if (forwardedFlashScope != null) {
+				request.removeAttribute(FORWARDED_FLASH_SCOPE_ATTRIBUTE);
+				requestContext.restoreFlashScope(forwardedFlashScope);
+				return;
+			}
+		}
 		String encodedKey = getRedirectHandler().getExecutionContextKey(request);
 		if (encodedKey != null) {
 			ExecutionContextKey key = getExecutionContextRepository().parseKey(encodedKey);
@@ -191,6 +226,74 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 		getRedirectHandler().handleRedirect(ajaxHandler, encoding, request, response, location, key);
 	}
 
+	/**
+	 * Schedule an in-process forward to the specified location, handing over the flash scope in memory. The forward is
+	 * performed once the current request context has been released.
+	 * @param requestContext The MVC Faces Request Context
+	 * @param request The request
+	 * @param location The navigation location
+	 * @return <tt>true</tt> if the forward was scheduled or <tt>false</tt> if a redirect is required
+	 * @see #isForwardNavigation(RequestContext, HttpServletRequest, NavigationLocation)
+	 */
+	private boolean scheduleForward(RequestContext requestContext, HttpServletRequest request,
+			NavigationLocation location) {
+		if (!isForwardNavigationEnabled() || !(getRedirectHandler() instanceof ForwardingRedirectHandler)
+				|| !isForwardNavigation(requestContext, request, location)) {
+			return false;
+		}
+		String path = ((ForwardingRedirectHandler) getRedirectHandler()).getForwardPath(request, location);
+		if (path == null) {
+			return false;
+		}
+		if (requestContext.getExternalContext().isAjaxRequest() && location.getFragments().length > 0) {
+			requestContext.getFlashScope().put(View.RENDER_FRAGMENTS_ATTRIBUTE, location.getFragments());
+		}
+		request.setAttribute(FORWARDED_FLASH_SCOPE_ATTRIBUTE, requestContext.getFlashScope());
+		request.setAttribute(FORWARD_PATH_ATTRIBUTE, path);
+		return true;
+	}
+
+	private boolean isForwardNavigationEnabled() {
+		return (forwardAjaxNavigation || !forwardOutcomes.isEmpty());
+	}
+
+	private void forwardIfScheduled(HttpServletRequest request, HttpServletResponse response) throws Exception {
+		String path = (String) request.getAttribute(FORWARD_PATH_ATTRIBUTE);
+		if (path != null) {
+			request.removeAttribute(FORWARD_PATH_ATTRIBUTE);
+			request.setAttribute(FORWARDED_ATTRIBUTE, Boolean.TRUE);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Forwarding MVC Faces navigation in-process to '" + path + "'");
+			}
+			String encoding = urlEncodingScheme.getEncodingScheme(request);
+			request.getRequestDispatcher(path).forward(new ForwardedHttpServletRequest(request, path, encoding),
+					response);
+		}
+	}
+
+	/**
+	 * Determine if navigation to the specified location should be handled in-process using a forward rather than a
+	 * redirect. By default AJAX requests are forwarded when {@link #setForwardAjaxNavigation(boolean)
+	 * forwardAjaxNavigation} is set and other requests are forwarded when the navigation outcome is one of the
+	 * {@link #setForwardOutcomes(Collection) forwardOutcomes}. Requests that are themselves the result of a forward are
+	 * never forwarded again. Subclasses can override this method if required.
+	 * @param requestContext The MVC Faces Request Context
+	 * @param request The request
+	 * @param location The navigation location
+	 * @return <tt>true</tt> if navigation should be performed using a forward
+	 */
+	protected boolean isForwardNavigation(RequestContext requestContext, HttpServletRequest request,
+			NavigationLocation location) {
+		if (request.getAttribute(FORWARDED_ATTRIBUTE) != null) {
+			return false;
+		}
+		if (forwardAjaxNavigation && requestContext.getExternalContext().isAjaxRequest()) {
+			return true;
+		}
+		NavigationRequestEvent event = requestContext.getLastNavigationRequestEvent();
+		return (event != null && forwardOutcomes.contains(event.getOutcome()));
+	}
+
 	public void afterPropertiesSet() throws Exception {
 		ajaxHandler = (ajaxHandler == null ? new SpringJavascriptAjaxHandler() : ajaxHandler);
 	}
@@ -317,6 +420,43 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 		this.urlEncodingScheme.setEncodingScheme(urlEncodingScheme);
 	}
 
+	/**
+	 * Set if navigation from AJAX requests should be handled in-process. When <tt>true</tt> the target location is
+	 * rendered as the response to the AJAX request, saving the redirect round trip. The flash scope is handed over in
+	 * memory rather than being stored in the {@link ExecutionContextRepository}. Only locations supported by a
+	 * {@link ForwardingRedirectHandler} can be forwarded. Defaults to <tt>false</tt>.
+	 * @param forwardAjaxNavigation If AJAX navigation should be forwarded
+	 */
+	public void setForwardAjaxNavigation(boolean forwardAjaxNavigation) {
+		this.forwardAjaxNavigation = forwardAjaxNavigation;
+	}
+
+	/**
+	 * Set the navigation outcomes that are safe to handle in-process. Navigation resulting from any of these outcomes
+	 * will be forwarded to the target location rather than redirected. Note: The browser address bar will continue to
+	 * show the URL of the original post-back. Only locations supported by a {@link ForwardingRedirectHandler} can be
+	 * forwarded. Defaults to an empty collection.
+	 * @param forwardOutcomes The outcomes that should be forwarded
+	 */
+	public void setForwardOutcomes(Collection forwardOutcomes) {
+		Assert.notNull(forwardOutcomes, "The forwardOutcomes are required");
+		this.forwardOutcomes = new HashSet(forwardOutcomes);
+	}
+
+	/**
+	 * Set the maximum number of view scopes that are held in the HTTP session for each user. When set the view scope is
+	 * no longer saved as part of the JSF component state, instead only a short token is saved. This can considerably
+	 * reduce the size of pages and post-backs when client side state saving is used. The least recently used view scope
+	 * is evicted when the limit is reached, post-backs from an evicted view will fail with a
+	 * <tt>ViewExpiredException</tt>. Defaults to <tt>0</tt>, the view scope is saved with the component state.
+	 * @param maxSessionViewScopes The maximum number of view scopes held in the session or <tt>0</tt>
+	 * @see org.springframework.faces.mvc.support.SessionViewScopeStore
+	 */
+	public void setMaxSessionViewScopes(int maxSessionViewScopes) {
+		Assert.isTrue(maxSessionViewScopes >= 0, "The maxSessionViewScopes must not be negative");
+		this.maxSessionViewScopes = maxSessionViewScopes;
+	}
+
 	/**
 	 * Returns the URL encoding as specified by the user or <tt>null</tt> if default encoding is being used.
 	 * @return The encoding scheme
@@ -349,7 +489,7 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 
 		public void viewCreated(FacesContext facesContext, RequestContext requestContext, UIViewRoot view, Map model) {
 			AbstractFacesHandlerAdapter.this.getModelBindingExecutor().storeModelToBind(facesContext, model);
-			MvcFacesStateHolderComponent.attach(facesContext, view);
+			MvcFacesStateHolderComponent.attach(facesContext, view, maxSessionViewScopes);
 		}
 
 		public void writeState(FacesContext facesContext) throws IOException {
@@ -366,7 +506,11 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 		}
 
 		private void clearFlashScope(RequestContext requestContext) {
-			requestContext.getFlashScope().clear();
+			if (requestContext instanceof RequestControlContext) {
+				((RequestControlContext) requestContext).clearFlashScope();
+			} else {
+				requestContext.getFlashScope().clear();
+			}
 		}
 
 		public void beforePhase(RequestContext requestContext, PhaseEvent event) {
@@ -388,7 +532,9 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 				throws IOException {
 			HttpServletRequest request = (HttpServletRequest) facesContext.getExternalContext().getRequest();
 			HttpServletResponse response = (HttpServletResponse) facesContext.getExternalContext().getResponse();
-			storeExecutionInRepositoryAndRedirect(requestContext, request, response, location);
+			if (!scheduleForward(requestContext, request, location)) {
+				storeExecutionInRepositoryAndRedirect(requestContext, request, response, location);
+			}
 		}
 	}
 
@@ -427,4 +573,81 @@ public abstract class AbstractFacesHandlerAdapter extends WebContentGenerator im
 			}
 		}
 	}
+
+	/**
+	 * Request wrapper used for in-process forwards. The forwarded request is presented as a <tt>GET</tt> without the
+	 * parameters of the original post-back so that the target view is created rather than restored. Parameters from
+	 * the query string of the forward path are exposed along with the retained AJAX source parameter.
+	 */
+	private static class ForwardedHttpServletRequest extends HttpServletRequestWrapper {
+
+		private Map parameters;
+
+		public ForwardedHttpServletRequest(HttpServletRequest request, String path, String encoding)
+				throws UnsupportedEncodingException {
+			super(request);
+			Map values = new LinkedHashMap();
+			addQueryParameters(values, path, encoding);
+			String[] ajaxSource = request.getParameterValues(SpringJavascriptAjaxHandler.AJAX_SOURCE_PARAM);
+			for (int i = 0; ajaxSource != null && i < ajaxSource.length; i++) {
+				addParameter(values, SpringJavascriptAjaxHandler.AJAX_SOURCE_PARAM, ajaxSource[i]);
+			}
+			Map parameters = new LinkedHashMap();
+			for (Iterator iterator = values.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry entry = (Map.Entry) iterator.next();
+				List list = (List) entry.getValue();
+				parameters.put(entry.getKey(), list.toArray(new String[list.size()]));
+			}
+			this.parameters = Collections.unmodifiableMap(parameters);
+		}
+
+		private static void addQueryParameters(Map values, String path, String encoding)
+				throws UnsupportedEncodingException {
+			int start = path.indexOf('?');
+			if (start == -1) {
+				return;
+			}
+			int end = path.indexOf('#', start);
+			String query = path.substring(start + 1, (end == -1 ? path.length() : end));
+			String[] pairs = query.split("&");
+			for (int i = 0; i < pairs.length; i++) {
+				if (pairs[i].length() > 0) {
+					int equals = pairs[i].indexOf('=');
+					String name = (equals == -1 ? pairs[i] : pairs[i].substring(0, equals));
+					String value = (equals == -1 ? "" : pairs[i].substring(equals + 1));
+					addParameter(values, URLDecoder.decode(name, encoding), URLDecoder.decode(value, encoding));
+				}
+			}
+		}
+
+		private static void addParameter(Map values, String name, String value) {
+			List list = (List) values.get(name);
+			if (list == null) {
+				list = new ArrayList();
+				values.put(name, list);
+			}
+			list.add(value);
+		}
+
+		public String getMethod() {
+			return "GET";
+		}
+
+		public String getParameter(String name) {
+			String[] values = getParameterValues(name);
+			return (values == null || values.length == 0 ? null : values[0]);
+		}
+
+		public Map getParameterMap() {
+			return parameters;
+		}
+
+		public Enumeration getParameterNames() {
+			return Collections.enumeration(parameters.keySet());
+		}
+
+		public String[] getParameterValues(String name) {
+			return (String[]) parameters.get(name);
+		}
+	}
 }
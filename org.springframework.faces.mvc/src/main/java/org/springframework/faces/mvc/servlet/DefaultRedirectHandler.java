@@ -16,36 +16,51 @@
 package org.springframework.faces.mvc.servlet;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.faces.mvc.execution.ExecutionContextKey;
 import org.springframework.faces.mvc.navigation.NavigationLocation;
+import org.springframework.faces.mvc.support.PercentEncoder;
 import org.springframework.js.ajax.AjaxHandler;
 
 /**
- * Default implementation of {@link RedirectHandler}. The class is based heavily on FlowHandlerAdapter from Spring Web
- * Flow.
+ * Default implementation of {@link ForwardingRedirectHandler}. The class is based heavily on FlowHandlerAdapter from
+ * Spring Web Flow.
  * 
  * @author Keith Donald
  * @author Phillip Webb
  */
-public class DefaultRedirectHandler implements RedirectHandler {
+public class DefaultRedirectHandler implements ForwardingRedirectHandler {
 
 	private static final String EXECUTION_CONTEXT_KEY_PARAMETER = "execution";
 
+	/**
+	 * The execution parameter name, pre-encoded. The name is plain ASCII and so encodes to itself under any encoding.
+	 */
+	private static final String ENCODED_EXECUTION_CONTEXT_KEY_PARAMETER = EXECUTION_CONTEXT_KEY_PARAMETER + "=";
+
+	private static final int MAX_CACHED_SERVLET_PREFIXES = 64;
+
 	private static final int NONE = 0x00;
 	private static final int STRIP_PREFIX = 0x01;
 	private static final int SLASH = 0x02;
 	private static final int CONTEXT = 0x04;
 	private static final int SERVLET = 0x08;
 
+	private static final UrlBuilder SERVLET_RELATIVE = new UrlBuilder("servletRelative:", STRIP_PREFIX | SLASH
+			| CONTEXT | SERVLET);
+	private static final UrlBuilder CONTEXT_RELATIVE = new UrlBuilder("contextRelative:", STRIP_PREFIX | SLASH
+			| CONTEXT);
+	private static final UrlBuilder SERVER_RELATIVE = new UrlBuilder("serverRelative:", STRIP_PREFIX | SLASH);
+	private static final UrlBuilder HTTP = new UrlBuilder("http://", NONE);
+	private static final UrlBuilder HTTPS = new UrlBuilder("https://", NONE);
+	private static final UrlBuilder DEFAULT = new UrlBuilder("", SLASH | CONTEXT | SERVLET);
+
 	private static class UrlBuilder {
 		private String prefix;
 		private int flags;
@@ -63,41 +78,58 @@ public class DefaultRedirectHandler implements RedirectHandler {
 			return ((flags & context) != 0);
 		}
 
-		public String buildUrl(String encoding, HttpServletRequest httpServletRequest, String location,
-				ExecutionContextKey key) {
-			try {
-				StringBuffer url = new StringBuffer();
-				url.append(hasFlag(CONTEXT) ? httpServletRequest.getContextPath() : "");
-				url.append(hasFlag(SERVLET) ? httpServletRequest.getServletPath() : "");
-				location = (hasFlag(STRIP_PREFIX) ? location.substring(prefix.length()) : location);
-				if (hasFlag(SLASH) && !location.startsWith("/")) {
-					url.append("/");
-				}
-				url.append(location);
-				if (key != null) {
-					url.append(location.indexOf("?") == -1 ? "?" : "&");
-					url.append(URLEncoder.encode(EXECUTION_CONTEXT_KEY_PARAMETER, encoding));
-					url.append("=");
-					url.append(URLEncoder.encode(key.toString(), encoding));
-				}
-				return url.toString();
-			} catch (UnsupportedEncodingException e) {
-				throw new IllegalStateException("Unexpected encoding exception", e);
+		public String buildForwardPath(HttpServletRequest request, String location) {
+			if (!hasFlag(CONTEXT)) {
+				return null;
+			}
+			int offset = (hasFlag(STRIP_PREFIX) ? prefix.length() : 0);
+			StringBuffer path = new StringBuffer();
+			if (hasFlag(SERVLET)) {
+				path.append(nullSafe(request.getServletPath()));
+			}
+			if (!location.startsWith("/", offset)) {
+				path.append('/');
 			}
+			path.append(location.substring(offset));
+			return path.toString();
 		}
-	}
 
-	private static final List URL_BUILDERS;
-	static {
-		URL_BUILDERS = new ArrayList();
-		URL_BUILDERS.add(new UrlBuilder("servletRelative:", STRIP_PREFIX | SLASH | CONTEXT | SERVLET));
-		URL_BUILDERS.add(new UrlBuilder("contextRelative:", STRIP_PREFIX | SLASH | CONTEXT));
-		URL_BUILDERS.add(new UrlBuilder("serverRelative:", STRIP_PREFIX | SLASH));
-		URL_BUILDERS.add(new UrlBuilder("http://", NONE));
-		URL_BUILDERS.add(new UrlBuilder("https://", NONE));
-		URL_BUILDERS.add(new UrlBuilder("", SLASH | CONTEXT | SERVLET));
+		public String buildUrl(DefaultRedirectHandler handler, String encoding, HttpServletRequest request,
+				String location, ExecutionContextKey key) {
+			int offset = (hasFlag(STRIP_PREFIX) ? prefix.length() : 0);
+			String path = null;
+			if (hasFlag(SERVLET)) {
+				path = handler.getServletPrefix(request);
+			} else if (hasFlag(CONTEXT)) {
+				path = request.getContextPath();
+			}
+			String keyValue = (key == null ? null : key.toString());
+			int length = (path == null ? 0 : path.length()) + location.length() - offset + 1;
+			if (keyValue != null) {
+				length += ENCODED_EXECUTION_CONTEXT_KEY_PARAMETER.length() + keyValue.length() + 1;
+			}
+			StringBuffer url = new StringBuffer(length);
+			if (path != null) {
+				url.append(path);
+			}
+			if (hasFlag(SLASH) && !location.startsWith("/", offset)) {
+				url.append('/');
+			}
+			url.append(location.substring(offset));
+			if (keyValue != null) {
+				url.append(location.indexOf('?', offset) == -1 ? '?' : '&');
+				url.append(ENCODED_EXECUTION_CONTEXT_KEY_PARAMETER);
+				url.append(PercentEncoder.forEncoding(encoding).encode(keyValue));
+			}
+			return url.toString();
+		}
 	}
 
+	/**
+	 * Cache of context path and servlet path concatenations, keyed by servlet path.
+	 */
+	private Map servletPrefixes = Collections.synchronizedMap(new HashMap());
+
 	private boolean redirectHttp10Compatible = false;
 
 	/**
@@ -134,13 +166,66 @@ public class DefaultRedirectHandler implements RedirectHandler {
 	 */
 	protected String getLocationUrl(String encoding, HttpServletRequest request, String location,
 			ExecutionContextKey key) {
-		for (Iterator iterator = URL_BUILDERS.iterator(); iterator.hasNext();) {
-			UrlBuilder urlBuilder = (UrlBuilder) iterator.next();
-			if (urlBuilder.isSuitable(location)) {
-				return urlBuilder.buildUrl(encoding, request, location, key);
+		return getUrlBuilder(location).buildUrl(this, encoding, request, location, key);
+	}
+
+	/**
+	 * Returns the {@link UrlBuilder} for the specified location, dispatching on the first character so that at most
+	 * two prefixes are compared.
+	 * @param location The location
+	 * @return The URL builder
+	 */
+	private UrlBuilder getUrlBuilder(String location) {
+		if (location.length() > 0) {
+			switch (location.charAt(0)) {
+			case 's':
+				if (SERVLET_RELATIVE.isSuitable(location)) {
+					return SERVLET_RELATIVE;
+				}
+				if (SERVER_RELATIVE.isSuitable(location)) {
+					return SERVER_RELATIVE;
+				}
+				break;
+			case 'c':
+				if (CONTEXT_RELATIVE.isSuitable(location)) {
+					return CONTEXT_RELATIVE;
+				}
+				break;
+			case 'h':
+				if (HTTP.isSuitable(location)) {
+					return HTTP;
+				}
+				if (HTTPS.isSuitable(location)) {
+					return HTTPS;
+				}
+				break;
 			}
 		}
-		return location;
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns the context path followed by the servlet path of the request. Results are cached per servlet mapping.
+	 * @param request The request
+	 * @return The context and servlet path
+	 */
+	private String getServletPrefix(HttpServletRequest request) {
+		String contextPath = nullSafe(request.getContextPath());
+		String servletPath = nullSafe(request.getServletPath());
+		String[] cached = (String[]) servletPrefixes.get(servletPath);
+		if (cached != null && cached[0].equals(contextPath)) {
+			return cached[1];
+		}
+		String prefix = contextPath + servletPath;
+		if (servletPrefixes.size() < MAX_CACHED_SERVLET_PREFIXES) {
+			// Extension mapped servlets have a servlet path per view, only the first few are cached
+			servletPrefixes.put(servletPath, new String[] { contextPath, prefix });
+		}
+		return prefix;
+	}
+
+	private static String nullSafe(String s) {
+		return (s == null ? "" : s);
 	}
 
 	public void handleRedirect(AjaxHandler ajaxHandler, String encoding, HttpServletRequest request,
@@ -151,6 +236,18 @@ public class DefaultRedirectHandler implements RedirectHandler {
 		}
 	}
 
+	/**
+	 * Returns the context relative forward path for the location. Server relative and absolute locations, as well as
+	 * popups, cannot be forwarded and will return <tt>null</tt>.
+	 */
+	public String getForwardPath(HttpServletRequest request, NavigationLocation location) {
+		if (location == null || location.getLocation() == null || location.isPopup()) {
+			return null;
+		}
+		String locationString = location.getLocation().toString();
+		return getUrlBuilder(locationString).buildForwardPath(request, locationString);
+	}
+
 	public String getExecutionContextKey(HttpServletRequest request) {
 		return request.getParameter(EXECUTION_CONTEXT_KEY_PARAMETER);
 	}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.faces.mvc.navigation.NavigationLocation;
+
+/**
+ * Extension of {@link RedirectHandler} that can also map a navigation location to a path that can be served in-process
+ * using a servlet forward, rather than sending a redirect to the client.
+ * 
+ * @see AbstractFacesHandlerAdapter#setForwardAjaxNavigation(boolean)
+ * @see AbstractFacesHandlerAdapter#setForwardOutcomes(java.util.Collection)
+ * 
+ * @author Phillip Webb
+ */
+public interface ForwardingRedirectHandler extends RedirectHandler {
+
+	/**
+	 * Returns the context relative path that can be used to forward to the specified location or <tt>null</tt> if the
+	 * location can only be reached using a redirect.
+	 * @param request The native request
+	 * @param location The navigation location
+	 * @return The context relative forward path or <tt>null</tt>
+	 */
+	public String getForwardPath(HttpServletRequest request, NavigationLocation location);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link HashMap} that counts modifications, allowing callers to cheaply detect that the contents of the map may have
+ * changed. Used as the backing map of the Faces MVC scopes so that results derived from scope contents can be safely
+ * cached. Since changes made through the collection views cannot be detected, obtaining a view is also counted as a
+ * modification.
+ * 
+ * @author Phillip Webb
+ */
+public class ModificationTrackingMap extends HashMap {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient int modificationCount;
+
+	/**
+	 * Returns the number of modifications that have been made to the map. The count only ever increases.
+	 * @return The modification count
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Record that the map may have been modified.
+	 */
+	protected void modified() {
+		modificationCount++;
+	}
+
+	public Object put(Object key, Object value) {
+		modified();
+		return super.put(key, value);
+	}
+
+	public void putAll(Map m) {
+		modified();
+		super.putAll(m);
+	}
+
+	public Object remove(Object key) {
+		modified();
+		return super.remove(key);
+	}
+
+	public void clear() {
+		modified();
+		super.clear();
+	}
+
+	public Set keySet() {
+		modified();
+		return super.keySet();
+	}
+
+	public Collection values() {
+		modified();
+		return super.values();
+	}
+
+	public Set entrySet() {
+		modified();
+		return super.entrySet();
+	}
+}
@@ -15,6 +15,9 @@
  */
 package org.springframework.faces.mvc.support;
 
+import java.io.Serializable;
+
+import javax.faces.application.ViewExpiredException;
 import javax.faces.component.UIComponent;
 import javax.faces.component.UIComponentBase;
 import javax.faces.component.UIViewRoot;
@@ -22,12 +25,18 @@ import javax.faces.context.FacesContext;
 import javax.faces.render.Renderer;
 
 import org.springframework.util.Assert;
-import org.springframework.webflow.core.collection.LocalAttributeMap;
 import org.springframework.webflow.core.collection.MutableAttributeMap;
 
 /**
  * A JSF component that can be used to hold MVC Faces data. This allows for data to be stored within the JSF view and
  * restored during the faces lifecyle.
+ * <p>
+ * By default the view scope is saved as part of the component state. When attached with a positive
+ * <tt>maxSessionViewScopes</tt> the view scope is instead held in a {@link SessionViewScopeStore} and only a short
+ * token is saved with the component state.
+ * <p>
+ * The view scope is held in a {@link ViewScopeMap} so that it can contain transient values that are recreated rather
+ * than saved.
  * 
  * @author Keith Donald
  * @author Phillip Webb
@@ -41,10 +50,19 @@ public class MvcFacesStateHolderComponent extends UIComponentBase {
 	 */
 	public static final String COMPONENT_ID = "MvcStateHolder";
 
+	/**
+	 * View root attribute used to hold a {@link HolderReference} to the component.
+	 */
+	private static final String HOLDER_ATTRIBUTE = MvcFacesStateHolderComponent.class.getName() + ".HOLDER";
+
 	private boolean transientValue;
 
 	private MutableAttributeMap pageScope;
 
+	private int maxSessionViewScopes;
+
+	private String token;
+
 	public String getId() {
 		return COMPONENT_ID;
 	}
@@ -78,23 +96,99 @@ public class MvcFacesStateHolderComponent extends UIComponentBase {
 	public void restoreState(FacesContext context, Object state) {
 		Object values[] = (Object[]) state;
 		pageScope = (MutableAttributeMap) values[0];
+		if (values.length > 1) {
+			token = (String) values[1];
+			maxSessionViewScopes = ((Integer) values[2]).intValue();
+			pageScope = restoreFromSession(context);
+		}
+		UIViewRoot viewRoot = getViewRoot();
+		if (viewRoot != null) {
+			register(viewRoot, this);
+		}
+	}
+
+	/**
+	 * Returns the view root that contains this component.
+	 * @return The view root or <tt>null</tt>
+	 */
+	private UIViewRoot getViewRoot() {
+		UIComponent component = getParent();
+		while (component != null && !(component instanceof UIViewRoot)) {
+			component = component.getParent();
+		}
+		return (UIViewRoot) component;
+	}
+
+	private MutableAttributeMap restoreFromSession(FacesContext context) {
+		SessionViewScopeStore store = SessionViewScopeStore.locate(context, 0);
+		MutableAttributeMap viewScope = (store == null ? null : store.get(token));
+		if (viewScope == null) {
+			String viewId = (context.getViewRoot() == null ? null : context.getViewRoot().getViewId());
+			throw new ViewExpiredException("The MVC view scope for view '" + viewId
+					+ "' is no longer held in the session", viewId);
+		}
+		return viewScope;
 	}
 
 	public Object saveState(FacesContext context) {
+		if (maxSessionViewScopes > 0) {
+			return saveToSession(context);
+		}
 		Object values[] = new Object[1];
 		values[0] = pageScope;
 		return values;
 	}
 
+	private Object saveToSession(FacesContext context) {
+		SessionViewScopeStore store = SessionViewScopeStore.locate(context, maxSessionViewScopes);
+		if (token == null) {
+			token = store.newToken();
+		}
+		store.put(token, getViewScope());
+		store.updated(context);
+		Object values[] = new Object[3];
+		values[1] = token;
+		values[2] = new Integer(maxSessionViewScopes);
+		return values;
+	}
+
 	public MutableAttributeMap getViewScope() {
 		if (pageScope == null) {
-			pageScope = new LocalAttributeMap();
+			pageScope = new ViewScopeMap();
+		} else if (!(pageScope instanceof ViewScopeMap)) {
+			pageScope = new ViewScopeMap(pageScope.asMap());
 		}
 		return pageScope;
 	}
 
 	public static void attach(FacesContext facesContext, UIViewRoot viewRoot) {
-		viewRoot.getChildren().add(new MvcFacesStateHolderComponent());
+		attach(facesContext, viewRoot, 0);
+	}
+
+	/**
+	 * Attach a new {@link MvcFacesStateHolderComponent} to the specified view root.
+	 * @param facesContext The faces context
+	 * @param viewRoot The view root
+	 * @param maxSessionViewScopes The maximum number of view scopes held in the session for each user or <tt>0</tt> if
+	 * the view scope should be saved as part of the component state
+	 */
+	public static void attach(FacesContext facesContext, UIViewRoot viewRoot, int maxSessionViewScopes) {
+		Assert.isTrue(maxSessionViewScopes >= 0, "The maxSessionViewScopes must not be negative");
+		MvcFacesStateHolderComponent component = new MvcFacesStateHolderComponent();
+		component.maxSessionViewScopes = maxSessionViewScopes;
+		viewRoot.getChildren().add(component);
+		register(viewRoot, component);
+	}
+
+	/**
+	 * Register the component with the view root so that it can be located without searching the component tree.
+	 * Attributes are shared by any <tt>DelegatingViewRoot</tt> that wraps the view root.
+	 * @param viewRoot The view root
+	 * @param component The component
+	 */
+	private static void register(UIViewRoot viewRoot, MvcFacesStateHolderComponent component) {
+		// Always use a new reference since restored attribute values may be shared with saved state
+		viewRoot.getAttributes().put(HOLDER_ATTRIBUTE, new HolderReference(component));
 	}
 
 	/**
@@ -107,7 +201,14 @@ public class MvcFacesStateHolderComponent extends UIComponentBase {
 	 */
 	public static MvcFacesStateHolderComponent locate(FacesContext facesContext, UIViewRoot viewRoot, boolean required) {
 		viewRoot = viewRoot == null ? facesContext.getViewRoot() : viewRoot;
+		HolderReference reference = (HolderReference) viewRoot.getAttributes().get(HOLDER_ATTRIBUTE);
+		if (reference != null && reference.component != null && reference.component.getParent() != null) {
+			return reference.component;
+		}
 		UIComponent component = viewRoot.findComponent(COMPONENT_ID);
+		if (component instanceof MvcFacesStateHolderComponent) {
+			register(viewRoot, (MvcFacesStateHolderComponent) component);
+		}
 		if (required) {
 			Assert.notNull(component, "The MVC State Holder component cannot be found in the specified viewRoot, "
 					+ "perhaps you are not rendering this view using Spring MVC");
@@ -121,4 +222,19 @@ public class MvcFacesStateHolderComponent extends UIComponentBase {
 	public static MvcFacesStateHolderComponent locate(FacesContext context, boolean required) {
 		return locate(context, null, required);
 	}
+
+	/**
+	 * Reference to the component held as a view root attribute. The reference itself is saved with the view root
+	 * attributes but the component is not, it is registered again when the component state is restored.
+	 */
+	private static final class HolderReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private transient MvcFacesStateHolderComponent component;
+
+		public HolderReference(MvcFacesStateHolderComponent component) {
+			this.component = component;
+		}
+	}
 }
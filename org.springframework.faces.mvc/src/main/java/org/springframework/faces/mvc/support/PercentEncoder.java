@@ -0,0 +1,160 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * Reusable encoder that writes <tt>application/x-www-form-urlencoded</tt> values directly to a {@link StringBuffer}.
+ * The output is identical to {@link URLEncoder#encode(String, String)}, however, runs of characters that do not
+ * require encoding are appended without any intermediate allocation. Instances are immutable and can be shared
+ * between threads, use {@link #forEncoding(String)} to obtain a cached instance.
+ * 
+ * @author Phillip Webb
+ */
+public final class PercentEncoder {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private static final Map ENCODERS = Collections.synchronizedMap(new HashMap());
+
+	private String encoding;
+
+	/**
+	 * Create a new encoder.
+	 * @param encoding The character encoding used for characters that must be percent encoded
+	 * @throws IllegalArgumentException if the encoding is not supported
+	 */
+	public PercentEncoder(String encoding) {
+		Assert.notNull(encoding, "The encoding is required");
+		try {
+			"".getBytes(encoding);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalArgumentException("Unsupported encoding '" + encoding + "'");
+		}
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Returns a shared encoder for the specified encoding.
+	 * @param encoding The character encoding
+	 * @return The encoder
+	 * @throws IllegalArgumentException if the encoding is not supported
+	 */
+	public static PercentEncoder forEncoding(String encoding) {
+		PercentEncoder encoder = (PercentEncoder) ENCODERS.get(encoding);
+		if (encoder == null) {
+			encoder = new PercentEncoder(encoding);
+			ENCODERS.put(encoding, encoder);
+		}
+		return encoder;
+	}
+
+	/**
+	 * @return The character encoding
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Encode the specified value, appending the result.
+	 * @param value The value to encode
+	 * @param out The destination
+	 */
+	public void encode(String value, StringBuffer out) {
+		int length = value.length();
+		int i = 0;
+		while (i < length) {
+			int start = i;
+			while (i < length && isUnreserved(value.charAt(i))) {
+				i++;
+			}
+			if (i > start) {
+				out.append(value.substring(start, i));
+			}
+			start = i;
+			while (i < length && !isUnreserved(value.charAt(i))) {
+				i++;
+			}
+			if (i > start) {
+				appendEncoded(value.substring(start, i), out);
+			}
+		}
+	}
+
+	/**
+	 * Encode the specified value.
+	 * @param value The value to encode
+	 * @return The encoded value
+	 */
+	public String encode(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (!isUnreserved(value.charAt(i))) {
+				StringBuffer encoded = new StringBuffer(value.length() + 16);
+				encode(value, encoded);
+				return encoded.toString();
+			}
+		}
+		return value;
+	}
+
+	private void appendEncoded(String run, StringBuffer out) {
+		int start = 0;
+		for (int i = 0; i <= run.length(); i++) {
+			if (i == run.length() || run.charAt(i) == ' ') {
+				if (i > start) {
+					appendPercentEncoded(run.substring(start, i), out);
+				}
+				if (i < run.length()) {
+					// Spaces are the only character encoded without a percent escape
+					out.append('+');
+				}
+				start = i + 1;
+			}
+		}
+	}
+
+	private void appendPercentEncoded(String s, StringBuffer out) {
+		byte[] bytes;
+		try {
+			bytes = s.getBytes(encoding);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("Unsupported encoding '" + encoding + "'");
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			out.append('%');
+			out.append(HEX[(bytes[i] >> 4) & 0x0F]);
+			out.append(HEX[bytes[i] & 0x0F]);
+		}
+	}
+
+	/**
+	 * Determine if the character is never changed by URL encoding.
+	 * @param c The character
+	 * @return <tt>true</tt> if the character can be written directly
+	 */
+	public static boolean isUnreserved(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+				|| c == '.' || c == '*';
+	}
+}
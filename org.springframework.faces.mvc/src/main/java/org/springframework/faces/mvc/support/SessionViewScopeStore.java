@@ -0,0 +1,189 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.util.Assert;
+import org.springframework.web.util.WebUtils;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+
+/**
+ * Bounded store of view scopes held in the HTTP session. Used by {@link MvcFacesStateHolderComponent} so that only a
+ * short token, rather than the entire view scope, needs to be saved with the JSF component state. Each view instance is
+ * assigned a token that is unique within the session. When more than <tt>maxViewScopes</tt> view scopes are held the
+ * least recently used is evicted.
+ * 
+ * @author Phillip Webb
+ */
+public class SessionViewScopeStore implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String SESSION_ATTRIBUTE = SessionViewScopeStore.class.getName();
+
+	private ViewScopes viewScopes;
+
+	private int nextToken;
+
+	/**
+	 * Constructor.
+	 * @param maxViewScopes The maximum number of view scopes to hold
+	 */
+	public SessionViewScopeStore(int maxViewScopes) {
+		Assert.isTrue(maxViewScopes > 0, "The maxViewScopes must be positive");
+		this.viewScopes = new ViewScopes(maxViewScopes);
+	}
+
+	/**
+	 * Create a new token that can be used to store a view scope.
+	 * @return A token that is unique within this store
+	 */
+	public synchronized String newToken() {
+		return Integer.toString(nextToken++, Character.MAX_RADIX);
+	}
+
+	/**
+	 * Store the view scope against the specified token, replacing any existing value.
+	 * @param token The token
+	 * @param viewScope The view scope
+	 */
+	public synchronized void put(String token, MutableAttributeMap viewScope) {
+		Assert.notNull(token, "The token is required");
+		Assert.notNull(viewScope, "The viewScope is required");
+		viewScopes.put(token, viewScope);
+	}
+
+	/**
+	 * Returns the view scope stored against the specified token.
+	 * @param token The token
+	 * @return The view scope or <tt>null</tt> if the view scope has been evicted or was never stored
+	 */
+	public synchronized MutableAttributeMap get(String token) {
+		return (MutableAttributeMap) viewScopes.get(token);
+	}
+
+	/**
+	 * Returns the number of view scopes currently held.
+	 * @return The number of view scopes
+	 */
+	public synchronized int size() {
+		return viewScopes.size();
+	}
+
+	/**
+	 * Returns the maximum number of view scopes that are held.
+	 * @return The maximum number of view scopes
+	 */
+	public synchronized int getMaxViewScopes() {
+		return viewScopes.getMaxSize();
+	}
+
+	/**
+	 * Update the maximum number of view scopes that are held. Any excess view scopes are evicted immediately.
+	 * @param maxViewScopes The maximum number of view scopes to hold
+	 */
+	public synchronized void setMaxViewScopes(int maxViewScopes) {
+		Assert.isTrue(maxViewScopes > 0, "The maxViewScopes must be positive");
+		viewScopes.setMaxSize(maxViewScopes);
+	}
+
+	/**
+	 * Locate the {@link SessionViewScopeStore} for the session of the specified faces context.
+	 * @param facesContext The faces context
+	 * @param maxViewScopes The maximum number of view scopes that should be held or <tt>0</tt> if the store should not
+	 * be created when it does not exist
+	 * @return The store or <tt>null</tt> if the store does not exist and <tt>maxViewScopes</tt> is <tt>0</tt>
+	 */
+	public static SessionViewScopeStore locate(FacesContext facesContext, int maxViewScopes) {
+		ExternalContext externalContext = facesContext.getExternalContext();
+		Map sessionMap = externalContext.getSessionMap();
+		SessionViewScopeStore store = (SessionViewScopeStore) sessionMap.get(SESSION_ATTRIBUTE);
+		if (store == null && maxViewScopes > 0) {
+			synchronized (getSessionMutex(externalContext)) {
+				store = (SessionViewScopeStore) sessionMap.get(SESSION_ATTRIBUTE);
+				if (store == null) {
+					store = new SessionViewScopeStore(maxViewScopes);
+					sessionMap.put(SESSION_ATTRIBUTE, store);
+				}
+			}
+		}
+		if (store != null && maxViewScopes > 0 && store.getMaxViewScopes() != maxViewScopes) {
+			store.setMaxViewScopes(maxViewScopes);
+		}
+		return store;
+	}
+
+	/**
+	 * Returns the mutex used to guard creation of the store. Servlet sessions use the {@link WebUtils#getSessionMutex
+	 * session mutex}, other sessions are locked directly.
+	 * @param externalContext The external context
+	 * @return The session mutex
+	 */
+	private static Object getSessionMutex(ExternalContext externalContext) {
+		Object session = externalContext.getSession(true);
+		if (session instanceof HttpSession) {
+			return WebUtils.getSessionMutex((HttpSession) session);
+		}
+		return session;
+	}
+
+	/**
+	 * Notify the session that the store has changed, allowing the session to be replicated when necessary.
+	 * @param facesContext The faces context
+	 */
+	public void updated(FacesContext facesContext) {
+		facesContext.getExternalContext().getSessionMap().put(SESSION_ATTRIBUTE, this);
+	}
+
+	/**
+	 * Map of token to view scope held in access order.
+	 */
+	private static class ViewScopes extends LinkedHashMap {
+
+		private static final long serialVersionUID = 1L;
+
+		private int maxSize;
+
+		public ViewScopes(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+			for (Iterator iterator = values().iterator(); iterator.hasNext() && size() > maxSize;) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.faces.mvc.execution.TransientValueFactory;
+import org.springframework.util.Assert;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+
+/**
+ * {@link LocalAttributeMap} used to hold the view scope. In addition to regular attributes the map can hold transient
+ * values that are not serialized with the view state. A transient value is recreated using its
+ * {@link TransientValueFactory} the first time that it is accessed after the map has been deserialized.
+ * 
+ * @author Phillip Webb
+ */
+public class ViewScopeMap extends LocalAttributeMap {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 */
+	public ViewScopeMap() {
+		super(new TransientValueMap());
+	}
+
+	/**
+	 * Constructor.
+	 * @param attributes Initial attributes to add to the map
+	 */
+	public ViewScopeMap(Map attributes) {
+		this();
+		getMapInternal().putAll(attributes);
+	}
+
+	/**
+	 * Put a transient value into the map. Transient values are not serialized, instead the <tt>factory</tt> is used to
+	 * recreate the value on first access after the map has been deserialized. Putting a regular value with the same
+	 * name will remove the transient registration.
+	 * @param attributeName The attribute name
+	 * @param attributeValue The current value (can be <tt>null</tt> to create the value on first access)
+	 * @param factory The factory used to recreate the value
+	 */
+	public void putTransient(String attributeName, Object attributeValue, TransientValueFactory factory) {
+		Assert.notNull(attributeName, "The attributeName is required");
+		Assert.notNull(factory, "The factory is required");
+		((TransientValueMap) getMapInternal()).putTransient(attributeName, attributeValue, factory);
+	}
+
+	/**
+	 * Backing map that recreates transient values on access.
+	 */
+	private static class TransientValueMap extends ModificationTrackingMap {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Map of attribute name to {@link TransientValueFactory}.
+		 */
+		private Map factories = new HashMap();
+
+		public void putTransient(String key, Object value, TransientValueFactory factory) {
+			if (value == null) {
+				super.remove(key);
+			} else {
+				super.put(key, value);
+			}
+			factories.put(key, factory);
+		}
+
+		/**
+		 * Recreate a transient value if it is missing.
+		 * @param key The key
+		 * @return <tt>true</tt> if the key is a transient value that was recreated
+		 */
+		private boolean recreateIfMissing(Object key) {
+			TransientValueFactory factory = (TransientValueFactory) factories.get(key);
+			if (factory != null && !super.containsKey(key)) {
+				super.put(key, factory.createValue());
+				return true;
+			}
+			return false;
+		}
+
+		private void recreateAllMissing() {
+			if (!factories.isEmpty()) {
+				for (Iterator iterator = factories.keySet().iterator(); iterator.hasNext();) {
+					recreateIfMissing(iterator.next());
+				}
+			}
+		}
+
+		public Object get(Object key) {
+			Object value = super.get(key);
+			if (value == null && recreateIfMissing(key)) {
+				value = super.get(key);
+			}
+			return value;
+		}
+
+		public boolean containsKey(Object key) {
+			return super.containsKey(key) || factories.containsKey(key);
+		}
+
+		public Object put(Object key, Object value) {
+			factories.remove(key);
+			return super.put(key, value);
+		}
+
+		public void putAll(Map m) {
+			for (Iterator iterator = m.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry entry = (Map.Entry) iterator.next();
+				put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		public Object remove(Object key) {
+			recreateIfMissing(key);
+			factories.remove(key);
+			return super.remove(key);
+		}
+
+		public void clear() {
+			factories.clear();
+			super.clear();
+		}
+
+		public int size() {
+			int size = super.size();
+			for (Iterator iterator = factories.keySet().iterator(); iterator.hasNext();) {
+				size += (super.containsKey(iterator.next()) ? 0 : 1);
+			}
+			return size;
+		}
+
+		public boolean isEmpty() {
+			return super.isEmpty() && factories.isEmpty();
+		}
+
+		public boolean containsValue(Object value) {
+			recreateAllMissing();
+			return super.containsValue(value);
+		}
+
+		public Set keySet() {
+			recreateAllMissing();
+			return super.keySet();
+		}
+
+		public Collection values() {
+			recreateAllMissing();
+			return super.values();
+		}
+
+		public Set entrySet() {
+			recreateAllMissing();
+			return super.entrySet();
+		}
+
+		/**
+		 * Replace this map with a form that excludes transient values.
+		 * @return The serialized form
+		 */
+		private Object writeReplace() throws ObjectStreamException {
+			HashMap values = new HashMap();
+			for (Iterator iterator = super.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry entry = (Map.Entry) iterator.next();
+				if (!factories.containsKey(entry.getKey())) {
+					values.put(entry.getKey(), entry.getValue());
+				}
+			}
+			return new SerializedForm(values, new HashMap(factories));
+		}
+	}
+
+	/**
+	 * Serialized form of the {@link TransientValueMap}.
+	 */
+	private static class SerializedForm implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private HashMap values;
+
+		private HashMap factories;
+
+		public SerializedForm(HashMap values, HashMap factories) {
+			this.values = values;
+			this.factories = factories;
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			TransientValueMap map = new TransientValueMap();
+			map.putAll(values);
+			map.factories.putAll(factories);
+			return map;
+		}
+	}
+}
@@ -16,6 +16,8 @@
 package org.springframework.faces.mvc.bind;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
@@ -110,6 +112,75 @@ public class DefaultModelBinderTests extends TestCase {
 		}, ScopeType.REQUEST);
 	}
 
+	public void testGroupsValuesForEachScope() throws Exception {
+		RequestControlContext context = (RequestControlContext) EasyMock.createMock(RequestControlContext.class);
+		RequestContextHolder.setRequestContext(context);
+		LocalAttributeMap viewScope = new LocalAttributeMap();
+		LocalAttributeMap requestScope = new LocalAttributeMap();
+		EasyMock.expect(context.getViewScope()).andReturn(viewScope).once();
+		EasyMock.expect(context.getRequestScope()).andReturn(requestScope).once();
+		EasyMock.replay(new Object[] { context });
+		DefaultModelBinder binder = new DefaultModelBinder();
+		binder.setBeanFactory(new DefaultListableBeanFactory());
+		binder.afterPropertiesSet();
+		Map model = new LinkedHashMap();
+		model.put("a", "1");
+		model.put("requestScope.b", "2");
+		model.put("c", "3");
+		model.put("requestScope.d", "4");
+		binder.bindModel(model);
+		EasyMock.verify(new Object[] { context });
+		assertEquals(2, viewScope.size());
+		assertEquals("1", viewScope.get("a"));
+		assertEquals("3", viewScope.get("c"));
+		assertEquals(2, requestScope.size());
+		assertEquals("2", requestScope.get("b"));
+		assertEquals("4", requestScope.get("d"));
+	}
+
+	public void testCachesResolvedScopes() throws Exception {
+		RequestControlContext context = (RequestControlContext) EasyMock.createNiceMock(RequestControlContext.class);
+		RequestContextHolder.setRequestContext(context);
+		LocalAttributeMap map = new LocalAttributeMap();
+		EasyMock.expect(context.getViewScope()).andStubReturn(map);
+		EasyMock.replay(new Object[] { context });
+		DefaultModelBinder binder = new DefaultModelBinder();
+		binder.setBeanFactory(new DefaultListableBeanFactory());
+		binder.setModelScopeProvider(new ImplicitModelScopeProvider(ScopeType.VIEW));
+		binder.bindModel(Collections.singletonMap("viewScope.test", "a"));
+		binder.bindModel(Collections.singletonMap("viewScope.test", "b"));
+		assertEquals("b", map.get("test"));
+		binder.setScope("request");
+		LocalAttributeMap requestMap = new LocalAttributeMap();
+		EasyMock.reset(context);
+		EasyMock.expect(context.getRequestScope()).andStubReturn(requestMap);
+		EasyMock.replay(new Object[] { context });
+		binder.bindModel(Collections.singletonMap("viewScope.test", "c"));
+		assertEquals("b", map.get("test"));
+		assertEquals("c", requestMap.get("viewScope.test"));
+	}
+
+	public void testDoesNotCacheCustomProvider() throws Exception {
+		RequestControlContext context = (RequestControlContext) EasyMock.createNiceMock(RequestControlContext.class);
+		RequestContextHolder.setRequestContext(context);
+		LocalAttributeMap requestScope = new LocalAttributeMap();
+		LocalAttributeMap viewScope = new LocalAttributeMap();
+		EasyMock.expect(context.getRequestScope()).andStubReturn(requestScope);
+		EasyMock.expect(context.getViewScope()).andStubReturn(viewScope);
+		EasyMock.replay(new Object[] { context });
+		DefaultModelBinder binder = new DefaultModelBinder();
+		binder.setBeanFactory(new DefaultListableBeanFactory());
+		binder.setModelScopeProvider(new ModelScopeProvider() {
+			public ScopedModelAttribute getModelScope(ScopedModelAttribute scopedModelAttribute, Object modelValue) {
+				return scopedModelAttribute.newScope(modelValue instanceof String ? "request" : "view");
+			}
+		});
+		binder.bindModel(Collections.singletonMap("test", "a"));
+		binder.bindModel(Collections.singletonMap("test", new Integer(1)));
+		assertEquals("a", requestScope.get("test"));
+		assertEquals(new Integer(1), viewScope.get("test"));
+	}
+
 	private static interface AdditionalBinderConfig {
 		public void config(DefaultModelBinder binder);
 	}
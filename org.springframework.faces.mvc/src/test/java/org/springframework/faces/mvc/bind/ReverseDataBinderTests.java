@@ -15,23 +15,34 @@
  */
 package org.springframework.faces.mvc.bind;
 
+import java.beans.PropertyDescriptor;
+import java.beans.PropertyEditor;
 import java.beans.PropertyEditorSupport;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.PropertyValue;
 import org.springframework.beans.PropertyValues;
+import org.springframework.beans.SimpleTypeConverter;
 import org.springframework.beans.propertyeditors.CustomDateEditor;
 import org.springframework.faces.mvc.bind.ReverseDataBinder;
 import org.springframework.validation.DataBinder;
 
 public class ReverseDataBinderTests extends TestCase {
 
+	private static final Log logger = LogFactory.getLog(ReverseDataBinderTests.class);
+
 	private static final Date D01_12_2009;
 	static {
 		Calendar c = Calendar.getInstance();
@@ -112,6 +123,57 @@ public class ReverseDataBinderTests extends TestCase {
 		}
 	}
 
+	public void testStreamingReverseBind() throws Exception {
+		Sample target = new Sample();
+		DataBinder dataBinder = new DataBinder(target);
+		initBinder(dataBinder);
+		target.setDateValue(D01_12_2009);
+		target.setIntegerValue(new Integer(123));
+		target.setStringValue("a b&c");
+		StringBuffer out = new StringBuffer("/search?");
+		int count = new ReverseDataBinder(dataBinder).reverseBind(out, "UTF-8");
+		assertEquals(3, count);
+		assertEquals("/search?dateValue=2009%2F01%2F12&integerValue=123&stringValue=a+b%26c", out.toString());
+	}
+
+	public void testStreamingReverseBindWithErrors() throws Exception {
+		DataBinder dataBinder = new DataBinder(new Sample());
+		dataBinder.setRequiredFields(new String[] { "integerValue" });
+		try {
+			new ReverseDataBinder(dataBinder).reverseBind(new StringBuffer(), "UTF-8");
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().startsWith("Unable to reverse bind from target 'target'"));
+		}
+	}
+
+	public void testVerificationNever() throws Exception {
+		DataBinder dataBinder = new DataBinder(new Sample());
+		dataBinder.setRequiredFields(new String[] { "integerValue" });
+		ReverseDataBinder reverseDataBinder = new ReverseDataBinder(dataBinder);
+		reverseDataBinder.setVerification(ReverseDataBinder.Verification.NEVER);
+		assertEquals(0, reverseDataBinder.reverseBind().getPropertyValues().length);
+		assertEquals(0, reverseDataBinder.reverseBind(new StringBuffer(), "UTF-8"));
+		assertFalse(dataBinder.getBindingResult().hasErrors());
+	}
+
+	public void testVerificationSampled() throws Exception {
+		DataBinder dataBinder = new DataBinder(new Sample());
+		dataBinder.setRequiredFields(new String[] { "integerValue" });
+		ReverseDataBinder reverseDataBinder = new ReverseDataBinder(dataBinder);
+		reverseDataBinder.setVerification(ReverseDataBinder.Verification.SAMPLED);
+		reverseDataBinder.setVerificationSampleRate(3);
+		int failures = 0;
+		for (int i = 0; i < 9; i++) {
+			try {
+				reverseDataBinder.reverseBind(new StringBuffer(), "UTF-8");
+			} catch (IllegalStateException e) {
+				failures++;
+			}
+		}
+		assertEquals(3, failures);
+	}
+
 	private void doTestReverseBindWithDefaultValues(boolean dontSkip, boolean noConstructor) throws Exception {
 		Sample target = noConstructor ? new SampleWithoutDefaultConstructor("") : new Sample();
 		target.setIntegerValue(new Integer(123));
@@ -142,6 +204,220 @@ public class ReverseDataBinderTests extends TestCase {
 		doTestReverseBindWithDefaultValues(false, true);
 	}
 
+	public void testReverseBindRepeatedUsesFreshValues() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			Sample target = new Sample();
+			target.setIntegerValue(new Integer(i));
+			target.setStringValue(i == 1 ? "default" : "value" + i);
+			DataBinder dataBinder = new DataBinder(target);
+			PropertyValues result = new ReverseDataBinder(dataBinder).reverseBind();
+			assertEquals(String.valueOf(i), result.getPropertyValue("integerValue").getValue());
+			if (i == 1) {
+				assertNull(result.getPropertyValue("stringValue"));
+			} else {
+				assertEquals("value" + i, result.getPropertyValue("stringValue").getValue());
+			}
+		}
+	}
+
+	public void testReverseBindNonPublicClass() throws Exception {
+		NonPublicSample target = new NonPublicSample();
+		target.setValue("test");
+		PropertyValues result = new ReverseDataBinder(new DataBinder(target)).reverseBind();
+		assertEquals(1, result.getPropertyValues().length);
+		assertEquals("test", result.getPropertyValue("value").getValue());
+	}
+
+	private PropertyDescriptor[] getMutableProperties(Class targetClass) {
+		PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors(targetClass);
+		List mutable = new ArrayList();
+		for (int i = 0; i < descriptors.length; i++) {
+			if (descriptors[i].getReadMethod() != null && descriptors[i].getWriteMethod() != null) {
+				mutable.add(descriptors[i]);
+			}
+		}
+		return (PropertyDescriptor[]) mutable.toArray(new PropertyDescriptor[] {});
+	}
+
+	public void testGeneratedPropertyValuesReader() throws Exception {
+		PropertyDescriptor[] properties = getMutableProperties(SearchCriteria.class);
+		PropertyValuesReader generated = CglibPropertyValuesReader.create(SearchCriteria.class, properties);
+		assertNotNull(generated);
+		PropertyValuesReader reflective = new ReverseDataBinder.ReflectivePropertyValuesReader(properties);
+		SearchCriteria target = new SearchCriteria();
+		target.setQuery("hotel");
+		target.setPage(3);
+		target.setAscending(true);
+		assertTrue(Arrays.equals(reflective.getPropertyValues(target), generated.getPropertyValues(target)));
+	}
+
+	public void testGeneratedPropertyValuesReaderNotUsedForNonPublicClass() throws Exception {
+		PropertyDescriptor[] properties = getMutableProperties(NonPublicSample.class);
+		assertNull(CglibPropertyValuesReader.create(NonPublicSample.class, properties));
+	}
+
+	public void testReverseBindSearchCriteria() throws Exception {
+		SearchCriteria target = new SearchCriteria();
+		target.setQuery("hotel");
+		target.setPage(2);
+		PropertyValues result = new ReverseDataBinder(new DataBinder(target)).reverseBind();
+		assertEquals(2, result.getPropertyValues().length);
+		assertEquals("hotel", result.getPropertyValue("query").getValue());
+		assertEquals("2", result.getPropertyValue("page").getValue());
+	}
+
+	public void testPropertyValuesReaderBenchmark() throws Exception {
+		PropertyDescriptor[] properties = getMutableProperties(SearchCriteria.class);
+		PropertyValuesReader generated = CglibPropertyValuesReader.create(SearchCriteria.class, properties);
+		PropertyValuesReader reflective = new ReverseDataBinder.ReflectivePropertyValuesReader(properties);
+		SearchCriteria target = new SearchCriteria();
+		target.setQuery("hotel");
+		int iterations = 500000;
+		long reflectiveTime = 0;
+		long generatedTime = 0;
+		for (int run = 0; run < 3; run++) {
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < iterations; i++) {
+				reflective.getPropertyValues(target);
+			}
+			reflectiveTime = System.currentTimeMillis() - start;
+			start = System.currentTimeMillis();
+			for (int i = 0; i < iterations; i++) {
+				generated.getPropertyValues(target);
+			}
+			generatedTime = System.currentTimeMillis() - start;
+		}
+		logger.info("SearchCriteria property read benchmark (" + properties.length + " properties): reflective "
+				+ (iterations * 1000L / Math.max(reflectiveTime, 1)) + " reads/sec, generated "
+				+ (iterations * 1000L / Math.max(generatedTime, 1)) + " reads/sec");
+	}
+
+	public void testReverseConvertReusesEditorsOnSameThread() throws Exception {
+		int created = TokenEditor.getCreated();
+		assertEquals("a", new ReverseDataBinder(new DataBinder(null)).reverseConvert(new Token("a")));
+		assertEquals("b", new ReverseDataBinder(new DataBinder(null)).reverseConvert(new Token("b")));
+		assertTrue(TokenEditor.getCreated() - created <= 1);
+		assertSame(new ReverseDataBinder(new DataBinder(null)).getSimpleTypeConverter(), new ReverseDataBinder(
+				new DataBinder(null)).getSimpleTypeConverter());
+	}
+
+	public void testEditorsAreThreadConfined() throws Exception {
+		new ReverseDataBinder(new DataBinder(null)).reverseConvert(new Token("a"));
+		final PropertyEditor editor = PropertyEditorCache.getEditor(Token.class);
+		final Object[] result = new Object[2];
+		Thread thread = new Thread() {
+			public void run() {
+				result[0] = new ReverseDataBinder(new DataBinder(null)).reverseConvert(new Token("b"));
+				result[1] = PropertyEditorCache.getEditor(Token.class);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNotNull(editor);
+		assertEquals("b", result[0]);
+		assertNotNull(result[1]);
+		assertNotSame(editor, result[1]);
+		assertSame(editor, PropertyEditorCache.getEditor(Token.class));
+	}
+
+	public void testReverseConvertBenchmark() throws Exception {
+		Integer value = new Integer(1234);
+		int iterations = 100000;
+		long legacyTime = 0;
+		long cachedTime = 0;
+		for (int run = 0; run < 3; run++) {
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < iterations; i++) {
+				PropertyEditor editor = new SimpleTypeConverter().getDefaultEditor(Integer.class);
+				editor.setValue(value);
+				editor.getAsText();
+			}
+			legacyTime = System.currentTimeMillis() - start;
+			start = System.currentTimeMillis();
+			for (int i = 0; i < iterations; i++) {
+				new ReverseDataBinder(new DataBinder(null)).reverseConvert(value);
+			}
+			cachedTime = System.currentTimeMillis() - start;
+		}
+		logger.info("Reverse convert benchmark: per binder converter " + (iterations * 1000L / Math.max(legacyTime, 1))
+				+ " conversions/sec, thread-confined cache " + (iterations * 1000L / Math.max(cachedTime, 1))
+				+ " conversions/sec");
+	}
+
+	public static class SearchCriteria {
+		private String query;
+
+		private int page;
+
+		private int pageSize = 10;
+
+		private String sortBy = "name";
+
+		private boolean ascending;
+
+		private Date from;
+
+		public String getQuery() {
+			return query;
+		}
+
+		public void setQuery(String query) {
+			this.query = query;
+		}
+
+		public int getPage() {
+			return page;
+		}
+
+		public void setPage(int page) {
+			this.page = page;
+		}
+
+		public int getPageSize() {
+			return pageSize;
+		}
+
+		public void setPageSize(int pageSize) {
+			this.pageSize = pageSize;
+		}
+
+		public String getSortBy() {
+			return sortBy;
+		}
+
+		public void setSortBy(String sortBy) {
+			this.sortBy = sortBy;
+		}
+
+		public boolean isAscending() {
+			return ascending;
+		}
+
+		public void setAscending(boolean ascending) {
+			this.ascending = ascending;
+		}
+
+		public Date getFrom() {
+			return from;
+		}
+
+		public void setFrom(Date from) {
+			this.from = from;
+		}
+	}
+
+	private static class NonPublicSample {
+		private String value;
+
+		public String getValue() {
+			return value;
+		}
+
+		public void setValue(String value) {
+			this.value = value;
+		}
+	}
+
 	public static class Sample {
 		private Date dateValue;
 
@@ -184,6 +460,36 @@ public class ReverseDataBinderTests extends TestCase {
 		}
 	}
 
+	public static class Token {
+		private String value;
+
+		public Token(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	public static class TokenEditor extends PropertyEditorSupport {
+		private static int created;
+
+		public TokenEditor() {
+			synchronized (TokenEditor.class) {
+				created++;
+			}
+		}
+
+		public static synchronized int getCreated() {
+			return created;
+		}
+
+		public String getAsText() {
+			return (getValue() == null ? "" : ((Token) getValue()).getValue());
+		}
+	}
+
 	public static class ThrowingPropertyEditor extends PropertyEditorSupport {
 		public String getAsText() {
 			throw new RuntimeException("test error");
@@ -15,10 +15,17 @@
  */
 package org.springframework.faces.mvc.el;
 
+import javax.el.PropertyNotFoundException;
+
 import junit.framework.TestCase;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 public class BeanBackedElResolverTests extends TestCase {
 
+	private static final Log logger = LogFactory.getLog(BeanBackedElResolverTests.class);
+
 	private BeanBackedElResolver resolver;
 	private Object bean;
 
@@ -55,6 +62,41 @@ public class BeanBackedElResolverTests extends TestCase {
 		assertNull(resolver.get("missing"));
 	}
 
+	public void testMappedAccessor() throws Exception {
+		assertTrue(resolver.handles("accessor"));
+		assertEquals("STRING", resolver.get("accessor"));
+	}
+
+	public void testChangeBeanClass() throws Exception {
+		assertEquals("string", resolver.get("stringValue"));
+		this.bean = new OtherTestBean();
+		assertEquals("other", resolver.get("stringValue"));
+		this.bean = new TestBean();
+		assertEquals("string", resolver.get("stringValue"));
+	}
+
+	public void testMappedPropertyNotReadable() throws Exception {
+		this.bean = new OtherTestBean();
+		try {
+			resolver.get("longValue");
+			fail();
+		} catch (PropertyNotFoundException e) {
+		}
+	}
+
+	public void testResolveBenchmark() throws Exception {
+		int iterations = 1000000;
+		for (int i = 0; i < iterations / 10; i++) {
+			resolver.get("stringValue");
+		}
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < iterations; i++) {
+			resolver.get("stringValue");
+		}
+		long time = Math.max(System.currentTimeMillis() - start, 1);
+		logger.info("Bean backed EL resolver benchmark: " + (iterations * 1000L / time) + " resolves/sec");
+	}
+
 	private class TestBeanBackedElResolver extends BeanBackedElResolver {
 
 		public TestBeanBackedElResolver() {
@@ -62,6 +104,11 @@ public class BeanBackedElResolverTests extends TestCase {
 			map("longValue");
 			map("intValue");
 			map("alias", "stringValue");
+			map("accessor", new PropertyAccessor() {
+				public Object getValue(Object bean) {
+					return ((TestBean) bean).getStringValue().toUpperCase();
+				}
+			});
 		}
 
 		protected Object getBean() {
@@ -91,4 +138,10 @@ public class BeanBackedElResolverTests extends TestCase {
 			return unmapped;
 		}
 	}
+
+	public static class OtherTestBean {
+		public String getStringValue() {
+			return "other";
+		}
+	}
 }
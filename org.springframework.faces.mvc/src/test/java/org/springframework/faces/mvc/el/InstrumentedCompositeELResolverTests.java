@@ -0,0 +1,152 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.el;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.el.ELContext;
+
+import junit.framework.TestCase;
+
+import org.apache.shale.test.el.MockELContext;
+
+public class InstrumentedCompositeELResolverTests extends TestCase {
+
+	private InstrumentedCompositeELResolver resolver;
+
+	private CountingELResolver first;
+
+	private CountingELResolver second;
+
+	private CountingELResolver third;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.resolver = new InstrumentedCompositeELResolver();
+		this.first = new CountingELResolver();
+		this.second = new CountingELResolver();
+		this.third = new CountingELResolver();
+		first.put("a", "first a");
+		second.put("a", "second a");
+		second.put("b", "second b");
+		third.put("c", "third c");
+		resolver.add(first);
+		resolver.add(second);
+		resolver.add(third);
+	}
+
+	private Object getValue(String property) {
+		ELContext elContext = new MockELContext();
+		Object value = resolver.getValue(elContext, null, property);
+		assertEquals(value != null, elContext.isPropertyResolved());
+		return value;
+	}
+
+	public void testResolvesInOrder() throws Exception {
+		assertEquals("first a", getValue("a"));
+		assertEquals("second b", getValue("b"));
+		assertEquals("third c", getValue("c"));
+		assertNull(getValue("d"));
+	}
+
+	public void testAlwaysResolvesInOrder() throws Exception {
+		resolver.setStatisticsEnabled(true);
+		for (int i = 0; i < 10; i++) {
+			assertEquals("third c", getValue("c"));
+		}
+		assertEquals(10, first.getCalls());
+		assertEquals(10, second.getCalls());
+		first.put("c", "first c");
+		assertEquals("first c", getValue("c"));
+	}
+
+	public void testStatisticsDisabledByDefault() throws Exception {
+		assertFalse(resolver.isStatisticsEnabled());
+		getValue("a");
+		getValue("d");
+		assertEquals(0, resolver.getLookupCount());
+		assertEquals(0, resolver.getMissCount());
+		assertEquals(0, resolver.getHitCounts()[0]);
+	}
+
+	public void testStatistics() throws Exception {
+		resolver.setStatisticsEnabled(true);
+		getValue("a");
+		getValue("b");
+		getValue("b");
+		getValue("b");
+		getValue("d");
+		assertEquals(5, resolver.getLookupCount());
+		assertEquals(1, resolver.getMissCount());
+		assertEquals(80, resolver.getHitRate());
+		long[] hitCounts = resolver.getHitCounts();
+		assertEquals(3, hitCounts.length);
+		assertEquals(1, hitCounts[0]);
+		assertEquals(3, hitCounts[1]);
+		assertEquals(0, hitCounts[2]);
+		resolver.reset();
+		assertEquals(0, resolver.getLookupCount());
+		assertEquals(0, resolver.getHitCounts()[1]);
+	}
+
+	public void testNonIdentifierUsesChain() throws Exception {
+		resolver.setStatisticsEnabled(true);
+		ELContext elContext = new MockELContext();
+		assertNull(resolver.getValue(elContext, new Object(), "a"));
+		assertFalse(elContext.isPropertyResolved());
+		assertEquals(0, resolver.getLookupCount());
+	}
+
+	public void testSetValueUsesChain() throws Exception {
+		ELContext elContext = new MockELContext();
+		resolver.setValue(elContext, null, "b", "new b");
+		assertTrue(elContext.isPropertyResolved());
+		assertEquals("new b", getValue("b"));
+	}
+
+	private static class CountingELResolver extends AbstractELResolver {
+
+		private Map values = new HashMap();
+
+		private int calls;
+
+		public void put(String property, Object value) {
+			values.put(property, value);
+		}
+
+		public int getCalls() {
+			return calls;
+		}
+
+		protected boolean handles(String property) {
+			calls++;
+			return values.containsKey(property);
+		}
+
+		protected Object get(String property) {
+			return values.get(property);
+		}
+
+		protected boolean isReadOnly(String property) {
+			return false;
+		}
+
+		protected void set(String property, Object value) {
+			values.put(property, value);
+		}
+	}
+}
@@ -3,8 +3,12 @@ package org.springframework.faces.mvc.el;
 import junit.framework.TestCase;
 
 import org.easymock.EasyMock;
+import org.springframework.faces.mvc.execution.MvcFacesExecution;
 import org.springframework.faces.mvc.execution.RequestContextHolder;
 import org.springframework.faces.mvc.execution.RequestControlContext;
+import org.springframework.faces.mvc.execution.RequestControlContextImpl;
+import org.springframework.faces.mvc.servlet.FacesHandler;
+import org.springframework.faces.mvc.support.ModificationTrackingMap;
 import org.springframework.webflow.core.collection.LocalAttributeMap;
 import org.springframework.webflow.core.collection.MutableAttributeMap;
 
@@ -15,6 +19,7 @@ public class ScopeSearchingElResolverTests extends TestCase {
 	private MutableAttributeMap requestScope;
 	private MutableAttributeMap flashScope;
 	private MutableAttributeMap viewScope;
+	private MutableAttributeMap attributes;
 
 	protected void setUp() throws Exception {
 		resolver = new ScopeSearchingElResolver();
@@ -22,6 +27,8 @@ public class ScopeSearchingElResolverTests extends TestCase {
 		requestScope = new LocalAttributeMap();
 		flashScope = new LocalAttributeMap();
 		viewScope = new LocalAttributeMap();
+		attributes = new LocalAttributeMap();
+		EasyMock.expect(requestContext.getAttributes()).andStubReturn(attributes);
 		EasyMock.expect(requestContext.getRequestScope()).andStubReturn(requestScope);
 		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
 		EasyMock.expect(requestContext.getViewScope()).andStubReturn(viewScope);
@@ -83,4 +90,111 @@ public class ScopeSearchingElResolverTests extends TestCase {
 		resolver.set("shared", "viewSharedValue2");
 		assertEquals("viewSharedValue2", viewScope.get("shared"));
 	}
+
+	private CountingMap setUpTrackedScopes() {
+		CountingMap tracked = new CountingMap();
+		requestScope = new LocalAttributeMap(tracked);
+		flashScope = new LocalAttributeMap(new ModificationTrackingMap());
+		viewScope = new LocalAttributeMap(new ModificationTrackingMap());
+		requestScope.put("request", "requestValue");
+		viewScope.put("view", "viewValue");
+		attributes = new LocalAttributeMap();
+		EasyMock.reset(requestContext);
+		EasyMock.expect(requestContext.getAttributes()).andStubReturn(attributes);
+		EasyMock.expect(requestContext.getRequestScope()).andStubReturn(requestScope);
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getViewScope()).andStubReturn(viewScope);
+		EasyMock.replay(new Object[] { requestContext });
+		return tracked;
+	}
+
+	public void testRemembersResolutions() throws Exception {
+		CountingMap tracked = setUpTrackedScopes();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(resolver.handles("view"));
+			assertEquals("viewValue", resolver.get("view"));
+			assertFalse(resolver.handles("missing"));
+		}
+		assertEquals(2, tracked.containsKeyCount);
+	}
+
+	public void testRememberedResolutionsInvalidatedOnChange() throws Exception {
+		setUpTrackedScopes();
+		assertFalse(resolver.handles("missing"));
+		assertEquals("viewValue", resolver.get("view"));
+		viewScope.put("missing", "found");
+		assertEquals("found", resolver.get("missing"));
+		requestScope.put("view", "requestValue");
+		assertEquals("requestValue", resolver.get("view"));
+		requestScope.remove("view");
+		assertEquals("viewValue", resolver.get("view"));
+		resolver.set("view", "viewValue2");
+		assertEquals("viewValue2", viewScope.get("view"));
+	}
+
+	public void testRememberedResolutionsNotSharedBetweenRequests() throws Exception {
+		setUpTrackedScopes();
+		assertEquals("requestValue", resolver.get("request"));
+		setUpTrackedScopes();
+		requestScope.clear();
+		flashScope.put("request", "flashValue");
+		assertEquals("flashValue", resolver.get("request"));
+	}
+
+	public void testRememberedResolutionsHeldByRequestContext() throws Exception {
+		setUpTrackedScopes();
+		assertTrue(attributes.isEmpty());
+		assertEquals("requestValue", resolver.get("request"));
+		assertEquals(1, attributes.size());
+	}
+
+	public void testViewScopeNotAccessedWhenFoundInEarlierScope() throws Exception {
+		setUpTrackedScopes();
+		flashScope.put("flash", "flashValue");
+		EasyMock.reset(requestContext);
+		EasyMock.expect(requestContext.getAttributes()).andStubReturn(attributes);
+		EasyMock.expect(requestContext.getRequestScope()).andStubReturn(requestScope);
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getViewScope()).andStubThrow(new IllegalStateException("No view scope"));
+		EasyMock.replay(new Object[] { requestContext });
+		for (int i = 0; i < 2; i++) {
+			assertEquals("requestValue", resolver.get("request"));
+			assertEquals("flashValue", resolver.get("flash"));
+		}
+	}
+
+	public void testPendingFlashScopeNotMaterializedBySearch() throws Exception {
+		final MutableAttributeMap viewScope = new LocalAttributeMap(new ModificationTrackingMap());
+		RequestControlContextImpl requestContext = new RequestControlContextImpl(null,
+				(MvcFacesExecution) EasyMock.createNiceMock(MvcFacesExecution.class), (FacesHandler) EasyMock
+						.createNiceMock(FacesHandler.class)) {
+			public MutableAttributeMap getViewScope() throws IllegalStateException {
+				return viewScope;
+			}
+		};
+		requestContext.getRequestScope().put("request", "requestValue");
+		viewScope.put("view", "viewValue");
+		requestContext.restoreFlashScope(new LocalAttributeMap("flash", "flashValue"));
+		for (int i = 0; i < 2; i++) {
+			assertEquals("requestValue", resolver.get("request"));
+			assertEquals("viewValue", resolver.get("view"));
+			assertFalse(resolver.handles("missing"));
+		}
+		assertNotNull(requestContext.getPendingFlashScope());
+		assertEquals("flashValue", resolver.get("flash"));
+		assertNull(requestContext.getPendingFlashScope());
+		assertEquals("viewValue", resolver.get("view"));
+		resolver.set("flash", "flashValue2");
+		assertEquals("flashValue2", requestContext.getFlashScope().get("flash"));
+		requestContext.release();
+	}
+
+	private static class CountingMap extends ModificationTrackingMap {
+		private int containsKeyCount;
+
+		public boolean containsKey(Object key) {
+			containsKeyCount++;
+			return super.containsKey(key);
+		}
+	}
 }
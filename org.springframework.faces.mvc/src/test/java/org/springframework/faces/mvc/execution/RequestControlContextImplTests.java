@@ -0,0 +1,91 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository;
+import org.springframework.faces.mvc.servlet.FacesHandler;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class RequestControlContextImplTests extends TestCase {
+
+	private RequestControlContextImpl requestContext;
+
+	protected void setUp() throws Exception {
+		requestContext = new RequestControlContextImpl(new WebFlowExternalContextAdapter(new MockExternalContext()),
+				(MvcFacesExecution) EasyMock.createMock(MvcFacesExecution.class), (FacesHandler) EasyMock
+						.createMock(FacesHandler.class));
+	}
+
+	protected void tearDown() throws Exception {
+		requestContext.release();
+	}
+
+	public void testFlashScopeEmptyByDefault() throws Exception {
+		assertTrue(requestContext.getFlashScope().isEmpty());
+		assertSame(requestContext.getFlashScope(), requestContext.getFlashScope());
+	}
+
+	public void testAttributesSeparateFromRequestScope() throws Exception {
+		requestContext.getAttributes().put("k", "v");
+		assertSame(requestContext.getAttributes(), requestContext.getAttributes());
+		assertNull(requestContext.getRequestScope().get("k"));
+	}
+
+	public void testRestoredFlashScopeCopiedOnFirstAccess() throws Exception {
+		LocalAttributeMap restored = new LocalAttributeMap("k", "v");
+		requestContext.restoreFlashScope(restored);
+		assertTrue(requestContext.isFlashScopeRestorePending());
+		assertEquals("v", requestContext.getFlashScope().get("k"));
+		assertFalse(requestContext.isFlashScopeRestorePending());
+		requestContext.getFlashScope().put("k", "changed");
+		assertEquals("v", restored.get("k"));
+	}
+
+	public void testRestoreReplacesExisting() throws Exception {
+		requestContext.getFlashScope().put("old", "value");
+		requestContext.restoreFlashScope(new LocalAttributeMap("k", "v"));
+		assertNull(requestContext.getFlashScope().get("old"));
+		assertEquals("v", requestContext.getFlashScope().get("k"));
+	}
+
+	public void testClearDiscardsRestoredWithoutCopy() throws Exception {
+		requestContext.restoreFlashScope(new LocalAttributeMap("k", "v"));
+		requestContext.clearFlashScope();
+		assertFalse(requestContext.isFlashScopeRestorePending());
+		assertTrue(requestContext.getFlashScope().isEmpty());
+	}
+
+	public void testClearMaterialized() throws Exception {
+		requestContext.getFlashScope().put("k", "v");
+		requestContext.clearFlashScope();
+		assertTrue(requestContext.getFlashScope().isEmpty());
+	}
+
+	public void testRepositoryRestoresLazily() throws Exception {
+		SessionBindingExecutionContextRepository repository = new SessionBindingExecutionContextRepository();
+		requestContext.getFlashScope().put("k", "v");
+		ExecutionContextKey key = repository.save(requestContext);
+		requestContext.clearFlashScope();
+		repository.restore(key, requestContext);
+		assertTrue(requestContext.isFlashScopeRestorePending());
+		assertEquals("v", requestContext.getFlashScope().get("k"));
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class Base64UrlUtilsTests extends TestCase {
+
+	public void testEncode() throws Exception {
+		assertEquals("", Base64UrlUtils.encode(new byte[] {}));
+		assertEquals("Zg", Base64UrlUtils.encode("f".getBytes("US-ASCII")));
+		assertEquals("Zm8", Base64UrlUtils.encode("fo".getBytes("US-ASCII")));
+		assertEquals("Zm9v", Base64UrlUtils.encode("foo".getBytes("US-ASCII")));
+		assertEquals("Zm9vYg", Base64UrlUtils.encode("foob".getBytes("US-ASCII")));
+		assertEquals("-_8", Base64UrlUtils.encode(new byte[] { (byte) 0xFB, (byte) 0xFF }));
+	}
+
+	public void testRoundTrip() throws Exception {
+		for (int length = 0; length < 260; length++) {
+			byte[] data = new byte[length];
+			for (int i = 0; i < length; i++) {
+				data[i] = (byte) (i * 31);
+			}
+			assertTrue(Arrays.equals(data, Base64UrlUtils.decode(Base64UrlUtils.encode(data))));
+		}
+	}
+
+	public void testInvalidCharacter() throws Exception {
+		try {
+			Base64UrlUtils.decode("Zm9v+A");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testInvalidLength() throws Exception {
+		try {
+			Base64UrlUtils.decode("Zm9vY");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.context.ExternalContext;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class ClientTokenExecutionContextRepositoryTests extends TestCase {
+
+	private static final String SECRET = "0123456789abcdef";
+
+	private long time;
+
+	private ClientTokenExecutionContextRepository repository;
+	private RequestContext requestContext;
+	private MutableAttributeMap flashScope;
+	private ExternalContext externalContext;
+
+	protected void setUp() throws Exception {
+		time = 1000;
+		repository = newRepository();
+		requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		flashScope = new LocalAttributeMap();
+		externalContext = new WebFlowExternalContextAdapter(new MockExternalContext());
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getExternalContext()).andStubReturn(externalContext);
+		EasyMock.replay(new Object[] { requestContext });
+	}
+
+	private ClientTokenExecutionContextRepository newRepository() {
+		ClientTokenExecutionContextRepository repository = new ClientTokenExecutionContextRepository() {
+			protected long currentTime() {
+				return time;
+			}
+		};
+		repository.setSecret(SECRET);
+		return repository;
+	}
+
+	public void testSaveWithoutData() throws Exception {
+		assertNull(repository.save(requestContext));
+	}
+
+	public void testSaveAndRestoreWithoutSession() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		ExecutionContextKey key = repository.save(requestContext);
+		assertTrue(key instanceof TokenExecutionContextKey);
+		assertTrue(externalContext.getSessionMap().isEmpty());
+		flashScope.clear();
+		repository.restore(repository.parseKey(key.toString()), requestContext);
+		assertEquals("testvalue", flashScope.get("testkey"));
+		assertTrue(externalContext.getSessionMap().isEmpty());
+	}
+
+	public void testTokenIsUrlSafe() throws Exception {
+		flashScope.put("testkey", "test value & more");
+		String token = repository.save(requestContext).toString();
+		assertTrue(token, token.matches("[A-Za-z0-9_\\-]+"));
+	}
+
+	public void testRestoreOnOtherNode() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		ExecutionContextKey key = repository.save(requestContext);
+		flashScope.clear();
+		ClientTokenExecutionContextRepository other = newRepository();
+		other.restore(other.parseKey(key.toString()), requestContext);
+		assertEquals("testvalue", flashScope.get("testkey"));
+	}
+
+	public void testDifferentSecretRejected() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		ExecutionContextKey key = repository.save(requestContext);
+		ClientTokenExecutionContextRepository other = newRepository();
+		other.setSecret("fedcba9876543210");
+		try {
+			other.restore(other.parseKey(key.toString()), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+	}
+
+	public void testTamperedTokenRejected() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		String token = repository.save(requestContext).toString();
+		char last = token.charAt(token.length() - 2);
+		String tampered = token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A')
+				+ token.charAt(token.length() - 1);
+		try {
+			repository.restore(repository.parseKey(tampered), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+	}
+
+	public void testMalformedTokenRejected() throws Exception {
+		try {
+			repository.restore(repository.parseKey("t!!"), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+		try {
+			repository.restore(repository.parseKey("tAAAA"), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+	}
+
+	public void testExpired() throws Exception {
+		repository.setTimeToLiveSeconds(10);
+		flashScope.put("testkey", "testvalue");
+		ExecutionContextKey key = repository.save(requestContext);
+		time += 10001;
+		try {
+			repository.restore(key, requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+	}
+
+	public void testCompressed() throws Exception {
+		StringBuffer value = new StringBuffer();
+		for (int i = 0; i < 100; i++) {
+			value.append("repeated ");
+		}
+		flashScope.put("testkey", value.toString());
+		ExecutionContextKey key = repository.save(requestContext);
+		assertTrue(key.toString().length() < value.length() / 2);
+		flashScope.clear();
+		repository.restore(key, requestContext);
+		assertEquals(value.toString(), flashScope.get("testkey"));
+	}
+
+	public void testFallbackWhenTooLarge() throws Exception {
+		repository.setMaxTokenLength(64);
+		repository.setCompressor(null);
+		flashScope.put("testkey", "a value that will not fit within the maximum token length");
+		ExecutionContextKey key = repository.save(requestContext);
+		assertEquals(new IntegerExecutionContextKey(1), key);
+		assertFalse(externalContext.getSessionMap().isEmpty());
+		flashScope.clear();
+		repository.restore(repository.parseKey(key.toString()), requestContext);
+		assertEquals("a value that will not fit within the maximum token length", flashScope.get("testkey"));
+	}
+
+	public void testNoFallbackWhenTooLarge() throws Exception {
+		repository.setMaxTokenLength(64);
+		repository.setFallbackRepository(null);
+		flashScope.put("testkey", "a value that will not fit within the maximum token length");
+		try {
+			repository.save(requestContext);
+			fail();
+		} catch (ExecutionContextRepositoryException e) {
+		}
+		try {
+			repository.parseKey("1");
+			fail();
+		} catch (BadlyFormattedExecutionContextKeyException e) {
+		}
+	}
+
+	public void testShortSecret() throws Exception {
+		try {
+			repository.setSecret("short");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
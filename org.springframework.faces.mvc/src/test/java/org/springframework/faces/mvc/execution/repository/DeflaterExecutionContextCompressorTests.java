@@ -0,0 +1,56 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class DeflaterExecutionContextCompressorTests extends TestCase {
+
+	private DeflaterExecutionContextCompressor compressor = new DeflaterExecutionContextCompressor();
+
+	public void testRoundTrip() throws Exception {
+		byte[] data = new byte[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 10);
+		}
+		byte[] compressed = compressor.compress(data);
+		assertTrue(compressed.length < data.length);
+		assertTrue(Arrays.equals(data, compressor.decompress(compressed)));
+	}
+
+	public void testEmpty() throws Exception {
+		assertEquals(0, compressor.decompress(compressor.compress(new byte[] {})).length);
+	}
+
+	public void testCorrupt() throws Exception {
+		try {
+			compressor.decompress(new byte[] { 1, 2, 3, 4 });
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
+	public void testInvalidLevel() throws Exception {
+		try {
+			compressor.setLevel(10);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContextContainer;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.context.ExternalContext;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class ExecutionContextSweeperTests extends TestCase {
+
+	private SessionBindingExecutionContextRepository repository;
+
+	private ExecutionContextSweeper sweeper;
+
+	protected void setUp() throws Exception {
+		repository = new SessionBindingExecutionContextRepository();
+		repository.setMaxAgeSeconds(60);
+		sweeper = new ExecutionContextSweeper();
+		sweeper.setRepository(repository);
+	}
+
+	protected void tearDown() throws Exception {
+		sweeper.destroy();
+	}
+
+	public void testSweep() throws Exception {
+		ExternalContext externalContext = new MockExternalContext();
+		RequestContext requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(new LocalAttributeMap("k", "v"));
+		EasyMock.expect(requestContext.getExternalContext()).andStubReturn(
+				new WebFlowExternalContextAdapter(externalContext));
+		EasyMock.replay(new Object[] { requestContext });
+		ExecutionContextKey key = repository.save(requestContext);
+		assertEquals(0, sweeper.sweep());
+		StoredExecutionContextContainer container = (StoredExecutionContextContainer) externalContext
+				.getSessionMap().get("mvcFacesExecutions");
+		ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+		out.writeObject(container);
+		out.close();
+		StoredExecutionContext stored = container.getStored(key);
+		stored.setCreated(stored.getCreated() - 61000);
+		long bytes = sweeper.sweep();
+		assertTrue(bytes > 0);
+		assertEquals(bytes, sweeper.getReclaimedSerializedBytes());
+		assertEquals(0, container.getSize());
+	}
+
+	public void testStartAndStop() throws Exception {
+		sweeper.setIntervalSeconds(1);
+		sweeper.afterPropertiesSet();
+		sweeper.destroy();
+	}
+
+	public void testRepositoryRequired() throws Exception {
+		try {
+			new ExecutionContextSweeper().afterPropertiesSet();
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
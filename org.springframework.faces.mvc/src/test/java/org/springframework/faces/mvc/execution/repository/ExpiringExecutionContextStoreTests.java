@@ -0,0 +1,109 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import junit.framework.TestCase;
+
+public class ExpiringExecutionContextStoreTests extends TestCase {
+
+	private long time;
+
+	private ExpiringExecutionContextStore store;
+
+	protected void setUp() throws Exception {
+		time = 1000;
+		store = new ExpiringExecutionContextStore() {
+			protected long currentTime() {
+				return time;
+			}
+		};
+	}
+
+	public void testPutAndRemove() throws Exception {
+		byte[] data = new byte[] { 1, 2, 3 };
+		store.put("a", data);
+		assertEquals(1, store.getSize());
+		assertEquals(3, store.getByteCount());
+		assertSame(data, store.remove("a"));
+		assertEquals(0, store.getSize());
+		assertEquals(0, store.getByteCount());
+		assertNull(store.remove("a"));
+	}
+
+	public void testRemoveMissing() throws Exception {
+		assertNull(store.remove("missing"));
+	}
+
+	public void testReplace() throws Exception {
+		store.put("a", new byte[10]);
+		store.put("a", new byte[5]);
+		assertEquals(1, store.getSize());
+		assertEquals(5, store.getByteCount());
+	}
+
+	public void testExpiredOnRemove() throws Exception {
+		store.setTimeToLiveSeconds(10);
+		store.put("a", new byte[1]);
+		time += 10001;
+		assertNull(store.remove("a"));
+		assertEquals(0, store.getByteCount());
+	}
+
+	public void testExpiredPurgedOnPut() throws Exception {
+		store.setTimeToLiveSeconds(10);
+		store.put("a", new byte[1]);
+		store.put("b", new byte[1]);
+		time += 5000;
+		store.put("c", new byte[1]);
+		time += 5001;
+		store.put("d", new byte[1]);
+		assertEquals(2, store.getSize());
+		assertNull(store.remove("a"));
+		assertNull(store.remove("b"));
+		assertNotNull(store.remove("c"));
+		assertNotNull(store.remove("d"));
+	}
+
+	public void testMaxBytes() throws Exception {
+		store.setMaxBytes(20);
+		store.put("a", new byte[10]);
+		store.put("b", new byte[10]);
+		store.put("c", new byte[10]);
+		assertEquals(2, store.getSize());
+		assertEquals(20, store.getByteCount());
+		assertNull(store.remove("a"));
+	}
+
+	public void testMaxEntries() throws Exception {
+		store.setMaxEntries(2);
+		store.put("a", new byte[1]);
+		store.put("b", new byte[1]);
+		store.put("c", new byte[1]);
+		assertEquals(2, store.getSize());
+		assertNull(store.remove("a"));
+		assertNotNull(store.remove("b"));
+	}
+
+	public void testRemovedEntriesNotEvictedTwice() throws Exception {
+		store.setMaxEntries(2);
+		store.put("a", new byte[1]);
+		store.remove("a");
+		store.put("b", new byte[1]);
+		store.put("c", new byte[1]);
+		assertEquals(2, store.getSize());
+		assertEquals(2, store.getByteCount());
+	}
+}
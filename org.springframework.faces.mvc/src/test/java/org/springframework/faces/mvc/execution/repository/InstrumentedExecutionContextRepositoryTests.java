@@ -0,0 +1,203 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class InstrumentedExecutionContextRepositoryTests extends TestCase {
+
+	private SessionBindingExecutionContextRepository delegate;
+	private InstrumentedExecutionContextRepository repository;
+	private ExecutionContextRepositoryMetrics metrics;
+	private RequestContext requestContext;
+	private MutableAttributeMap flashScope;
+
+	protected void setUp() throws Exception {
+		delegate = new SessionBindingExecutionContextRepository();
+		repository = new InstrumentedExecutionContextRepository(delegate);
+		metrics = repository.getMetrics();
+		requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		flashScope = new LocalAttributeMap();
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getExternalContext()).andStubReturn(
+				new WebFlowExternalContextAdapter(new MockExternalContext()));
+		EasyMock.replay(new Object[] { requestContext });
+	}
+
+	public void testSaveAndRestore() throws Exception {
+		flashScope.put("k", "v");
+		ExecutionContextKey key = repository.save(requestContext);
+		assertEquals(1, metrics.getSaveCount());
+		assertEquals(1, metrics.getStoredCount());
+		flashScope.clear();
+		repository.restore(repository.parseKey(key.toString()), requestContext);
+		assertEquals("v", flashScope.get("k"));
+		assertEquals(1, metrics.getRestoreCount());
+		assertEquals(0, metrics.getStoredCount());
+		assertEquals(1, sum(metrics.getSaveLatencyHistogram()));
+		assertEquals(1, sum(metrics.getRestoreLatencyHistogram()));
+		assertTrue(metrics.getRestoreLatency99thPercentileMicros() > 0);
+	}
+
+	public void testSaveWithoutData() throws Exception {
+		assertNull(repository.save(requestContext));
+		assertEquals(0, metrics.getSaveCount());
+	}
+
+	public void testNotFound() throws Exception {
+		try {
+			repository.restore(new IntegerExecutionContextKey(99), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+		assertEquals(1, metrics.getNotFoundCount());
+		assertEquals(0, metrics.getRestoreCount());
+	}
+
+	public void testEvictions() throws Exception {
+		delegate.setMaxExecutions(2);
+		flashScope.put("k", "v");
+		for (int i = 0; i < 5; i++) {
+			repository.save(requestContext);
+		}
+		assertEquals(5, metrics.getSaveCount());
+		assertEquals(3, metrics.getEvictionCount());
+		assertEquals(2, metrics.getStoredCount());
+	}
+
+	public void testStoreBackedEvictions() throws Exception {
+		StoreBackedExecutionContextRepository storeBacked = new StoreBackedExecutionContextRepository();
+		storeBacked.setMaxExecutions(1);
+		repository.setDelegate(storeBacked);
+		flashScope.put("k", "v");
+		repository.save(requestContext);
+		repository.save(requestContext);
+		assertEquals(1, metrics.getEvictionCount());
+	}
+
+	public void testSizeSampling() throws Exception {
+		flashScope.put("k", "v");
+		repository.save(requestContext);
+		assertEquals(0, metrics.getAverageExecutionBytes());
+		repository.setSizeSampleRate(2);
+		repository.save(requestContext);
+		repository.save(requestContext);
+		assertTrue(metrics.getAverageExecutionBytes() > 0);
+		assertEquals(metrics.getStoredCount() * metrics.getAverageExecutionBytes(), metrics
+				.getApproximateStoredBytes());
+	}
+
+	public void testSizeSamplingFailureIgnored() throws Exception {
+		flashScope.put("k", new Object());
+		repository.setSizeSampleRate(1);
+		ExecutionContextKey key = repository.save(requestContext);
+		assertNotNull(key);
+		assertEquals(1, metrics.getSaveCount());
+		assertEquals(0, metrics.getAverageExecutionBytes());
+	}
+
+	public void testConcurrentLatencyRecording() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						histogram.record(j * 1000L);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals(8000, histogram.getCount());
+		assertEquals(8000, sum(histogram.getCounts()));
+		assertEquals(499, histogram.getMeanMicros());
+	}
+
+	public void testListeners() throws Exception {
+		final List events = new ArrayList();
+		repository.setListeners(Collections.singletonList(new ExecutionContextRepositoryListenerAdapter() {
+			public void executionSaved(ExecutionContextKey key, long durationNanos) {
+				events.add("saved " + key);
+			}
+
+			public void executionNotFound(ExecutionContextKey key) {
+				events.add("notFound " + key);
+			}
+		}));
+		flashScope.put("k", "v");
+		ExecutionContextKey key = repository.save(requestContext);
+		repository.restore(key, requestContext);
+		try {
+			repository.restore(key, requestContext);
+		} catch (NoSuchExecutionException e) {
+		}
+		assertEquals("[saved 1, notFound 1]", events.toString());
+		assertEquals(1, metrics.getNotFoundCount());
+	}
+
+	public void testReset() throws Exception {
+		flashScope.put("k", "v");
+		repository.save(requestContext);
+		metrics.reset();
+		assertEquals(0, metrics.getSaveCount());
+		assertEquals(0, sum(metrics.getSaveLatencyHistogram()));
+	}
+
+	public void testMissingDelegate() throws Exception {
+		try {
+			new InstrumentedExecutionContextRepository().parseKey("1");
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	public void testHistogramPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileMicros(99));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(500);
+		}
+		histogram.record(3000 * 1000);
+		assertEquals(1, histogram.getPercentileMicros(50));
+		assertEquals(1, histogram.getPercentileMicros(99));
+		assertEquals(4096, histogram.getPercentileMicros(100));
+		assertEquals(30, histogram.getMeanMicros());
+	}
+
+	private long sum(long[] values) {
+		long sum = 0;
+		for (int i = 0; i < values.length; i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class MappedExecutionContextStoreTests extends TestCase {
+
+	private long time;
+
+	private File directory;
+
+	private MappedExecutionContextStore store;
+
+	protected void setUp() throws Exception {
+		time = 1000;
+		directory = File.createTempFile("mvcfaces", "test");
+		directory.delete();
+		directory.mkdir();
+		store = new MappedExecutionContextStore() {
+			protected long currentTime() {
+				return time;
+			}
+		};
+		store.setDirectory(directory);
+		store.setSegmentSize(100);
+	}
+
+	protected void tearDown() throws Exception {
+		store.destroy();
+		assertEquals(0, directory.list().length);
+		directory.delete();
+	}
+
+	private byte[] bytes(int length, int value) {
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte) value);
+		return data;
+	}
+
+	public void testPutAndRemove() throws Exception {
+		store.put("a", bytes(10, 1));
+		store.put("b", bytes(20, 2));
+		assertEquals(2, store.getSize());
+		assertTrue(Arrays.equals(bytes(20, 2), store.remove("b")));
+		assertTrue(Arrays.equals(bytes(10, 1), store.remove("a")));
+		assertNull(store.remove("a"));
+		assertEquals(0, store.getSize());
+	}
+
+	public void testSegmentsCreatedLazily() throws Exception {
+		assertEquals(0, store.getSegmentCount());
+		assertEquals(0, directory.list().length);
+		store.put("a", bytes(10, 1));
+		assertEquals(1, store.getSegmentCount());
+		assertEquals(1, directory.list().length);
+	}
+
+	public void testStaleSegmentFilesDeletedBeforeFirstSegment() throws Exception {
+		File stale = new File(directory, "mvcfaces123.seg");
+		File other = new File(directory, "other.txt");
+		assertTrue(stale.createNewFile());
+		assertTrue(other.createNewFile());
+		try {
+			store.put("a", bytes(10, 1));
+			assertFalse(stale.exists());
+			assertTrue(other.exists());
+		} finally {
+			other.delete();
+		}
+	}
+
+	public void testSegmentFilesInUseNotDeleted() throws Exception {
+		store.put("a", bytes(10, 1));
+		MappedExecutionContextStore other = new MappedExecutionContextStore();
+		other.setDirectory(directory);
+		other.setSegmentSize(100);
+		try {
+			other.put("b", bytes(10, 2));
+			assertEquals(2, directory.list().length);
+			assertTrue(Arrays.equals(bytes(10, 1), store.remove("a")));
+		} finally {
+			other.destroy();
+		}
+	}
+
+	public void testReclaimsAndReusesSegments() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			store.put("k" + i, bytes(60, i));
+			assertTrue(Arrays.equals(bytes(60, i), store.remove("k" + i)));
+		}
+		assertEquals(1, store.getSegmentCount());
+	}
+
+	public void testDedicatedSegmentForLargeEntry() throws Exception {
+		store.put("small", bytes(10, 1));
+		store.put("large", bytes(250, 2));
+		assertEquals(2, store.getSegmentCount());
+		assertTrue(Arrays.equals(bytes(250, 2), store.remove("large")));
+		assertEquals(1, store.getSegmentCount());
+		assertTrue(Arrays.equals(bytes(10, 1), store.remove("small")));
+	}
+
+	public void testRetiredSegmentFileDeletedOnceUnmapped() throws Exception {
+		store.put("large", bytes(250, 2));
+		store.remove("large");
+		for (int i = 0; i < 50 && directory.list().length > 1; i++) {
+			System.gc();
+			Thread.sleep(10);
+			store.put("small", bytes(10, 1));
+		}
+		assertEquals(1, directory.list().length);
+	}
+
+	public void testMaxEntrySize() throws Exception {
+		store.setMaxEntrySize(200);
+		store.put("a", bytes(200, 1));
+		try {
+			store.put("b", bytes(201, 1));
+			fail();
+		} catch (ExecutionContextRepositoryException e) {
+		}
+		assertEquals(1, store.getSize());
+	}
+
+	public void testConcurrentPutAndRemove() throws Exception {
+		store.setMaxSegments(4);
+		final List failures = Collections.synchronizedList(new ArrayList());
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int thread = i;
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < 500; j++) {
+							String id = thread + ":" + j;
+							int length = (j % 10 == 0 ? 150 : 30);
+							store.put(id, bytes(length, j));
+							byte[] data = store.remove(id);
+							if (data != null && !Arrays.equals(bytes(length, j), data)) {
+								failures.add("Corrupt data for " + id);
+							}
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			});
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals(failures.toString(), 0, failures.size());
+		assertEquals(0, store.getSize());
+	}
+
+	public void testMaxSegments() throws Exception {
+		store.setMaxSegments(2);
+		store.put("a", bytes(60, 1));
+		store.put("b", bytes(60, 2));
+		store.put("c", bytes(60, 3));
+		assertEquals(2, store.getSize());
+		assertEquals(2, store.getSegmentCount());
+		assertNull(store.remove("a"));
+		assertNotNull(store.remove("b"));
+		assertNotNull(store.remove("c"));
+	}
+
+	public void testExpiredOnRemove() throws Exception {
+		store.setTimeToLiveSeconds(10);
+		store.put("a", bytes(10, 1));
+		time += 10001;
+		assertNull(store.remove("a"));
+		assertEquals(0, store.getSize());
+	}
+
+	public void testExpiredSegmentsReclaimedOnPut() throws Exception {
+		store.setTimeToLiveSeconds(10);
+		store.put("a", bytes(60, 1));
+		store.put("b", bytes(60, 2));
+		time += 10001;
+		store.put("c", bytes(60, 3));
+		assertEquals(1, store.getSize());
+		assertEquals(2, store.getSegmentCount());
+		assertNotNull(store.remove("c"));
+	}
+
+	public void testReplace() throws Exception {
+		store.put("a", bytes(10, 1));
+		store.put("a", bytes(10, 2));
+		assertEquals(1, store.getSize());
+		assertTrue(Arrays.equals(bytes(10, 2), store.remove("a")));
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.context.ExternalContext;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class NodeAffineExecutionContextRepositoryTests extends TestCase {
+
+	private NodeAffineExecutionContextRepository repository;
+	private RequestContext requestContext;
+	private MutableAttributeMap flashScope;
+	private ExternalContext externalContext;
+
+	protected void setUp() throws Exception {
+		repository = new NodeAffineExecutionContextRepository();
+		repository.setNodeId(3);
+		repository.setGeneration(1);
+		requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		flashScope = new LocalAttributeMap();
+		externalContext = new WebFlowExternalContextAdapter(new MockExternalContext());
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getExternalContext()).andStubReturn(externalContext);
+		EasyMock.replay(new Object[] { requestContext });
+	}
+
+	public void testSaveWithoutData() throws Exception {
+		assertNull(repository.save(requestContext));
+	}
+
+	public void testSaveAndRestore() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		ExecutionContextKey key = repository.save(requestContext);
+		assertEquals(new NodeExecutionContextKey(3, 1, 1), key);
+		flashScope.clear();
+		repository.restore(repository.parseKey(key.toString()), requestContext);
+		assertEquals("testvalue", flashScope.get("testkey"));
+	}
+
+	public void testMissing() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		repository.save(requestContext);
+		try {
+			repository.restore(new NodeExecutionContextKey(3, 1, 99), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+			assertFalse(e instanceof ForeignExecutionException);
+			assertEquals(new NodeExecutionContextKey(3, 1, 99), e.getKey());
+		}
+	}
+
+	public void testForeignNodeRejectedWithoutSessionAccess() throws Exception {
+		RequestContext foreignRequestContext = (RequestContext) EasyMock.createMock(RequestContext.class);
+		EasyMock.replay(new Object[] { foreignRequestContext });
+		try {
+			repository.restore(new NodeExecutionContextKey(4, 1, 1), foreignRequestContext);
+			fail();
+		} catch (ForeignExecutionException e) {
+			assertEquals(4, e.getNodeId());
+			assertEquals(1, e.getGeneration());
+		}
+		EasyMock.verify(new Object[] { foreignRequestContext });
+	}
+
+	public void testEarlierGenerationRejected() throws Exception {
+		try {
+			repository.restore(new NodeExecutionContextKey(3, 0, 1), requestContext);
+			fail();
+		} catch (ForeignExecutionException e) {
+			assertEquals(3, e.getNodeId());
+			assertEquals(0, e.getGeneration());
+		}
+	}
+
+	public void testParseBadlyFormatted() throws Exception {
+		try {
+			repository.parseKey("1");
+			fail();
+		} catch (BadlyFormattedExecutionContextKeyException e) {
+		}
+	}
+
+	public void testUnsupportedDelegateKey() throws Exception {
+		repository.setDelegate(new ClientTokenExecutionContextRepository());
+		flashScope.put("testkey", "testvalue");
+		try {
+			repository.save(requestContext);
+			fail();
+		} catch (ExecutionContextRepositoryException e) {
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import junit.framework.TestCase;
+
+public class NodeExecutionContextKeyTests extends TestCase {
+
+	public void testPacking() throws Exception {
+		NodeExecutionContextKey key = new NodeExecutionContextKey(0xABCD, 0x1234, -1);
+		assertEquals(0xABCD, key.getNodeId());
+		assertEquals(0x1234, key.getGeneration());
+		assertEquals(-1, key.getSequence());
+		assertEquals(0xABCD1234FFFFFFFFL, key.getValue());
+	}
+
+	public void testRoundTrip() throws Exception {
+		int[] values = new int[] { 0, 1, 63, 64, 0xFFFF };
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				NodeExecutionContextKey key = new NodeExecutionContextKey(values[i], values[j], values[i] * 31
+						+ values[j]);
+				String encoded = key.toString();
+				assertEquals(NodeExecutionContextKey.ENCODED_LENGTH, encoded.length());
+				assertTrue(encoded, encoded.matches("[A-Za-z0-9_\\-]+"));
+				assertEquals(key, NodeExecutionContextKey.parse(encoded));
+				assertEquals(key.getValue(), NodeExecutionContextKey.parseValue(encoded));
+			}
+		}
+	}
+
+	public void testNodePrefix() throws Exception {
+		String a = new NodeExecutionContextKey(7, 1, 1).toString();
+		String b = new NodeExecutionContextKey(7, 2, 99).toString();
+		String c = new NodeExecutionContextKey(8, 1, 1).toString();
+		assertEquals(a.substring(0, 3), b.substring(0, 3));
+		assertFalse(a.substring(0, 3).equals(c.substring(0, 3)));
+	}
+
+	public void testEquals() throws Exception {
+		assertEquals(new NodeExecutionContextKey(1, 2, 3), new NodeExecutionContextKey(1, 2, 3));
+		assertEquals(new NodeExecutionContextKey(1, 2, 3).hashCode(), new NodeExecutionContextKey(1, 2, 3).hashCode());
+		assertFalse(new NodeExecutionContextKey(1, 2, 3).equals(new NodeExecutionContextKey(1, 2, 4)));
+	}
+
+	public void testInvalidNodeId() throws Exception {
+		try {
+			new NodeExecutionContextKey(0x10000, 0, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testParseBadlyFormatted() throws Exception {
+		String[] invalid = new String[] { "", "123", "AAAAAAAAAAAA", "AAAAAAAAAA!", "_AAAAAAAAAA" };
+		for (int i = 0; i < invalid.length; i++) {
+			try {
+				NodeExecutionContextKey.parse(invalid[i]);
+				fail(invalid[i]);
+			} catch (BadlyFormattedExecutionContextKeyException e) {
+			}
+		}
+	}
+}
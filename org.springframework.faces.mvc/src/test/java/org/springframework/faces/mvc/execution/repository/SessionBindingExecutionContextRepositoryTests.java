@@ -15,12 +15,16 @@
  */
 package org.springframework.faces.mvc.execution.repository;
 
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
 import junit.framework.TestCase;
 
 import org.easymock.EasyMock;
 import org.springframework.faces.mvc.context.ExternalContext;
 import org.springframework.faces.mvc.execution.ExecutionContextKey;
 import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContext;
 import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContextContainer;
 import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
 import org.springframework.webflow.core.collection.LocalAttributeMap;
@@ -131,4 +135,112 @@ public class SessionBindingExecutionContextRepositoryTests extends TestCase {
 		repository.setMaxExecutions(-1);
 		doTestSize(50, 50);
 	}
+
+	private StoredExecutionContextContainer getContainer(ExternalContext externalContext) {
+		return (StoredExecutionContextContainer) externalContext.getSessionMap().get(SESSION_KEY);
+	}
+
+	/**
+	 * Serialize the container as the session would when it is replicated or passivated.
+	 */
+	private void replicate(ExternalContext externalContext) throws Exception {
+		ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+		out.writeObject(getContainer(externalContext));
+		out.close();
+	}
+
+	private void age(ExternalContext externalContext, ExecutionContextKey key, int seconds) {
+		StoredExecutionContext stored = getContainer(externalContext).getStored(key);
+		stored.setCreated(stored.getCreated() - seconds * 1000L);
+	}
+
+	public void testExpiredNotRestored() throws Exception {
+		repository.setMaxAgeSeconds(60);
+		flashScope.put("k1", "v1");
+		ExecutionContextKey key = repository.save(requestContext);
+		age(externalContext, key, 61);
+		try {
+			repository.restore(key, requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+		assertEquals(0, getContainer(externalContext).getSize());
+	}
+
+	public void testExpiredRemovedOnSave() throws Exception {
+		repository.setMaxAgeSeconds(60);
+		flashScope.put("k1", "v1");
+		ExecutionContextKey key1 = repository.save(requestContext);
+		ExecutionContextKey key2 = repository.save(requestContext);
+		age(externalContext, key1, 61);
+		repository.save(requestContext);
+		assertEquals(2, getContainer(externalContext).getSize());
+		assertNull(getContainer(externalContext).getStored(key1));
+		assertNotNull(getContainer(externalContext).getStored(key2));
+	}
+
+	public void testExpireExecutionsAcrossSessions() throws Exception {
+		repository.setMaxAgeSeconds(60);
+		final long[] expired = new long[2];
+		repository.setListener(new ExecutionContextRepositoryListenerAdapter() {
+			public void executionsExpired(int count, long reclaimedSerializedBytes) {
+				expired[0] += count;
+				expired[1] += reclaimedSerializedBytes;
+			}
+		});
+		ExternalContext otherExternalContext = new WebFlowExternalContextAdapter(new MockExternalContext());
+		RequestContext otherRequestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		EasyMock.expect(otherRequestContext.getFlashScope()).andStubReturn(new LocalAttributeMap("k2", "v2"));
+		EasyMock.expect(otherRequestContext.getExternalContext()).andStubReturn(otherExternalContext);
+		EasyMock.replay(new Object[] { otherRequestContext });
+		flashScope.put("k1", "v1");
+		ExecutionContextKey key1 = repository.save(requestContext);
+		ExecutionContextKey key2 = repository.save(requestContext);
+		ExecutionContextKey otherKey = repository.save(otherRequestContext);
+		assertEquals(2, repository.getRegisteredContainerCount());
+		replicate(externalContext);
+		age(externalContext, key1, 61);
+		age(otherExternalContext, otherKey, 61);
+		long bytes = repository.expireExecutions();
+		assertTrue(bytes > 0);
+		assertEquals(2, expired[0]);
+		assertEquals(bytes, expired[1]);
+		assertEquals(1, getContainer(externalContext).getSize());
+		assertNotNull(getContainer(externalContext).getStored(key2));
+		assertEquals(0, getContainer(otherExternalContext).getSize());
+		assertEquals(0, repository.expireExecutions());
+	}
+
+	public void testExpireExecutionsDoesNotSerialize() throws Exception {
+		repository.setMaxAgeSeconds(60);
+		final long[] expired = new long[2];
+		repository.setListener(new ExecutionContextRepositoryListenerAdapter() {
+			public void executionsExpired(int count, long reclaimedSerializedBytes) {
+				expired[0] += count;
+				expired[1] += reclaimedSerializedBytes;
+			}
+		});
+		flashScope.put("k1", new Object());
+		ExecutionContextKey key = repository.save(requestContext);
+		age(externalContext, key, 61);
+		assertEquals(0, repository.expireExecutions());
+		assertEquals(1, expired[0]);
+		assertEquals(0, expired[1]);
+		assertEquals(0, getContainer(externalContext).getSize());
+	}
+
+	public void testNotRegisteredWithoutMaxAge() throws Exception {
+		flashScope.put("k1", "v1");
+		repository.save(requestContext);
+		assertEquals(0, repository.getRegisteredContainerCount());
+		assertEquals(0, repository.expireExecutions());
+	}
+
+	public void testInvalidMaxAge() throws Exception {
+		try {
+			repository.setMaxAgeSeconds(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.context.ExternalContext;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.StoreBackedExecutionContextRepository.SessionKeys;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class StoreBackedExecutionContextRepositoryTests extends TestCase {
+
+	private static final String SESSION_KEY = "mvcFacesExecutionKeys";
+
+	private StoreBackedExecutionContextRepository repository;
+	private ExpiringExecutionContextStore store;
+	private RequestContext requestContext;
+	private MutableAttributeMap flashScope;
+	private ExternalContext externalContext;
+
+	protected void setUp() throws Exception {
+		repository = new StoreBackedExecutionContextRepository();
+		store = new ExpiringExecutionContextStore();
+		repository.setStore(store);
+		requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		flashScope = new LocalAttributeMap();
+		externalContext = new WebFlowExternalContextAdapter(new MockExternalContext());
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getExternalContext()).andStubReturn(externalContext);
+		EasyMock.replay(new Object[] { requestContext });
+	}
+
+	public void testParseValidKey() throws Exception {
+		assertEquals(new IntegerExecutionContextKey(123), repository.parseKey("123"));
+	}
+
+	public void testTestWithoutData() throws Exception {
+		flashScope.clear();
+		assertNull(repository.save(requestContext));
+		assertTrue(externalContext.getSessionMap().isEmpty());
+		assertEquals(0, store.getSize());
+	}
+
+	public void testFirstTimeSave() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		ExecutionContextKey key = repository.save(requestContext);
+		assertEquals(new IntegerExecutionContextKey(1), key);
+		assertTrue(externalContext.getSessionMap().get(SESSION_KEY) instanceof SessionKeys);
+		assertEquals(1, store.getSize());
+		flashScope.clear();
+		repository.restore(key, requestContext);
+		assertEquals("testvalue", flashScope.get("testkey"));
+		assertEquals(0, store.getSize());
+		assertEquals(0, store.getByteCount());
+	}
+
+	public void testSessionDoesNotHoldData() throws Exception {
+		flashScope.put("testkey", "testvalue");
+		repository.save(requestContext);
+		SessionKeys sessionKeys = (SessionKeys) externalContext.getSessionMap().get(SESSION_KEY);
+		assertEquals(1, sessionKeys.getSize());
+		assertTrue(store.getByteCount() > 0);
+	}
+
+	public void testLimtedToOneAndCleanup() throws Exception {
+		repository.setMaxExecutions(1);
+		flashScope.clear().put("k1", "v1");
+		ExecutionContextKey key1 = repository.save(requestContext);
+		flashScope.clear().put("k2", "v2");
+		ExecutionContextKey key2 = repository.save(requestContext);
+		assertEquals(1, store.getSize());
+		flashScope.clear();
+		repository.restore(key2, requestContext);
+		assertEquals("v2", flashScope.get("k2"));
+		try {
+			repository.restore(key1, requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+			assertEquals("Unable to locate a Faces MVC execution with the key '1'", e.getMessage());
+		}
+	}
+
+	public void testCustomSessionKey() throws Exception {
+		repository.setSessionKey("custom");
+		flashScope.clear().put("k1", "v1");
+		repository.save(requestContext);
+		assertTrue(externalContext.getSessionMap().contains("custom"));
+	}
+
+	public void testDoubleCleanup() throws Exception {
+		flashScope.put("k1", "v1");
+		ExecutionContextKey key1 = repository.save(requestContext);
+		repository.restore(key1, requestContext);
+		try {
+			repository.restore(key1, requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+			assertEquals("Unable to locate a Faces MVC execution with the key '1'", e.getMessage());
+		}
+	}
+
+	public void testRestoreWithoutSession() throws Exception {
+		try {
+			repository.restore(new IntegerExecutionContextKey(1), requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+	}
+
+	public void testEvictedFromStore() throws Exception {
+		store.setMaxEntries(1);
+		flashScope.put("k1", "v1");
+		ExecutionContextKey key1 = repository.save(requestContext);
+		repository.save(requestContext);
+		try {
+			repository.restore(key1, requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+	}
+
+	public void testSessionsDoNotShareStoreEntries() throws Exception {
+		flashScope.put("k1", "v1");
+		ExecutionContextKey key = repository.save(requestContext);
+		RequestContext otherRequestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		EasyMock.expect(otherRequestContext.getFlashScope()).andStubReturn(new LocalAttributeMap());
+		EasyMock.expect(otherRequestContext.getExternalContext()).andStubReturn(
+				new WebFlowExternalContextAdapter(new MockExternalContext()));
+		EasyMock.replay(new Object[] { otherRequestContext });
+		try {
+			repository.restore(key, otherRequestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+		assertEquals(1, store.getSize());
+	}
+
+	private void doTestSize(int inserts, int expected) throws Exception {
+		flashScope.put("k1", "v1");
+		for (int i = 0; i < inserts; i++) {
+			repository.save(requestContext);
+		}
+		SessionKeys sessionKeys = (SessionKeys) externalContext.getSessionMap().get(SESSION_KEY);
+		assertEquals(expected, sessionKeys.getSize());
+		assertEquals(expected, store.getSize());
+	}
+
+	public void testMaxout() throws Exception {
+		doTestSize(50, 5);
+	}
+
+	public void testUnlmited() throws Exception {
+		repository.setMaxExecutions(-1);
+		doTestSize(50, 50);
+	}
+}
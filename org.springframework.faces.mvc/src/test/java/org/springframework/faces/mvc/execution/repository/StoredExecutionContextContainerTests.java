@@ -0,0 +1,329 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContext;
+import org.springframework.faces.mvc.execution.repository.SessionBindingExecutionContextRepository.StoredExecutionContextContainer;
+import org.springframework.webflow.core.collection.AttributeMap;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+
+public class StoredExecutionContextContainerTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(StoredExecutionContextContainerTests.class);
+
+	private static final int THREADS = 8;
+
+	private static RequestContext newRequestContext(int flashEntries) {
+		MutableAttributeMap flashScope = new LocalAttributeMap();
+		for (int i = 0; i < flashEntries; i++) {
+			flashScope.put("k" + i, "v" + i);
+		}
+		RequestContext requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.replay(new Object[] { requestContext });
+		return requestContext;
+	}
+
+	public void testSaveAndRestore() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(5);
+		RequestContext requestContext = newRequestContext(1);
+		ExecutionContextKey key = container.save(requestContext);
+		assertEquals(new IntegerExecutionContextKey(1), key);
+		assertEquals(1, container.getSize());
+		requestContext.getFlashScope().clear();
+		container.restore(key, requestContext);
+		assertEquals("v0", requestContext.getFlashScope().get("k0"));
+		assertEquals(0, container.getSize());
+	}
+
+	public void testRemovesOldest() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(2);
+		RequestContext requestContext = newRequestContext(1);
+		ExecutionContextKey key1 = container.save(requestContext);
+		ExecutionContextKey key2 = container.save(requestContext);
+		container.restore(key2, requestContext);
+		ExecutionContextKey key3 = container.save(requestContext);
+		ExecutionContextKey key4 = container.save(requestContext);
+		assertEquals(2, container.getSize());
+		try {
+			container.restore(key1, requestContext);
+			fail();
+		} catch (NoSuchExecutionException e) {
+		}
+		container.restore(key3, requestContext);
+		container.restore(key4, requestContext);
+	}
+
+	public void testConcurrentSaveRespectsCapacity() throws Exception {
+		final StoredExecutionContextContainer container = new StoredExecutionContextContainer(5);
+		run(new Operation() {
+			public void execute(RequestContext requestContext) {
+				container.save(requestContext);
+			}
+		}, 1, 1000);
+		assertEquals(5, container.getSize());
+	}
+
+	public void testConcurrentSaveAndRestore() throws Exception {
+		final StoredExecutionContextContainer container = new StoredExecutionContextContainer(-1);
+		run(new Operation() {
+			public void execute(RequestContext requestContext) {
+				container.restore(container.save(requestContext), requestContext);
+			}
+		}, 1, 1000);
+		assertEquals(0, container.getSize());
+	}
+
+	public void testFlashScopeCopiedOutsideContainerLock() throws Exception {
+		final StoredExecutionContextContainer container = new StoredExecutionContextContainer(5);
+		final List lockHeld = new ArrayList();
+		MutableAttributeMap flashScope = new LocalAttributeMap() {
+			public Map asMap() {
+				lockHeld.add(Boolean.valueOf(Thread.holdsLock(container)));
+				return super.asMap();
+			}
+
+			public MutableAttributeMap replaceWith(AttributeMap attributes) {
+				lockHeld.add(Boolean.valueOf(Thread.holdsLock(container)));
+				return super.replaceWith(attributes);
+			}
+		};
+		flashScope.put("k", "v");
+		RequestContext requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.replay(new Object[] { requestContext });
+		container.restore(container.save(requestContext), requestContext);
+		assertFalse(lockHeld.isEmpty());
+		assertFalse(lockHeld.contains(Boolean.TRUE));
+	}
+
+	public void testExternalizeRoundTrip() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(5);
+		RequestContext requestContext = newRequestContext(3);
+		container.save(requestContext);
+		ExecutionContextKey key2 = container.save(requestContext);
+		container.getStored(key2).setCreated(1234);
+		StoredExecutionContextContainer copy = (StoredExecutionContextContainer) deserialize(serialize(container));
+		assertEquals(2, copy.getSize());
+		assertEquals(1234, copy.getStored(key2).getCreated());
+		requestContext.getFlashScope().clear();
+		copy.restore(key2, requestContext);
+		assertEquals("v2", requestContext.getFlashScope().get("k2"));
+		assertEquals(new IntegerExecutionContextKey(3), copy.save(requestContext));
+	}
+
+	public void testExpire() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(5);
+		RequestContext requestContext = newRequestContext(1);
+		ExecutionContextKey key1 = container.save(requestContext);
+		ExecutionContextKey key2 = container.save(requestContext);
+		ExecutionContextKey key3 = container.save(requestContext);
+		container.getStored(key1).setCreated(100);
+		container.getStored(key2).setCreated(200);
+		container.restore(key1, requestContext);
+		assertEquals(1, container.expire(300).size());
+		assertEquals(1, container.getSize());
+		assertNotNull(container.getStored(key3));
+		assertEquals(0, container.expire(300).size());
+	}
+
+	public void testExternalizeCompressedRoundTrip() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(5,
+				new DeflaterExecutionContextCompressor(), 64);
+		RequestContext requestContext = newSearchResultsRequestContext(100);
+		ExecutionContextKey key = container.save(requestContext);
+		StoredExecutionContextContainer copy = (StoredExecutionContextContainer) deserialize(serialize(container));
+		requestContext.getFlashScope().clear();
+		copy.restore(key, requestContext);
+		assertEquals(100, ((List) requestContext.getFlashScope().get("searchResults")).size());
+	}
+
+	public void testExternalizedSmallerThanDefaultSerialization() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(5);
+		LegacyContainer legacyContainer = new LegacyContainer();
+		RequestContext requestContext = newRequestContext(5);
+		for (int i = 0; i < 5; i++) {
+			container.save(requestContext);
+			legacyContainer.save(requestContext);
+		}
+		int size = serialize(container).length;
+		int legacySize = serialize(legacyContainer).length;
+		logger.info("Small flash scope serialized size: default " + legacySize + " bytes, externalized " + size
+				+ " bytes");
+		assertTrue(size < legacySize);
+	}
+
+	/**
+	 * Size and throughput comparison against default serialization of the previous container structure using flash
+	 * scopes that contain search results.
+	 */
+	public void testExternalizedSearchResultsComparison() throws Exception {
+		StoredExecutionContextContainer container = new StoredExecutionContextContainer(5,
+				new DeflaterExecutionContextCompressor(), 4096);
+		LegacyContainer legacyContainer = new LegacyContainer();
+		for (int i = 0; i < 5; i++) {
+			RequestContext requestContext = newSearchResultsRequestContext(200);
+			container.save(requestContext);
+			legacyContainer.save(requestContext);
+		}
+		int size = serialize(container).length;
+		int legacySize = serialize(legacyContainer).length;
+		assertTrue(size < legacySize);
+		int iterations = 200;
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < iterations; i++) {
+			deserialize(serialize(legacyContainer));
+		}
+		long legacyTime = System.currentTimeMillis() - start;
+		start = System.currentTimeMillis();
+		for (int i = 0; i < iterations; i++) {
+			deserialize(serialize(container));
+		}
+		long time = System.currentTimeMillis() - start;
+		logger.info("Search results serialized size: default " + legacySize + " bytes, externalized " + size
+				+ " bytes; round trips: default " + (iterations * 1000L / Math.max(legacyTime, 1))
+				+ "/sec, externalized " + (iterations * 1000L / Math.max(time, 1)) + "/sec");
+	}
+
+	private static RequestContext newSearchResultsRequestContext(int results) {
+		RequestContext requestContext = newRequestContext(2);
+		List searchResults = new ArrayList();
+		for (int i = 0; i < results; i++) {
+			searchResults.add(new SearchResult(i, "Hotel " + i, "Street " + i, new Date(0)));
+		}
+		requestContext.getFlashScope().put("searchResults", searchResults);
+		return requestContext;
+	}
+
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Run the specified operation from {@link #THREADS} threads, failing if any thread fails.
+	 * @return The elapsed time in milliseconds
+	 */
+	private long run(final Operation operation, int flashEntries, final int iterations) throws Exception {
+		final List failures = Collections.synchronizedList(new ArrayList());
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < threads.length; i++) {
+			final RequestContext requestContext = newRequestContext(flashEntries);
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < iterations; j++) {
+							operation.execute(requestContext);
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			});
+		}
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		assertEquals(failures.toString(), 0, failures.size());
+		return elapsed;
+	}
+
+	private static interface Operation {
+		void execute(RequestContext requestContext);
+	}
+
+	/**
+	 * Serializable equivalent of the previous container structure used as a size baseline.
+	 */
+	private static class LegacyContainer implements Serializable {
+
+		private LinkedHashMap stored = new LinkedHashMap();
+
+		private int sequence;
+
+		private int maxCapacity = 5;
+
+		public void save(RequestContext requestContext) {
+			LocalAttributeMap flashScope = new LocalAttributeMap();
+			flashScope.putAll(requestContext.getFlashScope());
+			stored.put(new Integer(++sequence), new LegacyStoredExecutionContext(flashScope));
+		}
+	}
+
+	private static class LegacyStoredExecutionContext implements Serializable {
+
+		private MutableAttributeMap flashScope;
+
+		public LegacyStoredExecutionContext(MutableAttributeMap flashScope) {
+			this.flashScope = flashScope;
+		}
+	}
+
+	private static class SearchResult implements Serializable {
+
+		private long id;
+
+		private String name;
+
+		private String address;
+
+		private Date checkinDate;
+
+		public SearchResult(long id, String name, String address, Date checkinDate) {
+			this.id = id;
+			this.name = name;
+			this.address = address;
+			this.checkinDate = checkinDate;
+		}
+	}
+}
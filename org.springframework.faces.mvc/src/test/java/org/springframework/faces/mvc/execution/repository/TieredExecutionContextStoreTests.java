@@ -0,0 +1,87 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import junit.framework.TestCase;
+
+public class TieredExecutionContextStoreTests extends TestCase {
+
+	private ExpiringExecutionContextStore heapStore;
+
+	private ExpiringExecutionContextStore overflowStore;
+
+	private TieredExecutionContextStore store;
+
+	protected void setUp() throws Exception {
+		heapStore = new ExpiringExecutionContextStore();
+		overflowStore = new ExpiringExecutionContextStore();
+		store = new TieredExecutionContextStore();
+		store.setHeapStore(heapStore);
+		store.setOverflowStore(overflowStore);
+		store.setThreshold(10);
+	}
+
+	public void testSmallEntriesOnHeap() throws Exception {
+		byte[] data = new byte[10];
+		store.put("a", data);
+		assertEquals(1, heapStore.getSize());
+		assertEquals(0, overflowStore.getSize());
+		assertSame(data, store.remove("a"));
+		assertEquals(0, heapStore.getSize());
+	}
+
+	public void testLargeEntriesOverflow() throws Exception {
+		byte[] data = new byte[11];
+		store.put("a", data);
+		assertEquals(0, heapStore.getSize());
+		assertEquals(1, overflowStore.getSize());
+		assertSame(data, store.remove("a"));
+		assertEquals(0, overflowStore.getSize());
+	}
+
+	public void testLargeEntriesOnHeapWhenOverflowFull() throws Exception {
+		store.setOverflowStore(new ExpiringExecutionContextStore() {
+			public void put(String id, byte[] data) {
+				throw new ExecutionContextStoreFullException("Full");
+			}
+		});
+		byte[] data = new byte[11];
+		store.put("a", data);
+		assertEquals(1, heapStore.getSize());
+		assertSame(data, store.remove("a"));
+	}
+
+	public void testRemoveMissing() throws Exception {
+		assertNull(store.remove("missing"));
+	}
+
+	public void testWithRepositoryAndMappedStore() throws Exception {
+		MappedExecutionContextStore mappedStore = new MappedExecutionContextStore();
+		mappedStore.setSegmentSize(4096);
+		store.setOverflowStore(mappedStore);
+		store.setThreshold(0);
+		try {
+			StoreBackedExecutionContextRepository repository = new StoreBackedExecutionContextRepository();
+			repository.setStore(store);
+			store.put("x", "flash".getBytes("UTF-8"));
+			assertEquals(1, mappedStore.getSize());
+			assertEquals("flash", new String(store.remove("x"), "UTF-8"));
+		} finally {
+			store.destroy();
+		}
+		assertEquals(0, mappedStore.getSegmentCount());
+	}
+}
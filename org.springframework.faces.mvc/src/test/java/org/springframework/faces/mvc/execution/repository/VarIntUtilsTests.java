@@ -0,0 +1,62 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import junit.framework.TestCase;
+
+public class VarIntUtilsTests extends TestCase {
+
+	private static final int[] VALUES = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE };
+
+	public void testUnsignedRoundTrip() throws Exception {
+		for (int i = 0; i < VALUES.length; i++) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			VarIntUtils.writeUnsigned(new DataOutputStream(bytes), VALUES[i]);
+			assertEquals(VALUES[i], VarIntUtils.readUnsigned(new DataInputStream(new ByteArrayInputStream(bytes
+					.toByteArray()))));
+		}
+	}
+
+	public void testSignedRoundTrip() throws Exception {
+		for (int i = 0; i < VALUES.length; i++) {
+			doTestSignedRoundTrip(VALUES[i]);
+			doTestSignedRoundTrip(-VALUES[i]);
+		}
+		doTestSignedRoundTrip(Integer.MIN_VALUE);
+	}
+
+	private void doTestSignedRoundTrip(int value) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		VarIntUtils.writeSigned(new DataOutputStream(bytes), value);
+		assertEquals(value, VarIntUtils.readSigned(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+	}
+
+	public void testEncodedLength() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		VarIntUtils.writeUnsigned(out, 127);
+		assertEquals(1, bytes.size());
+		VarIntUtils.writeUnsigned(out, 128);
+		assertEquals(3, bytes.size());
+		VarIntUtils.writeSigned(out, -1);
+		assertEquals(4, bytes.size());
+	}
+}
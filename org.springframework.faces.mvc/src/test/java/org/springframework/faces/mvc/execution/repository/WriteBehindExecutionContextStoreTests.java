@@ -0,0 +1,258 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.execution.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.faces.mvc.execution.ExecutionContextKey;
+import org.springframework.faces.mvc.execution.RequestContext;
+import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+import org.springframework.webflow.test.MockExternalContext;
+
+public class WriteBehindExecutionContextStoreTests extends TestCase {
+
+	private MapStore delegate;
+
+	private WriteBehindExecutionContextStore store;
+
+	protected void setUp() throws Exception {
+		delegate = new MapStore();
+		store = new WriteBehindExecutionContextStore(delegate);
+	}
+
+	protected void tearDown() throws Exception {
+		delegate.release();
+		store.destroy();
+	}
+
+	public void testWritesInBatches() throws Exception {
+		store.setBatchSize(10);
+		for (int i = 0; i < 250; i++) {
+			store.put("k" + i, new byte[] { (byte) i });
+		}
+		store.destroy();
+		assertEquals(0, store.getPendingCount());
+		assertEquals(250, delegate.size());
+		assertTrue(delegate.getBatchSizes().size() < 250);
+		for (Iterator iterator = delegate.getBatchSizes().iterator(); iterator.hasNext();) {
+			assertTrue(((Integer) iterator.next()).intValue() <= 10);
+		}
+		assertEquals(7, store.remove("k7")[0]);
+	}
+
+	public void testPendingEntryRestoredWithoutWrite() throws Exception {
+		delegate.block();
+		store.put("a", new byte[] { 1 });
+		delegate.awaitBlocked();
+		store.put("b", new byte[] { 2 });
+		assertEquals(2, store.remove("b")[0]);
+		delegate.release();
+		store.destroy();
+		assertTrue(delegate.contains("a"));
+		assertFalse(delegate.contains("b"));
+		assertNull(store.remove("b"));
+	}
+
+	public void testRemoveWaitsForClaimedEntry() throws Exception {
+		delegate.block();
+		store.put("a", new byte[] { 1 });
+		delegate.awaitBlocked();
+		final byte[][] result = new byte[1][];
+		Thread remover = new Thread() {
+			public void run() {
+				result[0] = store.remove("a");
+			}
+		};
+		remover.start();
+		remover.join(100);
+		assertTrue(remover.isAlive());
+		delegate.release();
+		remover.join();
+		assertEquals(1, result[0][0]);
+		assertFalse(delegate.contains("a"));
+	}
+
+	public void testFailedWriteRetried() throws Exception {
+		delegate.fail(2);
+		store.put("a", new byte[] { 1 });
+		store.flush();
+		assertEquals(0, store.getPendingCount());
+		assertTrue(delegate.contains("a"));
+	}
+
+	public void testFailedWriteDiscardedAfterMaxRetries() throws Exception {
+		store.setMaxRetries(1);
+		delegate.fail(5);
+		store.put("a", new byte[] { 1 });
+		store.flush();
+		assertEquals(0, store.getPendingCount());
+		assertFalse(delegate.contains("a"));
+		assertNull(store.remove("a"));
+	}
+
+	public void testFailedWriteReadableByWaitingRemove() throws Exception {
+		delegate.block();
+		delegate.fail(Integer.MAX_VALUE);
+		store.put("a", new byte[] { 1 });
+		delegate.awaitBlocked();
+		final byte[][] result = new byte[1][];
+		Thread remover = new Thread() {
+			public void run() {
+				result[0] = store.remove("a");
+			}
+		};
+		remover.start();
+		remover.join(100);
+		assertTrue(remover.isAlive());
+		delegate.release();
+		remover.join();
+		assertEquals(1, result[0][0]);
+		assertFalse(delegate.contains("a"));
+	}
+
+	public void testMaxPendingWritesDirectly() throws Exception {
+		store.setMaxPending(1);
+		delegate.block();
+		store.put("a", new byte[] { 1 });
+		delegate.awaitBlocked();
+		store.put("b", new byte[] { 2 });
+		assertTrue(delegate.contains("b"));
+	}
+
+	public void testNonBatchDelegate() throws Exception {
+		ExpiringExecutionContextStore expiringStore = new ExpiringExecutionContextStore();
+		store.setDelegate(expiringStore);
+		store.put("a", new byte[] { 1 });
+		store.flush();
+		assertEquals(0, store.getPendingCount());
+		assertEquals(1, expiringStore.getSize());
+		assertEquals(1, store.remove("a")[0]);
+	}
+
+	public void testFastRedirectWithRepository() throws Exception {
+		delegate.block();
+		StoreBackedExecutionContextRepository repository = new StoreBackedExecutionContextRepository();
+		repository.setStore(store);
+		RequestContext requestContext = (RequestContext) EasyMock.createNiceMock(RequestContext.class);
+		MutableAttributeMap flashScope = new LocalAttributeMap();
+		EasyMock.expect(requestContext.getFlashScope()).andStubReturn(flashScope);
+		EasyMock.expect(requestContext.getExternalContext()).andStubReturn(
+				new WebFlowExternalContextAdapter(new MockExternalContext()));
+		EasyMock.replay(new Object[] { requestContext });
+		flashScope.put("k", "v");
+		repository.save(requestContext);
+		delegate.awaitBlocked();
+		ExecutionContextKey key = repository.save(requestContext);
+		flashScope.clear();
+		repository.restore(key, requestContext);
+		assertEquals("v", flashScope.get("k"));
+	}
+
+	/**
+	 * In-process stand in for a shared external store. Batch writes can be blocked to simulate a slow store or made to
+	 * fail to simulate an unavailable store.
+	 */
+	private static class MapStore implements BatchExecutionContextStore {
+
+		private Map entries = new HashMap();
+
+		private List batchSizes = new ArrayList();
+
+		private final Object gate = new Object();
+
+		private boolean blocked;
+
+		private boolean blocking;
+
+		private int failures;
+
+		public synchronized void fail(int failures) {
+			this.failures = failures;
+		}
+
+		public void block() {
+			synchronized (gate) {
+				blocking = true;
+			}
+		}
+
+		public void awaitBlocked() throws InterruptedException {
+			synchronized (gate) {
+				while (!blocked) {
+					gate.wait();
+				}
+			}
+		}
+
+		public void release() {
+			synchronized (gate) {
+				blocking = false;
+				gate.notifyAll();
+			}
+		}
+
+		public void putAll(Map batch) {
+			synchronized (gate) {
+				blocked = true;
+				gate.notifyAll();
+				try {
+					while (blocking) {
+						gate.wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (this) {
+				if (failures > 0) {
+					failures--;
+					throw new ExecutionContextRepositoryException("Store unavailable");
+				}
+				batchSizes.add(new Integer(batch.size()));
+				entries.putAll(batch);
+			}
+		}
+
+		public synchronized void put(String id, byte[] data) {
+			entries.put(id, data);
+		}
+
+		public synchronized byte[] remove(String id) {
+			return (byte[]) entries.remove(id);
+		}
+
+		public synchronized boolean contains(String id) {
+			return entries.containsKey(id);
+		}
+
+		public synchronized int size() {
+			return entries.size();
+		}
+
+		public synchronized List getBatchSizes() {
+			return new ArrayList(batchSizes);
+		}
+	}
+}
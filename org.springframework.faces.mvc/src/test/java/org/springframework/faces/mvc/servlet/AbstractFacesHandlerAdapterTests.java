@@ -16,6 +16,7 @@
 package org.springframework.faces.mvc.servlet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +25,9 @@ import java.util.Map;
 import javax.faces.component.UIViewRoot;
 import javax.faces.event.PhaseEvent;
 import javax.faces.event.PhaseId;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -55,8 +59,13 @@ import org.springframework.faces.mvc.support.WebFlowExternalContextAdapter;
 import org.springframework.faces.mvc.view.FacesViewIdResolver;
 import org.springframework.js.ajax.AjaxHandler;
 import org.springframework.js.ajax.SpringJavascriptAjaxHandler;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockRequestDispatcher;
 import org.springframework.web.context.support.StaticWebApplicationContext;
 import org.springframework.web.util.WebUtils;
+import org.springframework.webflow.core.collection.AttributeMap;
+import org.springframework.webflow.execution.View;
 import org.springframework.webflow.test.MockExternalContext;
 
 public class AbstractFacesHandlerAdapterTests extends AbstractJsfTestCase {
@@ -491,6 +500,166 @@ public class AbstractFacesHandlerAdapterTests extends AbstractJsfTestCase {
 		assertEquals("UTF-8", facesHandlerAdapter.getUrlEncodingScheme());
 	}
 
+	private MockFacesHandlerAdapter newNavigatingFacesHandlerAdapter(final String outcome, final boolean ajax,
+			final NavigationLocation location) {
+		return new MockFacesHandlerAdapter() {
+			protected void doHandle(RequestContext requestContext, HttpServletRequest request,
+					HttpServletResponse response) throws Exception {
+				requestContext.getFlashScope().put("test", "value");
+				((RequestControlContext) requestContext).setLastNavigationRequestEvent(new NavigationRequestEvent(
+						this, "action", outcome));
+				((RequestControlContext) requestContext).getExecution().redirect(facesContext, requestContext,
+						location);
+			}
+
+			protected ExternalContext createExternalContext(HttpServletRequest request, HttpServletResponse response) {
+				MockExternalContext externalContext = new MockExternalContext();
+				externalContext.setAjaxRequest(ajax);
+				return new WebFlowExternalContextAdapter(externalContext);
+			}
+		};
+	}
+
+	public void testForwardOutcome() throws Exception {
+		MockHttpServletRequest frequest = new MockHttpServletRequest();
+		frequest.setServletPath("/servlet");
+		MockHttpServletResponse fresponse = new MockHttpServletResponse();
+		externalContext.setRequest(frequest);
+		externalContext.setResponse(fresponse);
+		redirectHandler = new DefaultRedirectHandler();
+		EasyMock.replay(new Object[] { executionContextRepository });
+		facesHandlerAdapter = newNavigatingFacesHandlerAdapter("next", false, new NavigationLocation("next"));
+		facesHandlerAdapter.setForwardOutcomes(Arrays.asList(new String[] { "next" }));
+		facesHandlerAdapter.handle(frequest, fresponse, facesHandler);
+		assertEquals("/servlet/next", fresponse.getForwardedUrl());
+		AttributeMap forwardedFlashScope = (AttributeMap) frequest.getAttribute(AbstractFacesHandlerAdapter.class
+				.getName()
+				+ ".forwardedFlashScope");
+		assertEquals("value", forwardedFlashScope.get("test"));
+		EasyMock.verify(new Object[] { executionContextRepository });
+	}
+
+	public void testForwardExposesQueryParameters() throws Exception {
+		final HttpServletRequest[] forwarded = new HttpServletRequest[1];
+		MockHttpServletRequest frequest = new MockHttpServletRequest("POST", "/servlet") {
+			public RequestDispatcher getRequestDispatcher(String path) {
+				return new MockRequestDispatcher(path) {
+					public void forward(ServletRequest request, ServletResponse response) {
+						forwarded[0] = (HttpServletRequest) request;
+						super.forward(request, response);
+					}
+				};
+			}
+		};
+		frequest.setServletPath("/servlet");
+		frequest.addParameter("postback", "value");
+		frequest.addParameter(SpringJavascriptAjaxHandler.AJAX_SOURCE_PARAM, "source");
+		MockHttpServletResponse fresponse = new MockHttpServletResponse();
+		externalContext.setRequest(frequest);
+		externalContext.setResponse(fresponse);
+		redirectHandler = new DefaultRedirectHandler();
+		EasyMock.replay(new Object[] { executionContextRepository });
+		facesHandlerAdapter = newNavigatingFacesHandlerAdapter("next", false, new NavigationLocation(
+				"search?a=b&c=d%20e&a=f"));
+		facesHandlerAdapter.setForwardOutcomes(Collections.singleton("next"));
+		facesHandlerAdapter.handle(frequest, fresponse, facesHandler);
+		assertEquals("/servlet/search?a=b&c=d%20e&a=f", fresponse.getForwardedUrl());
+		HttpServletRequest request = forwarded[0];
+		assertEquals("GET", request.getMethod());
+		assertEquals("b", request.getParameter("a"));
+		assertTrue(Arrays.equals(new String[] { "b", "f" }, request.getParameterValues("a")));
+		assertEquals("d e", request.getParameter("c"));
+		assertEquals("source", request.getParameter(SpringJavascriptAjaxHandler.AJAX_SOURCE_PARAM));
+		assertNull(request.getParameter("postback"));
+		assertEquals(3, request.getParameterMap().size());
+		EasyMock.verify(new Object[] { executionContextRepository });
+	}
+
+	public void testForwardedFlashScopeRestoredInMemory() throws Exception {
+		MockHttpServletRequest frequest = new MockHttpServletRequest();
+		frequest.setServletPath("/servlet");
+		MockHttpServletResponse fresponse = new MockHttpServletResponse();
+		externalContext.setRequest(frequest);
+		externalContext.setResponse(fresponse);
+		redirectHandler = new DefaultRedirectHandler();
+		EasyMock.expect(executionContextRepository.save((RequestContext) EasyMock.isA(RequestContext.class)))
+				.andReturn(new IntegerExecutionContextKey(1));
+		EasyMock.replay(new Object[] { executionContextRepository });
+		facesHandlerAdapter = newNavigatingFacesHandlerAdapter("next", false, new NavigationLocation("next"));
+		facesHandlerAdapter.setAjaxHandler(new SpringJavascriptAjaxHandler());
+		facesHandlerAdapter.setForwardOutcomes(Collections.singleton("next"));
+		facesHandlerAdapter.handle(frequest, fresponse, facesHandler);
+		final MockHttpServletResponse forwardedResponse = new MockHttpServletResponse();
+		externalContext.setResponse(forwardedResponse);
+		MockFacesHandlerAdapter forwardedFacesHandlerAdapter = new MockFacesHandlerAdapter() {
+			protected void doHandle(RequestContext requestContext, HttpServletRequest request,
+					HttpServletResponse response) throws Exception {
+				assertEquals("value", requestContext.getFlashScope().get("test"));
+				((RequestControlContext) requestContext).setLastNavigationRequestEvent(new NavigationRequestEvent(
+						this, "action", "next"));
+				((RequestControlContext) requestContext).getExecution().redirect(facesContext, requestContext,
+						new NavigationLocation("again"));
+			}
+		};
+		forwardedFacesHandlerAdapter.setAjaxHandler(new SpringJavascriptAjaxHandler());
+		forwardedFacesHandlerAdapter.setForwardOutcomes(Collections.singleton("next"));
+		forwardedFacesHandlerAdapter.handle(frequest, forwardedResponse, facesHandler);
+		// Requests that have been forwarded are never forwarded again
+		assertNull(forwardedResponse.getForwardedUrl());
+		assertEquals(303, forwardedResponse.getStatus());
+		EasyMock.verify(new Object[] { executionContextRepository });
+	}
+
+	public void testForwardAjaxNavigationWithFragments() throws Exception {
+		MockHttpServletRequest frequest = new MockHttpServletRequest();
+		MockHttpServletResponse fresponse = new MockHttpServletResponse();
+		externalContext.setRequest(frequest);
+		externalContext.setResponse(fresponse);
+		redirectHandler = new DefaultRedirectHandler();
+		EasyMock.replay(new Object[] { executionContextRepository });
+		String[] fragments = new String[] { "fragment" };
+		facesHandlerAdapter = newNavigatingFacesHandlerAdapter("any", true, new NavigationLocation(
+				"contextRelative:page", false, fragments));
+		facesHandlerAdapter.setForwardAjaxNavigation(true);
+		facesHandlerAdapter.handle(frequest, fresponse, facesHandler);
+		assertEquals("/page", fresponse.getForwardedUrl());
+		AttributeMap forwardedFlashScope = (AttributeMap) frequest.getAttribute(AbstractFacesHandlerAdapter.class
+				.getName()
+				+ ".forwardedFlashScope");
+		assertSame(fragments, forwardedFlashScope.get(View.RENDER_FRAGMENTS_ATTRIBUTE));
+		EasyMock.verify(new Object[] { executionContextRepository });
+	}
+
+	public void testNotForwardedWhenOutcomeDoesNotMatch() throws Exception {
+		doTestNotForwarded("other", new NavigationLocation("next"));
+	}
+
+	public void testNotForwardedForServerRelativeLocation() throws Exception {
+		doTestNotForwarded("next", new NavigationLocation("serverRelative:next"));
+	}
+
+	public void testNotForwardedForPopup() throws Exception {
+		doTestNotForwarded("next", new NavigationLocation("next", true, null));
+	}
+
+	private void doTestNotForwarded(String outcome, NavigationLocation location) throws Exception {
+		MockHttpServletRequest frequest = new MockHttpServletRequest();
+		MockHttpServletResponse fresponse = new MockHttpServletResponse();
+		externalContext.setRequest(frequest);
+		externalContext.setResponse(fresponse);
+		redirectHandler = new DefaultRedirectHandler();
+		EasyMock.expect(executionContextRepository.save((RequestContext) EasyMock.isA(RequestContext.class)))
+				.andReturn(new IntegerExecutionContextKey(1));
+		EasyMock.replay(new Object[] { executionContextRepository });
+		facesHandlerAdapter = newNavigatingFacesHandlerAdapter(outcome, false, location);
+		facesHandlerAdapter.setAjaxHandler(new SpringJavascriptAjaxHandler());
+		facesHandlerAdapter.setForwardOutcomes(Collections.singleton("next"));
+		facesHandlerAdapter.handle(frequest, fresponse, facesHandler);
+		assertNull(fresponse.getForwardedUrl());
+		assertEquals(303, fresponse.getStatus());
+		EasyMock.verify(new Object[] { executionContextRepository });
+	}
+
 	private class MockFacesHandlerAdapter extends AbstractFacesHandlerAdapter {
 
 		protected void doHandle(RequestContext requestContext, HttpServletRequest request, HttpServletResponse response)
@@ -15,6 +15,8 @@
  */
 package org.springframework.faces.mvc.servlet;
 
+import java.net.URLEncoder;
+
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -22,15 +24,21 @@ import javax.servlet.http.HttpServletResponse;
 import junit.framework.ComparisonFailure;
 import junit.framework.TestCase;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.easymock.EasyMock;
 import org.springframework.faces.mvc.execution.ExecutionContextKey;
 import org.springframework.faces.mvc.execution.repository.IntegerExecutionContextKey;
+import org.springframework.faces.mvc.execution.repository.TokenExecutionContextKey;
 import org.springframework.faces.mvc.navigation.NavigationLocation;
 import org.springframework.js.ajax.AjaxHandler;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.util.WebUtils;
 
 public class DefaultRedirectHandlerTests extends TestCase {
 
+	private static final Log logger = LogFactory.getLog(DefaultRedirectHandlerTests.class);
+
 	private static final String ENCODING = WebUtils.DEFAULT_CHARACTER_ENCODING;
 
 	private static final int TYPE_NORMAL = 1;
@@ -126,6 +134,11 @@ public class DefaultRedirectHandlerTests extends TestCase {
 		doTestRedirects("test?a=b", "/context/servlet/test?a=b&execution=123", key);
 	}
 
+	public void testWithTokenKey() throws Exception {
+		ExecutionContextKey key = new TokenExecutionContextKey("tAbc-_123");
+		doTestRedirects("test", "/context/servlet/test?execution=tAbc-_123", key);
+	}
+
 	public void testKeyEncoding() throws Exception {
 		ExecutionContextKey key = new ExecutionContextKey() {
 			public String toString() {
@@ -153,4 +166,111 @@ public class DefaultRedirectHandlerTests extends TestCase {
 		assertNull(handler.getExecutionContextKey(requestWithout));
 		assertEquals("123", handler.getExecutionContextKey(requestWith));
 	}
+
+	public void testKeySpaceEncoding() throws Exception {
+		ExecutionContextKey key = new TokenExecutionContextKey("a b");
+		doTestRedirects("test", "/context/servlet/test?execution=a+b", key);
+	}
+
+	public void testServletPrefixPerMapping() throws Exception {
+		DefaultRedirectHandler handler = new DefaultRedirectHandler();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setContextPath("/a");
+		request.setServletPath("/x");
+		assertEquals("/a/x/test", handler.getLocationUrl(ENCODING, request, "test", null));
+		request.setServletPath("/y");
+		assertEquals("/a/y/test", handler.getLocationUrl(ENCODING, request, "test", null));
+		request.setContextPath("/b");
+		assertEquals("/b/y/test", handler.getLocationUrl(ENCODING, request, "test", null));
+		request.setServletPath("/x");
+		assertEquals("/b/x/test", handler.getLocationUrl(ENCODING, request, "servletRelative:test", null));
+	}
+
+	public void testPrefixDispatch() throws Exception {
+		DefaultRedirectHandler handler = new DefaultRedirectHandler();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setContextPath("/context");
+		request.setServletPath("/servlet");
+		assertEquals("/context/servlet/", handler.getLocationUrl(ENCODING, request, "", null));
+		assertEquals("/context/servlet/s", handler.getLocationUrl(ENCODING, request, "s", null));
+		assertEquals("/context/servlet/contextRelative", handler.getLocationUrl(ENCODING, request,
+				"contextRelative", null));
+		assertEquals("/context/servlet/https:/x", handler.getLocationUrl(ENCODING, request, "https:/x", null));
+		assertEquals("/context/", handler.getLocationUrl(ENCODING, request, "contextRelative:", null));
+	}
+
+	public void testForwardPath() throws Exception {
+		DefaultRedirectHandler handler = new DefaultRedirectHandler();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setContextPath("/context");
+		request.setServletPath("/servlet");
+		assertEquals("/servlet/test", handler.getForwardPath(request, new NavigationLocation("test")));
+		assertEquals("/servlet/test?a=b", handler.getForwardPath(request, new NavigationLocation(
+				"servletRelative:/test?a=b")));
+		assertEquals("/test", handler.getForwardPath(request, new NavigationLocation("contextRelative:test")));
+		assertNull(handler.getForwardPath(request, new NavigationLocation("serverRelative:test")));
+		assertNull(handler.getForwardPath(request, new NavigationLocation("http://localhost")));
+		assertNull(handler.getForwardPath(request, new NavigationLocation("test", true, null)));
+		assertNull(handler.getForwardPath(request, new NavigationLocation(null)));
+	}
+
+	public void testBenchmark() throws Exception {
+		DefaultRedirectHandler handler = new DefaultRedirectHandler();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setContextPath("/context");
+		request.setServletPath("/servlet");
+		String[] locations = { "test", "contextRelative:/search?q=x", "servletRelative:results", "http://localhost" };
+		ExecutionContextKey key = new IntegerExecutionContextKey(123);
+		for (int i = 0; i < locations.length; i++) {
+			assertEquals(legacyLocationUrl(request, locations[i], key), handler.getLocationUrl(ENCODING, request,
+					locations[i], key));
+		}
+		int iterations = 1000000;
+		long legacyTime = 0;
+		long time = 0;
+		for (int run = 0; run < 3; run++) {
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < iterations; i++) {
+				legacyLocationUrl(request, locations[i % locations.length], key);
+			}
+			legacyTime = System.currentTimeMillis() - start;
+			start = System.currentTimeMillis();
+			for (int i = 0; i < iterations; i++) {
+				handler.getLocationUrl(ENCODING, request, locations[i % locations.length], key);
+			}
+			time = System.currentTimeMillis() - start;
+		}
+		logger.info("Redirect URL benchmark: legacy " + (iterations * 1000L / Math.max(legacyTime, 1))
+				+ " urls/sec, compiled " + (iterations * 1000L / Math.max(time, 1)) + " urls/sec");
+	}
+
+	/**
+	 * The redirect URL algorithm used before prefixes were compiled, retained as a benchmark baseline.
+	 */
+	private String legacyLocationUrl(HttpServletRequest request, String location, ExecutionContextKey key)
+			throws Exception {
+		String[] prefixes = { "servletRelative:", "contextRelative:", "serverRelative:", "http://", "https://", "" };
+		boolean[][] flags = { { true, true, true, true }, { true, true, true, false }, { true, true, false, false },
+				{ false, false, false, false }, { false, false, false, false }, { false, true, true, true } };
+		for (int i = 0; i < prefixes.length; i++) {
+			if (location.startsWith(prefixes[i])) {
+				StringBuffer url = new StringBuffer();
+				url.append(flags[i][2] ? request.getContextPath() : "");
+				url.append(flags[i][3] ? request.getServletPath() : "");
+				location = (flags[i][0] ? location.substring(prefixes[i].length()) : location);
+				if (flags[i][1] && !location.startsWith("/")) {
+					url.append("/");
+				}
+				url.append(location);
+				if (key != null) {
+					url.append(location.indexOf("?") == -1 ? "?" : "&");
+					url.append(URLEncoder.encode("execution", ENCODING));
+					url.append("=");
+					url.append(URLEncoder.encode(key.toString(), ENCODING));
+				}
+				return url.toString();
+			}
+		}
+		return location;
+	}
 }
@@ -15,18 +15,39 @@
  */
 package org.springframework.faces.mvc.support;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.faces.application.ViewExpiredException;
+import javax.faces.component.UIComponent;
 import javax.faces.component.UIViewRoot;
 import javax.faces.context.FacesContext;
 
-import junit.framework.TestCase;
-
+import org.apache.shale.test.base.AbstractJsfTestCase;
+import org.apache.shale.test.mock.MockExternalContext12;
 import org.apache.shale.test.mock.MockFacesContext12;
+import org.apache.shale.test.mock.MockHttpServletRequest;
+import org.apache.shale.test.mock.MockHttpServletResponse;
+import org.apache.shale.test.mock.MockHttpSession;
+import org.apache.shale.test.mock.MockServletContext;
+import org.springframework.faces.mvc.execution.TransientValueFactory;
+import org.springframework.faces.ui.AjaxViewRoot;
 
-public class MvcFacesStateHolderComponentTests extends TestCase {
+public class MvcFacesStateHolderComponentTests extends AbstractJsfTestCase {
 
 	private MvcFacesStateHolderComponent component;
 
+	public MvcFacesStateHolderComponentTests(String name) {
+		super(name);
+	}
+
 	protected void setUp() throws Exception {
+		super.setUp();
 		this.component = new MvcFacesStateHolderComponent();
 	}
 
@@ -65,6 +86,67 @@ public class MvcFacesStateHolderComponentTests extends TestCase {
 		assertEquals("value", component.getViewScope().get("test"));
 	}
 
+	public void testSerializedStateExcludesTransientValues() throws Exception {
+		((ViewScopeMap) component.getViewScope()).putTransient("transient", "value", new RecreatedValueFactory());
+		component.getViewScope().put("test", "value");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(component.saveState(null));
+		out.close();
+		Object state = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		component = new MvcFacesStateHolderComponent();
+		component.restoreState(null, state);
+		assertEquals("value", component.getViewScope().get("test"));
+		assertEquals("recreated", component.getViewScope().get("transient"));
+	}
+
+	private FacesContext newFacesContextWithSession() {
+		MockFacesContext12 facesContext = new MockFacesContext12();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setHttpSession(new MockHttpSession());
+		facesContext.setExternalContext(new MockExternalContext12(new MockServletContext(), request,
+				new MockHttpServletResponse()));
+		UIViewRoot viewRoot = new UIViewRoot();
+		viewRoot.setViewId("/test.xhtml");
+		facesContext.setViewRoot(viewRoot);
+		return facesContext;
+	}
+
+	public void testSessionStateSaveAndRestore() throws Exception {
+		FacesContext facesContext = newFacesContextWithSession();
+		MvcFacesStateHolderComponent.attach(facesContext, facesContext.getViewRoot(), 2);
+		component = MvcFacesStateHolderComponent.locate(facesContext, true);
+		component.getViewScope().put("test", "value");
+		Object[] state = (Object[]) component.saveState(facesContext);
+		assertNull(state[0]);
+		assertNotNull(state[1]);
+		assertEquals(1, SessionViewScopeStore.locate(facesContext, 0).size());
+		component = new MvcFacesStateHolderComponent();
+		component.restoreState(facesContext, state);
+		assertEquals("value", component.getViewScope().get("test"));
+		component.getViewScope().put("test", "updated");
+		assertEquals(state[1], ((Object[]) component.saveState(facesContext))[1]);
+		assertEquals(1, SessionViewScopeStore.locate(facesContext, 0).size());
+	}
+
+	public void testSessionStateEvicted() throws Exception {
+		FacesContext facesContext = newFacesContextWithSession();
+		Object[] states = new Object[3];
+		for (int i = 0; i < states.length; i++) {
+			UIViewRoot viewRoot = new UIViewRoot();
+			MvcFacesStateHolderComponent.attach(facesContext, viewRoot, 2);
+			states[i] = MvcFacesStateHolderComponent.locate(facesContext, viewRoot, true).saveState(facesContext);
+		}
+		assertEquals(2, SessionViewScopeStore.locate(facesContext, 0).size());
+		new MvcFacesStateHolderComponent().restoreState(facesContext, states[2]);
+		try {
+			new MvcFacesStateHolderComponent().restoreState(facesContext, states[0]);
+			fail();
+		} catch (ViewExpiredException e) {
+			assertEquals("/test.xhtml", e.getViewId());
+		}
+	}
+
 	public void testAttachAndLocate() throws Exception {
 		UIViewRoot viewRoot = new UIViewRoot();
 		try {
@@ -76,6 +158,42 @@ public class MvcFacesStateHolderComponentTests extends TestCase {
 		assertNotNull(MvcFacesStateHolderComponent.locate(null, viewRoot, true));
 	}
 
+	public void testLocateDoesNotSearch() throws Exception {
+		UIViewRoot viewRoot = new NonSearchableViewRoot();
+		MvcFacesStateHolderComponent.attach(null, viewRoot);
+		assertSame(viewRoot.getChildren().get(0), MvcFacesStateHolderComponent.locate(null, viewRoot, true));
+	}
+
+	public void testLocateWithAjaxViewRoot() throws Exception {
+		UIViewRoot viewRoot = new NonSearchableViewRoot();
+		MvcFacesStateHolderComponent.attach(null, viewRoot);
+		component = MvcFacesStateHolderComponent.locate(null, viewRoot, true);
+		assertSame(component, MvcFacesStateHolderComponent.locate(null, new AjaxViewRoot(viewRoot), true));
+		viewRoot = new NonSearchableViewRoot();
+		MvcFacesStateHolderComponent.attach(null, new AjaxViewRoot(viewRoot));
+		assertNotNull(MvcFacesStateHolderComponent.locate(null, viewRoot, true));
+	}
+
+	public void testLocateAfterRestore() throws Exception {
+		UIViewRoot viewRoot = new UIViewRoot();
+		MvcFacesStateHolderComponent.attach(null, viewRoot);
+		MvcFacesStateHolderComponent.locate(null, viewRoot, true).getViewScope().put("test", "value");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(new HashMap(viewRoot.getAttributes()));
+		out.writeObject(MvcFacesStateHolderComponent.locate(null, viewRoot, true).saveState(null));
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		UIViewRoot restoredViewRoot = new NonSearchableViewRoot();
+		restoredViewRoot.getAttributes().putAll((Map) in.readObject());
+		MvcFacesStateHolderComponent restored = new MvcFacesStateHolderComponent();
+		restoredViewRoot.getChildren().add(restored);
+		restored.restoreState(null, in.readObject());
+		assertSame(restored, MvcFacesStateHolderComponent.locate(null, restoredViewRoot, true));
+		assertSame(restored, MvcFacesStateHolderComponent.locate(null, new AjaxViewRoot(restoredViewRoot), true));
+		assertEquals("value", restored.getViewScope().get("test"));
+	}
+
 	public void testLocateFromFacesContext() throws Exception {
 		FacesContext facesContext = new MockFacesContext12();
 		UIViewRoot viewRoot = new UIViewRoot();
@@ -84,4 +202,16 @@ public class MvcFacesStateHolderComponentTests extends TestCase {
 		assertNotNull(MvcFacesStateHolderComponent.locate(facesContext, true));
 		assertNotNull(MvcFacesStateHolderComponent.locate(facesContext, null, true));
 	}
+
+	private static class NonSearchableViewRoot extends UIViewRoot {
+		public UIComponent findComponent(String expr) {
+			throw new IllegalStateException("Component tree should not be searched");
+		}
+	}
+
+	private static class RecreatedValueFactory implements TransientValueFactory {
+		public Object createValue() {
+			return "recreated";
+		}
+	}
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import java.net.URLEncoder;
+
+import junit.framework.TestCase;
+
+public class PercentEncoderTests extends TestCase {
+
+	private static final String[] VALUES = { "", "simple", "a b", " leading", "trailing ", "te&st=1", "x+y%z",
+			"café", "日本 語", "😀 smile", "-_.*~!'()", "a  bé éc" };
+
+	private void doTestEncode(String encoding) throws Exception {
+		PercentEncoder encoder = new PercentEncoder(encoding);
+		for (int i = 0; i < VALUES.length; i++) {
+			String expected = URLEncoder.encode(VALUES[i], encoding);
+			assertEquals(expected, encoder.encode(VALUES[i]));
+			StringBuffer out = new StringBuffer("prefix:");
+			encoder.encode(VALUES[i], out);
+			assertEquals("prefix:" + expected, out.toString());
+		}
+	}
+
+	public void testEncodeUtf8() throws Exception {
+		doTestEncode("UTF-8");
+	}
+
+	public void testEncodeIso88591() throws Exception {
+		doTestEncode("ISO-8859-1");
+	}
+
+	public void testUnreservedNotCopied() throws Exception {
+		String value = "abc-123";
+		assertSame(value, new PercentEncoder("UTF-8").encode(value));
+	}
+
+	public void testForEncodingIsShared() throws Exception {
+		assertSame(PercentEncoder.forEncoding("UTF-8"), PercentEncoder.forEncoding("UTF-8"));
+		assertEquals("UTF-8", PercentEncoder.forEncoding("UTF-8").getEncoding());
+	}
+
+	public void testUnsupportedEncoding() throws Exception {
+		try {
+			new PercentEncoder("missing-encoding");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import junit.framework.TestCase;
+
+import org.springframework.webflow.core.collection.LocalAttributeMap;
+import org.springframework.webflow.core.collection.MutableAttributeMap;
+
+public class SessionViewScopeStoreTests extends TestCase {
+
+	public void testMaxViewScopesMustBePositive() throws Exception {
+		try {
+			new SessionViewScopeStore(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testUniqueTokens() throws Exception {
+		SessionViewScopeStore store = new SessionViewScopeStore(10);
+		assertFalse(store.newToken().equals(store.newToken()));
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		SessionViewScopeStore store = new SessionViewScopeStore(2);
+		MutableAttributeMap a = new LocalAttributeMap();
+		MutableAttributeMap b = new LocalAttributeMap();
+		store.put("a", a);
+		store.put("b", b);
+		assertSame(a, store.get("a"));
+		store.put("c", new LocalAttributeMap());
+		assertEquals(2, store.size());
+		assertSame(a, store.get("a"));
+		assertNull(store.get("b"));
+	}
+
+	public void testReduceMaxViewScopes() throws Exception {
+		SessionViewScopeStore store = new SessionViewScopeStore(3);
+		store.put("a", new LocalAttributeMap());
+		store.put("b", new LocalAttributeMap());
+		store.put("c", new LocalAttributeMap());
+		store.setMaxViewScopes(1);
+		assertEquals(1, store.size());
+		assertNotNull(store.get("c"));
+	}
+}
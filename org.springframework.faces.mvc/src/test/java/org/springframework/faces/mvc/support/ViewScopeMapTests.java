@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004-2008 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.faces.mvc.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+import org.springframework.faces.mvc.execution.TransientValueFactory;
+
+public class ViewScopeMapTests extends TestCase {
+
+	private static Object serializeAndDeserialize(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+
+	public void testTransientValueNotSerialized() throws Exception {
+		ViewScopeMap map = new ViewScopeMap();
+		map.put("regular", "a");
+		map.putTransient("transient", new LargeValue(), new LargeValueFactory());
+		assertEquals(2, map.size());
+		LargeValueFactory.created = 0;
+		ViewScopeMap restored = (ViewScopeMap) serializeAndDeserialize(map);
+		assertEquals("a", restored.get("regular"));
+		assertEquals(2, restored.size());
+		assertTrue(restored.contains("transient"));
+		assertEquals(0, LargeValueFactory.created);
+		Object value = restored.get("transient");
+		assertTrue(value instanceof LargeValue);
+		assertSame(value, restored.get("transient"));
+		assertEquals(1, LargeValueFactory.created);
+	}
+
+	public void testTransientValueCreatedOnFirstAccess() throws Exception {
+		ViewScopeMap map = new ViewScopeMap();
+		LargeValueFactory.created = 0;
+		map.putTransient("transient", null, new LargeValueFactory());
+		assertEquals(0, LargeValueFactory.created);
+		assertNotNull(map.get("transient"));
+		assertEquals(1, LargeValueFactory.created);
+	}
+
+	public void testIterationRecreatesValues() throws Exception {
+		ViewScopeMap map = new ViewScopeMap();
+		map.putTransient("transient", null, new LargeValueFactory());
+		assertTrue(map.asMap().values().iterator().next() instanceof LargeValue);
+	}
+
+	public void testRegularPutRemovesTransientRegistration() throws Exception {
+		ViewScopeMap map = new ViewScopeMap();
+		map.putTransient("value", new LargeValue(), new LargeValueFactory());
+		map.put("value", "regular");
+		ViewScopeMap restored = (ViewScopeMap) serializeAndDeserialize(map);
+		assertEquals("regular", restored.get("value"));
+	}
+
+	public void testRemoveAndClear() throws Exception {
+		ViewScopeMap map = new ViewScopeMap();
+		map.putTransient("a", null, new LargeValueFactory());
+		map.putTransient("b", null, new LargeValueFactory());
+		map.remove("a");
+		assertFalse(map.contains("a"));
+		assertNull(map.get("a"));
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get("b"));
+	}
+
+	public static class LargeValue {
+	}
+
+	public static class LargeValueFactory implements TransientValueFactory {
+		private static int created;
+
+		public Object createValue() {
+			created++;
+			return new LargeValue();
+		}
+	}
+}